@@ -0,0 +1,114 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.MemberData;
+import discord4j.discordjson.json.UserData;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the footprint of caching members in a {@link ConcurrentHashMap} and in an {@link OffHeapMap}. The heap and
+ * native memory retained by the cached members are reported as secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MemberFootprintBenchmark {
+
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @Param({"100000", "1000000"})
+    private int members;
+
+    @Param({"heap", "offheap"})
+    private String storage;
+
+    private ObjectMapper mapper;
+    private OffHeapAllocator allocator;
+    private ConcurrentMap<Long, MemberData> map;
+    private long heapBefore;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long heapBytes;
+        public long offHeapBytes;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        map = null;
+        if (allocator == null && "offheap".equals(storage)) {
+            mapper = JacksonResources.create().getObjectMapper();
+            allocator = new OffHeapAllocator();
+        }
+        heapBefore = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        map.clear();
+    }
+
+    @Benchmark
+    public ConcurrentMap<Long, MemberData> populate(Footprint footprint) {
+        if ("offheap".equals(storage)) {
+            map = new OffHeapMap<>(allocator, mapper, MemberData.class);
+        } else {
+            map = new ConcurrentHashMap<>();
+        }
+        for (long i = 1; i <= members; i++) {
+            map.put(i, member(i));
+        }
+        footprint.heapBytes = usedHeap() - heapBefore;
+        footprint.offHeapBytes = allocator == null ? 0 : allocator.getUsedBytes();
+        return map;
+    }
+
+    private static MemberData member(long id) {
+        return MemberData.builder()
+                .user(UserData.builder()
+                        .id(Id.of(id))
+                        .username("user" + id)
+                        .discriminator(String.format("%04d", id % 10000))
+                        .build())
+                .roles(Collections.singletonList(Id.of(id % 100)))
+                .joinedAt("2021-04-01T00:00:00.000000+00:00")
+                .deaf(false)
+                .mute(false)
+                .build();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -24,9 +24,11 @@ import discord4j.common.store.api.layout.DataAccessor;
 import discord4j.common.store.api.layout.GatewayDataUpdater;
 import discord4j.common.store.api.layout.StoreLayout;
 import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 /**
  * A {@link Store} represents a container that holds, retrieves, and updates data received from Discord throughout the
@@ -144,6 +146,8 @@ public final class Store {
                         .getExactMembersInGuild(action.getGuildId()))
                 .map(GetMemberByIdAction.class, action -> dataAccessor
                         .getMemberById(action.getGuildId(), action.getUserId()))
+                .map(GetMembersByIdsAction.class, action -> dataAccessor
+                        .getMembersByIds(action.getGuildId(), action.getUserIds()))
                 .map(GetMessagesAction.class, action -> dataAccessor.getMessages())
                 .map(GetMessagesInChannelAction.class, action -> dataAccessor
                         .getMessagesInChannel(action.getChannelId()))
@@ -157,8 +161,11 @@ public final class Store {
                 .map(GetRolesInGuildAction.class, action -> dataAccessor.getRolesInGuild(action.getGuildId()))
                 .map(GetRoleByIdAction.class, action -> dataAccessor
                         .getRoleById(action.getGuildId(), action.getRoleId()))
+                .map(GetRolesByIdsAction.class, action -> dataAccessor
+                        .getRolesByIds(action.getGuildId(), action.getRoleIds()))
                 .map(GetUsersAction.class, action -> dataAccessor.getUsers())
                 .map(GetUserByIdAction.class, action -> dataAccessor.getUserById(action.getUserId()))
+                .map(GetUsersByIdsAction.class, action -> dataAccessor.getUsersByIds(action.getUserIds()))
                 .map(GetVoiceStatesAction.class, action -> dataAccessor.getVoiceStates())
                 .map(GetVoiceStatesInChannelAction.class, action -> dataAccessor
                         .getVoiceStatesInChannel(action.getGuildId(), action.getChannelId()))
@@ -241,8 +248,36 @@ public final class Store {
      * the action, if any. If an error is received, it is emitted through the {@link Publisher}.
      */
     public <R> Publisher<R> execute(StoreAction<R> action) {
-        return actionMapper.findHandlerForAction(action)
-                .<Publisher<R>>map(h -> h.apply(action))
-                .orElse(Flux.empty());
+        Publisher<R> result = actionMapper.handle(Objects.requireNonNull(action));
+        return result == null ? Flux.empty() : result;
+    }
+
+    /**
+     * Attempts to execute the given action synchronously. The action is routed like in {@link #execute(StoreAction)},
+     * then executed immediately if the handler returns a {@link Publisher} that can be evaluated without
+     * subscribing, like one created from {@code Mono.fromCallable}, {@code Mono.fromRunnable}, {@code Mono.just} or
+     * {@code Mono.empty}. This allows layouts backed by in-memory data structures to be used without any Reactor
+     * subscription on hot paths.
+     *
+     * @param action the action to execute
+     * @param <R>    the type of data returned by the action
+     * @return an {@link ActionResult} holding the result of the action if it was executed, or the
+     * {@link Publisher} to subscribe to otherwise
+     * @throws RuntimeException if the action was executed immediately and failed
+     */
+    @SuppressWarnings("unchecked")
+    public <R> ActionResult<R> tryExecuteNow(StoreAction<R> action) {
+        Publisher<R> result = actionMapper.handle(Objects.requireNonNull(action));
+        if (result == null) {
+            return ActionResult.done(null);
+        }
+        if (result instanceof Callable) {
+            try {
+                return ActionResult.done(((Callable<R>) result).call());
+            } catch (Exception e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+        return ActionResult.pending(result);
     }
 }
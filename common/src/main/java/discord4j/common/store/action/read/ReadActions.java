@@ -325,6 +325,18 @@ public class ReadActions {
         return new GetMemberByIdAction(guildId, userId);
     }
 
+    /**
+     * Creates an action to retrieve data for the members corresponding to the given guild ID and user IDs. Members
+     * that are not present are skipped.
+     *
+     * @param guildId the guild ID
+     * @param userIds the user IDs
+     * @return a new {@link GetMembersByIdsAction}
+     */
+    public static GetMembersByIdsAction getMembersByIds(long guildId, long[] userIds) {
+        return new GetMembersByIdsAction(guildId, userIds);
+    }
+
     /**
      * Creates an action to retrieve data for all messages present in a store.
      *
@@ -415,6 +427,18 @@ public class ReadActions {
         return new GetRoleByIdAction(guildId, roleId);
     }
 
+    /**
+     * Creates an action to retrieve data for the roles corresponding to the given guild ID and role IDs. Roles that
+     * are not present are skipped.
+     *
+     * @param guildId the guild ID
+     * @param roleIds the role IDs
+     * @return a new {@link GetRolesByIdsAction}
+     */
+    public static GetRolesByIdsAction getRolesByIds(long guildId, long[] roleIds) {
+        return new GetRolesByIdsAction(guildId, roleIds);
+    }
+
     /**
      * Creates an action to retrieve data for all users present in a store.
      *
@@ -434,6 +458,17 @@ public class ReadActions {
         return new GetUserByIdAction(userId);
     }
 
+    /**
+     * Creates an action to retrieve data for the users corresponding to the given user IDs. Users that are not
+     * present are skipped.
+     *
+     * @param userIds the user IDs
+     * @return a new {@link GetUsersByIdsAction}
+     */
+    public static GetUsersByIdsAction getUsersByIds(long[] userIds) {
+        return new GetUsersByIdsAction(userIds);
+    }
+
     /**
      * Creates an action to retrieve data for all voice states present in a store.
      *
@@ -18,6 +18,7 @@
 package discord4j.common.store.api;
 
 import org.reactivestreams.Publisher;
+import reactor.util.annotation.Nullable;
 
 import java.util.*;
 import java.util.function.Function;
@@ -86,6 +87,20 @@ public class ActionMapper {
                 .map(handler -> a -> (Publisher<R>) handler.apply(a));
     }
 
+    /**
+     * Invokes the handler associated to the given action based on its concrete type, if any.
+     *
+     * @param action the action to handle
+     * @param <R> the return type of the action, to ensure type safety
+     * @return the {@link Publisher} returned by the handler, or {@code null} if there is no handler for the action
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <R> Publisher<R> handle(StoreAction<R> action) {
+        Function<StoreAction<?>, ? extends Publisher<?>> handler = mappings.get(action.getClass());
+        return handler == null ? null : (Publisher<R>) handler.apply(action);
+    }
+
     public static class Builder {
 
         private final Map<Class<? extends StoreAction<?>>, Function<StoreAction<?>, ? extends Publisher<?>>> mappings;
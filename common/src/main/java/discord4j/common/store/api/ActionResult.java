@@ -0,0 +1,96 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.api;
+
+import discord4j.common.store.Store;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+/**
+ * The outcome of {@link Store#tryExecuteNow(StoreAction)}: either the result of an action that was executed
+ * immediately, or a {@link Publisher} that must be subscribed to in order to execute the action.
+ *
+ * @param <R> the type of data returned by the action
+ */
+public final class ActionResult<R> {
+
+    private static final ActionResult<?> EMPTY = new ActionResult<>(null, null);
+
+    @Nullable
+    private final R value;
+    @Nullable
+    private final Publisher<R> publisher;
+
+    private ActionResult(@Nullable R value, @Nullable Publisher<R> publisher) {
+        this.value = value;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Returns the result of an action that completed immediately.
+     *
+     * @param value the result of the action, or {@code null} if it produced none
+     * @param <R> the type of data returned by the action
+     * @return a completed {@link ActionResult}
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> ActionResult<R> done(@Nullable R value) {
+        return value == null ? (ActionResult<R>) EMPTY : new ActionResult<>(value, null);
+    }
+
+    /**
+     * Returns the result of an action that has to be executed asynchronously.
+     *
+     * @param publisher the {@link Publisher} executing the action upon subscription
+     * @param <R> the type of data returned by the action
+     * @return a pending {@link ActionResult}
+     */
+    public static <R> ActionResult<R> pending(Publisher<R> publisher) {
+        return new ActionResult<>(null, publisher);
+    }
+
+    /**
+     * Returns whether the action was already executed, in which case its result is given by {@link #get()}.
+     *
+     * @return {@code true} if the action was executed, {@code false} if {@link #asPublisher()} must be subscribed to
+     */
+    public boolean isDone() {
+        return publisher == null;
+    }
+
+    /**
+     * Returns the result of the executed action.
+     *
+     * @return the result, or {@code null} if the action produced none or was not executed yet
+     */
+    @Nullable
+    public R get() {
+        return value;
+    }
+
+    /**
+     * Returns a {@link Publisher} emitting the result of the action, executing it upon subscription if it was not
+     * executed yet.
+     *
+     * @return a {@link Publisher} of the action result
+     */
+    public Publisher<R> asPublisher() {
+        return publisher == null ? Mono.justOrEmpty(value) : publisher;
+    }
+}
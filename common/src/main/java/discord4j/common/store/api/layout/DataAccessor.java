@@ -22,6 +22,8 @@ import discord4j.discordjson.json.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+
 /**
  * Defines methods to handle read operations on a store.
  */
@@ -260,6 +262,19 @@ public interface DataAccessor {
      */
     Mono<MemberData> getMemberById(long guildId, long userId);
 
+    /**
+     * Retrieves data for the members corresponding to the given guild ID and user IDs, in a single operation. By
+     * default, this looks up each member with {@link #getMemberById(long, long)}.
+     *
+     * @param guildId the guild ID
+     * @param userIds the user IDs
+     * @return A {@link Flux} emitting the members in the order of the given IDs, skipping those not found
+     */
+    default Flux<MemberData> getMembersByIds(long guildId, long[] userIds) {
+        return Flux.fromStream(() -> Arrays.stream(userIds).boxed())
+                .flatMapSequential(id -> getMemberById(guildId, id));
+    }
+
     /**
      * Retrieves data for all messages present in the store.
      *
@@ -332,6 +347,18 @@ public interface DataAccessor {
      */
     Mono<RoleData> getRoleById(long guildId, long roleId);
 
+    /**
+     * Retrieves data for the roles corresponding to the given guild ID and role IDs, in a single operation. By
+     * default, this looks up each role with {@link #getRoleById(long, long)}.
+     *
+     * @param guildId the guild ID
+     * @param roleIds the role IDs
+     * @return A {@link Flux} emitting the roles in the order of the given IDs, skipping those not found
+     */
+    default Flux<RoleData> getRolesByIds(long guildId, long[] roleIds) {
+        return Flux.fromStream(() -> Arrays.stream(roleIds).boxed()).flatMapSequential(id -> getRoleById(guildId, id));
+    }
+
     /**
      * Retrieves data for all users present in the store.
      *
@@ -347,6 +374,17 @@ public interface DataAccessor {
      */
     Mono<UserData> getUserById(long userId);
 
+    /**
+     * Retrieves data for the users corresponding to the given user IDs, in a single operation. By default, this looks
+     * up each user with {@link #getUserById(long)}.
+     *
+     * @param userIds the user IDs
+     * @return A {@link Flux} emitting the users in the order of the given IDs, skipping those not found
+     */
+    default Flux<UserData> getUsersByIds(long[] userIds) {
+        return Flux.fromStream(() -> Arrays.stream(userIds).boxed()).flatMapSequential(this::getUserById);
+    }
+
     /**
      * Retrieves data for all voice states present in the store.
      *
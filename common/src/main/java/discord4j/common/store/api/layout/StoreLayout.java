@@ -23,6 +23,11 @@ import discord4j.common.store.api.ActionMapper;
  * A {@link StoreLayout} defines how store actions should be handled according to their type. It enforces an
  * implementation for a minimal set of actions required by Discord4J, and enables the declaration of custom action
  * types.
+ * <p>
+ * Layouts whose action handlers complete synchronously can return publishers created from
+ * {@code Mono.fromCallable}, {@code Mono.fromRunnable}, {@code Mono.just} or {@code Mono.empty}, which
+ * {@link discord4j.common.store.Store#tryExecuteNow(discord4j.common.store.api.StoreAction)} evaluates directly
+ * without subscribing to them.
  */
 public interface StoreLayout {
 
@@ -0,0 +1,252 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.api.layout;
+
+import discord4j.common.annotations.Experimental;
+import discord4j.discordjson.json.*;
+import discord4j.discordjson.possible.Possible;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Defines which optional fields of members, users and presences a {@link GatewayDataUpdater} retains when saving
+ * them, allowing a store to hold slimmer entities when a bot only relies on a subset of their fields. It also defines
+ * whether offline presences are saved or created when read.
+ * <p>
+ * Fields that are not retained are cleared before the entity is cached, and are therefore read back as absent or
+ * empty. Required fields, like IDs, usernames or a member join date, are always retained. Entities given to event
+ * listeners as current values are not projected, but old values read from the store are.
+ */
+@Experimental
+public final class StoreProjection {
+
+    private static final StoreProjection NONE = builder().build();
+
+    private final Set<MemberField> memberFields;
+    private final Set<UserField> userFields;
+    private final Set<PresenceField> presenceFields;
+    private final boolean storeOfflinePresences;
+
+    private StoreProjection(Builder builder) {
+        this.memberFields = EnumSet.copyOf(builder.memberFields);
+        this.userFields = EnumSet.copyOf(builder.userFields);
+        this.presenceFields = EnumSet.copyOf(builder.presenceFields);
+        this.storeOfflinePresences = builder.storeOfflinePresences;
+    }
+
+    /**
+     * Returns a {@link StoreProjection} retaining all fields.
+     *
+     * @return a projection leaving entities unchanged
+     */
+    public static StoreProjection none() {
+        return NONE;
+    }
+
+    /**
+     * Create a builder to customize the retained fields. By default, all fields are retained.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Clear the fields of the given member and of its user that are not retained by this projection.
+     *
+     * @param member the member to project
+     * @return the projected member, or the given one if it is left unchanged
+     */
+    public MemberData projectMember(MemberData member) {
+        UserData user = projectUser(member.user());
+        if (memberFields.size() == MemberField.ALL.size() && user == member.user()) {
+            return member;
+        }
+        ImmutableMemberData.Builder builder = MemberData.builder().from(member).user(user);
+        if (!memberFields.contains(MemberField.NICK)) {
+            builder.nick(Possible.absent());
+        }
+        if (!memberFields.contains(MemberField.ROLES)) {
+            builder.roles(Collections.emptyList());
+        }
+        if (!memberFields.contains(MemberField.PREMIUM_SINCE)) {
+            builder.premiumSince(Possible.absent());
+        }
+        if (!memberFields.contains(MemberField.PENDING)) {
+            builder.pending(Possible.absent());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Clear the fields of the given user that are not retained by this projection.
+     *
+     * @param user the user to project
+     * @return the projected user, or the given one if it is left unchanged
+     */
+    public UserData projectUser(UserData user) {
+        if (userFields.size() == UserField.ALL.size()) {
+            return user;
+        }
+        ImmutableUserData.Builder builder = UserData.builder().from(user);
+        if (!userFields.contains(UserField.AVATAR)) {
+            builder.avatar(Optional.empty());
+        }
+        if (!userFields.contains(UserField.BOT)) {
+            builder.bot(Possible.absent());
+        }
+        if (!userFields.contains(UserField.PUBLIC_FLAGS)) {
+            builder.publicFlags(Possible.absent());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Clear the fields of the given presence that are not retained by this projection.
+     *
+     * @param presence the presence to project
+     * @return the projected presence, or the given one if it is left unchanged
+     */
+    public PresenceData projectPresence(PresenceData presence) {
+        if (presenceFields.size() == PresenceField.ALL.size()) {
+            return presence;
+        }
+        ImmutablePresenceData.Builder builder = PresenceData.builder().from(presence);
+        if (!presenceFields.contains(PresenceField.ACTIVITIES)) {
+            builder.activities(Collections.emptyList());
+        }
+        if (!presenceFields.contains(PresenceField.CLIENT_STATUS)) {
+            builder.clientStatus(ClientStatusData.builder().build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns whether an offline presence should be saved for each cached member without a presence. If not, a
+     * member without a cached presence is considered offline, and its presence is created when it is read.
+     *
+     * @return {@code true} if offline presences are saved, {@code false} if they are created on read
+     */
+    public boolean storesOfflinePresences() {
+        return storeOfflinePresences;
+    }
+
+    /**
+     * The optional fields of a member that can be discarded.
+     */
+    public enum MemberField {
+        NICK, ROLES, PREMIUM_SINCE, PENDING;
+
+        private static final Set<MemberField> ALL = Collections.unmodifiableSet(EnumSet.allOf(MemberField.class));
+    }
+
+    /**
+     * The optional fields of a user that can be discarded.
+     */
+    public enum UserField {
+        AVATAR, BOT, PUBLIC_FLAGS;
+
+        private static final Set<UserField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+    }
+
+    /**
+     * The optional fields of a presence that can be discarded.
+     */
+    public enum PresenceField {
+        ACTIVITIES, CLIENT_STATUS;
+
+        private static final Set<PresenceField> ALL = Collections.unmodifiableSet(EnumSet.allOf(PresenceField.class));
+    }
+
+    /**
+     * A builder to create {@link StoreProjection} instances.
+     */
+    public static class Builder {
+
+        private Set<MemberField> memberFields = EnumSet.allOf(MemberField.class);
+        private Set<UserField> userFields = EnumSet.allOf(UserField.class);
+        private Set<PresenceField> presenceFields = EnumSet.allOf(PresenceField.class);
+        private boolean storeOfflinePresences = true;
+
+        protected Builder() {
+        }
+
+        /**
+         * Set the optional member fields to retain, discarding all others.
+         *
+         * @param fields the member fields to keep
+         * @return this builder
+         */
+        public Builder retainMemberFields(MemberField... fields) {
+            this.memberFields = toSet(MemberField.class, fields);
+            return this;
+        }
+
+        /**
+         * Set the optional user fields to retain, discarding all others. Applies to users cached on their own and as
+         * part of a member.
+         *
+         * @param fields the user fields to keep
+         * @return this builder
+         */
+        public Builder retainUserFields(UserField... fields) {
+            this.userFields = toSet(UserField.class, fields);
+            return this;
+        }
+
+        /**
+         * Set the optional presence fields to retain, discarding all others.
+         *
+         * @param fields the presence fields to keep
+         * @return this builder
+         */
+        public Builder retainPresenceFields(PresenceField... fields) {
+            this.presenceFields = toSet(PresenceField.class, fields);
+            return this;
+        }
+
+        /**
+         * Set whether an offline presence should be saved for each cached member without a presence. Disabling it
+         * avoids saving one placeholder presence per offline member when guilds and member chunks are received, and
+         * removes presences from the store when they become offline. Reading the presence of a cached member without
+         * one then returns an offline presence created on the fly. Defaults to {@code true}.
+         *
+         * @param storeOfflinePresences whether to save offline presences
+         * @return this builder
+         */
+        public Builder storeOfflinePresences(boolean storeOfflinePresences) {
+            this.storeOfflinePresences = storeOfflinePresences;
+            return this;
+        }
+
+        public StoreProjection build() {
+            return new StoreProjection(this);
+        }
+
+        private static <E extends Enum<E>> Set<E> toSet(Class<E> type, E[] fields) {
+            Set<E> set = EnumSet.noneOf(type);
+            set.addAll(Arrays.asList(fields));
+            return set;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.api.object;
+
+import discord4j.common.annotations.Experimental;
+import reactor.util.annotation.Nullable;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Represents a change applied to a single entity of a store, as captured after a Gateway update.
+ * <p>
+ * Changes are identified by a sequence number, strictly increasing in the order they are published, so consumers
+ * maintaining a replica can detect gaps and resume from the last applied change.
+ */
+@Experimental
+public class StoreChange {
+
+    /**
+     * The kind of change applied to an entity.
+     */
+    public enum Operation {
+        /** The entity was created or updated, and {@link #getData()} holds its current state. */
+        UPSERT,
+        /** The entity was removed, along with every entity it contains, like the channels of a guild. */
+        DELETE
+    }
+
+    /**
+     * The type of a changed entity, determining the meaning of its keys and the type of its data.
+     */
+    public enum EntityType {
+        /** A {@code GuildData} identified by its ID. */
+        GUILD,
+        /** A {@code ChannelData} identified by its ID, in the guild given as parent ID if any. */
+        CHANNEL,
+        /** A {@code RoleData} identified by its ID, in the guild given as parent ID. */
+        ROLE,
+        /** An {@code EmojiData} identified by its ID, in the guild given as parent ID. */
+        EMOJI,
+        /** A {@code MemberData} identified by its user ID, in the guild given as parent ID. */
+        MEMBER,
+        /** A {@code UserData} identified by its ID. */
+        USER,
+        /** A {@code PresenceData} identified by its user ID, in the guild given as parent ID. */
+        PRESENCE,
+        /** A {@code VoiceStateData} identified by its user ID, in the guild given as parent ID. */
+        VOICE_STATE,
+        /** A {@code MessageData} identified by its ID, in the channel given as parent ID. */
+        MESSAGE,
+        /**
+         * All entities received by the shard whose index is given as ID, only deleted when the shard is invalidated.
+         * The data of such a change is the {@link InvalidationCause}.
+         */
+        SHARD
+    }
+
+    private final long sequence;
+    private final int shardIndex;
+    private final Operation operation;
+    private final EntityType entityType;
+    private final long parentId;
+    private final long id;
+    private final Object data;
+
+    private StoreChange(long sequence, int shardIndex, Operation operation, EntityType entityType, long parentId,
+                        long id, @Nullable Object data) {
+        this.sequence = sequence;
+        this.shardIndex = shardIndex;
+        this.operation = operation;
+        this.entityType = entityType;
+        this.parentId = parentId;
+        this.id = id;
+        this.data = data;
+    }
+
+    /**
+     * Creates a new {@link StoreChange}.
+     *
+     * @param sequence the sequence number of this change
+     * @param shardIndex the index of the shard that received the update, or -1 if it is not bound to a shard
+     * @param operation the kind of change
+     * @param entityType the type of the changed entity
+     * @param parentId the ID of the guild or channel containing the entity, or 0 if it has none
+     * @param id the ID of the entity
+     * @param data the current state of the entity, or null if it was deleted
+     * @return a new {@link StoreChange}
+     */
+    public static StoreChange of(long sequence, int shardIndex, Operation operation, EntityType entityType,
+                                 long parentId, long id, @Nullable Object data) {
+        return new StoreChange(sequence, shardIndex, Objects.requireNonNull(operation),
+                Objects.requireNonNull(entityType), parentId, id, data);
+    }
+
+    /**
+     * Returns the sequence number of this change.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the index of the shard that received the update causing this change, or -1 if it is not bound to a
+     * shard.
+     *
+     * @return the shard index
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Returns the kind of this change.
+     *
+     * @return the {@link Operation}
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the type of the changed entity.
+     *
+     * @return the {@link EntityType}
+     */
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Returns the ID of the guild or channel containing the changed entity, or 0 if it has none.
+     *
+     * @return the parent ID
+     */
+    public long getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Returns the ID of the changed entity.
+     *
+     * @return the entity ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the current state of the changed entity, if present.
+     *
+     * @return an optional entity, of the type given by {@link #getEntityType()}
+     */
+    public Optional<Object> getData() {
+        return Optional.ofNullable(data);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StoreChange)) return false;
+        StoreChange that = (StoreChange) o;
+        return sequence == that.sequence &&
+                shardIndex == that.shardIndex &&
+                parentId == that.parentId &&
+                id == that.id &&
+                operation == that.operation &&
+                entityType == that.entityType &&
+                Objects.equals(data, that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, shardIndex, operation, entityType, parentId, id, data);
+    }
+
+    @Override
+    public String toString() {
+        return "StoreChange{" +
+                "sequence=" + sequence +
+                ", shardIndex=" + shardIndex +
+                ", operation=" + operation +
+                ", entityType=" + entityType +
+                ", parentId=" + parentId +
+                ", id=" + id +
+                ", data=" + data +
+                '}';
+    }
+}
@@ -0,0 +1,540 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import discord4j.common.annotations.Experimental;
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.common.store.api.ActionMapper;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.api.object.PresenceAndUserData;
+import discord4j.common.store.api.object.StoreChange;
+import discord4j.common.store.api.object.StoreChange.EntityType;
+import discord4j.common.store.api.object.StoreChange.Operation;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.*;
+import discord4j.discordjson.json.gateway.*;
+import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A {@link StoreLayout} decorator publishing the entity-level changes caused by each Gateway update, so a replica or
+ * an index can be kept up to date incrementally instead of periodically reading the whole store.
+ * <p>
+ * After an update is applied by the delegate layout, the entities it touched are read back from the delegate and
+ * published as {@link StoreChange} instances through {@link #changes()}: an upsert carrying the current state of the
+ * entity, or a delete if it is no longer stored. Deleting a guild, a channel or a shard implies deleting what they
+ * contain. Side effects on other entities, like removing a deleted role from the members of its guild, are not
+ * published.
+ * <p>
+ * Updates are applied one at a time, each being read back before the next one starts, so the published state of an
+ * entity always matches the update its change is numbered after. As updates may wait for the previous ones and are
+ * composed with reads, they are never executed synchronously by
+ * {@link discord4j.common.store.Store#tryExecuteNow(discord4j.common.store.api.StoreAction)}.
+ * <p>
+ * Changes are buffered until the first subscriber arrives, in an unbounded buffer by default, so no change is lost.
+ * When the buffer is bounded, the configured {@link EmissionStrategy} handles the changes overflowing it: the default
+ * one waits for subscribers to make room, while a strategy giving up on a change, like
+ * {@link EmissionStrategy#timeoutDrop(Duration)}, must be opted into. Once a change is dropped, the sequence of changes
+ * terminates with an overflow error, as subscribers can no longer rely on it, and further changes are not published.
+ * Changes are published by a single thread at a time, outside of any lock, so a strategy waiting for subscribers only
+ * delays the thread publishing them.
+ */
+@Experimental
+public class ChangeCapturingStoreLayout implements StoreLayout {
+
+    private static final Logger log = Loggers.getLogger(ChangeCapturingStoreLayout.class);
+
+    private final StoreLayout delegate;
+    private final EmissionStrategy emissionStrategy;
+    private final Sinks.Many<StoreChange> sink;
+    private final GatewayDataUpdater updater;
+    private final UpdateSerializer serializer = new UpdateSerializer();
+    private final Queue<StoreChange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private long sequence; // guarded by pending
+    private volatile boolean shutdown;
+
+    private ChangeCapturingStoreLayout(StoreLayout delegate, EmissionStrategy emissionStrategy, int bufferSize) {
+        this.delegate = delegate;
+        this.emissionStrategy = emissionStrategy;
+        this.sink = Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
+        this.updater = new CapturingUpdater(delegate.getGatewayDataUpdater(), delegate.getDataAccessor());
+    }
+
+    /**
+     * Create a {@link ChangeCapturingStoreLayout} publishing the changes applied to the given layout, with default
+     * settings.
+     *
+     * @param delegate the layout storing entities
+     * @return a new change capturing {@link StoreLayout}
+     */
+    public static ChangeCapturingStoreLayout create(StoreLayout delegate) {
+        return builder(delegate).build();
+    }
+
+    /**
+     * Create a builder to customize a {@link ChangeCapturingStoreLayout} publishing the changes applied to the given
+     * layout.
+     *
+     * @param delegate the layout storing entities
+     * @return a new {@link Builder}
+     */
+    public static Builder builder(StoreLayout delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Returns a sequence of the changes applied to the store, in the order of their sequence numbers.
+     *
+     * @return a {@link Flux} of {@link StoreChange}
+     */
+    public Flux<StoreChange> changes() {
+        return sink.asFlux();
+    }
+
+    /**
+     * Complete the sequence of changes. Changes applied afterwards are not published.
+     */
+    public void shutdown() {
+        shutdown = true;
+        drain();
+    }
+
+    @Override
+    public DataAccessor getDataAccessor() {
+        return delegate.getDataAccessor();
+    }
+
+    @Override
+    public GatewayDataUpdater getGatewayDataUpdater() {
+        return updater;
+    }
+
+    @Override
+    public ActionMapper getCustomActionMapper() {
+        return delegate.getCustomActionMapper();
+    }
+
+    private void emit(int shardIndex, Operation operation, EntityType entityType, long parentId, long id,
+                      @Nullable Object data) {
+        if (shutdown) {
+            return;
+        }
+        // assign sequence numbers in queue order, emission happens outside of the lock
+        synchronized (pending) {
+            pending.offer(StoreChange.of(++sequence, shardIndex, operation, entityType, parentId, id, data));
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            // only the draining thread emits, so emissions are serialized and in sequence order
+            StoreChange change;
+            while ((change = pending.poll()) != null) {
+                boolean emitted;
+                try {
+                    emitted = emissionStrategy.emitNext(sink, change);
+                } catch (Sinks.EmissionException e) {
+                    emitted = false;
+                }
+                if (!emitted && !shutdown) {
+                    log.warn("Dropped store change {} of {} {}", change.getSequence(), change.getEntityType(),
+                            change.getId());
+                    // subscribers would otherwise miss the change silently
+                    shutdown = true;
+                    pending.clear();
+                    emissionStrategy.emitError(sink, Exceptions.failWithOverflow("Dropped store change "
+                            + change.getSequence() + " as subscribers could not keep up"));
+                }
+            }
+            if (shutdown) {
+                emissionStrategy.emitComplete(sink);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private Mono<Void> delete(int shardIndex, EntityType entityType, long parentId, long id) {
+        return Mono.fromRunnable(() -> emit(shardIndex, Operation.DELETE, entityType, parentId, id, null));
+    }
+
+    private Mono<Void> upsert(int shardIndex, EntityType entityType, long parentId, long id, Mono<?> current) {
+        return current.doOnNext(data -> emit(shardIndex, Operation.UPSERT, entityType, parentId, id, data)).then();
+    }
+
+    private Mono<Void> upsertOrDelete(int shardIndex, EntityType entityType, long parentId, long id,
+                                      Mono<?> current) {
+        return current.cast(Object.class)
+                .doOnNext(data -> emit(shardIndex, Operation.UPSERT, entityType, parentId, id, data))
+                .switchIfEmpty(delete(shardIndex, entityType, parentId, id).cast(Object.class))
+                .then();
+    }
+
+    private <T> Mono<T> capture(Mono<T> update, Supplier<? extends Publisher<?>> changes) {
+        return serializer.serialize(() -> update.flatMap(result -> Flux.from(changes.get()).then(Mono.just(result)))
+                .switchIfEmpty(Mono.defer(() -> Flux.from(changes.get()).then(Mono.empty()))));
+    }
+
+    private class CapturingUpdater implements GatewayDataUpdater {
+
+        private final GatewayDataUpdater updater;
+        private final DataAccessor accessor;
+
+        private CapturingUpdater(GatewayDataUpdater updater, DataAccessor accessor) {
+            this.updater = updater;
+            this.accessor = accessor;
+        }
+
+        private Mono<Void> channel(int shardIndex, ChannelData channel) {
+            long channelId = Snowflake.asLong(channel.id());
+            long guildId = channel.guildId().isAbsent() ? 0 : Snowflake.asLong(channel.guildId().get());
+            return upsertOrDelete(shardIndex, EntityType.CHANNEL, guildId, channelId,
+                    accessor.getChannelById(channelId));
+        }
+
+        private Mono<Void> member(int shardIndex, long guildId, long userId) {
+            return Mono.when(
+                    upsertOrDelete(shardIndex, EntityType.MEMBER, guildId, userId,
+                            accessor.getMemberById(guildId, userId)),
+                    upsertOrDelete(shardIndex, EntityType.PRESENCE, guildId, userId,
+                            accessor.getPresenceById(guildId, userId)),
+                    user(shardIndex, userId));
+        }
+
+        private Mono<Void> user(int shardIndex, long userId) {
+            return upsertOrDelete(shardIndex, EntityType.USER, 0, userId, accessor.getUserById(userId));
+        }
+
+        private Mono<Void> message(int shardIndex, Id channelId, Id messageId) {
+            long channel = Snowflake.asLong(channelId);
+            long message = Snowflake.asLong(messageId);
+            return upsert(shardIndex, EntityType.MESSAGE, channel, message, accessor.getMessageById(channel, message));
+        }
+
+        @Override
+        public Mono<Void> onChannelCreate(int shardIndex, ChannelCreate dispatch) {
+            return capture(updater.onChannelCreate(shardIndex, dispatch),
+                    () -> channel(shardIndex, dispatch.channel()));
+        }
+
+        @Override
+        public Mono<ChannelData> onChannelDelete(int shardIndex, ChannelDelete dispatch) {
+            return capture(updater.onChannelDelete(shardIndex, dispatch),
+                    () -> channel(shardIndex, dispatch.channel()));
+        }
+
+        @Override
+        public Mono<ChannelData> onChannelUpdate(int shardIndex, ChannelUpdate dispatch) {
+            return capture(updater.onChannelUpdate(shardIndex, dispatch),
+                    () -> channel(shardIndex, dispatch.channel()));
+        }
+
+        @Override
+        public Mono<Void> onGuildCreate(int shardIndex, GuildCreate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guild().id());
+            return capture(updater.onGuildCreate(shardIndex, dispatch), () -> Flux.concat(
+                    upsert(shardIndex, EntityType.GUILD, 0, guildId, accessor.getGuildById(guildId)),
+                    accessor.getChannelsInGuild(guildId)
+                            .doOnNext(channel -> emit(shardIndex, Operation.UPSERT, EntityType.CHANNEL, guildId,
+                                    Snowflake.asLong(channel.id()), channel)),
+                    accessor.getRolesInGuild(guildId)
+                            .doOnNext(role -> emit(shardIndex, Operation.UPSERT, EntityType.ROLE, guildId,
+                                    Snowflake.asLong(role.id()), role)),
+                    accessor.getEmojisInGuild(guildId)
+                            .filter(emoji -> emoji.id().isPresent())
+                            .doOnNext(emoji -> emit(shardIndex, Operation.UPSERT, EntityType.EMOJI, guildId,
+                                    Snowflake.asLong(emoji.id().get()), emoji)),
+                    accessor.getMembersInGuild(guildId)
+                            .doOnNext(member -> {
+                                long userId = Snowflake.asLong(member.user().id());
+                                emit(shardIndex, Operation.UPSERT, EntityType.MEMBER, guildId, userId, member);
+                                emit(shardIndex, Operation.UPSERT, EntityType.USER, 0, userId, member.user());
+                            }),
+                    accessor.getPresencesInGuild(guildId)
+                            .doOnNext(presence -> emit(shardIndex, Operation.UPSERT, EntityType.PRESENCE, guildId,
+                                    Snowflake.asLong(presence.user().id()), presence)),
+                    accessor.getVoiceStatesInGuild(guildId)
+                            .doOnNext(voiceState -> emit(shardIndex, Operation.UPSERT, EntityType.VOICE_STATE,
+                                    guildId, Snowflake.asLong(voiceState.userId()), voiceState))));
+        }
+
+        @Override
+        public Mono<GuildData> onGuildDelete(int shardIndex, GuildDelete dispatch) {
+            return capture(updater.onGuildDelete(shardIndex, dispatch),
+                    () -> delete(shardIndex, EntityType.GUILD, 0, Snowflake.asLong(dispatch.guild().id())));
+        }
+
+        @Override
+        public Mono<Set<EmojiData>> onGuildEmojisUpdate(int shardIndex, GuildEmojisUpdate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guildId());
+            return serializer.serialize(() -> updater.onGuildEmojisUpdate(shardIndex, dispatch)
+                    .defaultIfEmpty(new HashSet<>())
+                    .flatMap(oldEmojis -> {
+                        Set<Long> ids = new HashSet<>();
+                        for (EmojiData emoji : dispatch.emojis()) {
+                            emoji.id().ifPresent(id -> ids.add(Snowflake.asLong(id)));
+                        }
+                        for (EmojiData emoji : oldEmojis) {
+                            emoji.id().ifPresent(id -> ids.add(Snowflake.asLong(id)));
+                        }
+                        return Flux.fromIterable(ids)
+                                .concatMap(emojiId -> upsertOrDelete(shardIndex, EntityType.EMOJI, guildId,
+                                        emojiId, accessor.getEmojiById(guildId, emojiId)))
+                                .then(Mono.just(oldEmojis));
+                    })
+                    .filter(oldEmojis -> !oldEmojis.isEmpty()));
+        }
+
+        @Override
+        public Mono<Void> onGuildMemberAdd(int shardIndex, GuildMemberAdd dispatch) {
+            return capture(updater.onGuildMemberAdd(shardIndex, dispatch),
+                    () -> member(shardIndex, Snowflake.asLong(dispatch.guildId()),
+                            Snowflake.asLong(dispatch.member().user().id())));
+        }
+
+        @Override
+        public Mono<MemberData> onGuildMemberRemove(int shardIndex, GuildMemberRemove dispatch) {
+            return capture(updater.onGuildMemberRemove(shardIndex, dispatch),
+                    () -> member(shardIndex, Snowflake.asLong(dispatch.guildId()),
+                            Snowflake.asLong(dispatch.user().id())));
+        }
+
+        @Override
+        public Mono<Void> onGuildMembersChunk(int shardIndex, GuildMembersChunk dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guildId());
+            return capture(updater.onGuildMembersChunk(shardIndex, dispatch),
+                    () -> Flux.fromIterable(dispatch.members())
+                            .concatMap(member -> member(shardIndex, guildId, Snowflake.asLong(member.user().id()))));
+        }
+
+        @Override
+        public Mono<MemberData> onGuildMemberUpdate(int shardIndex, GuildMemberUpdate dispatch) {
+            return capture(updater.onGuildMemberUpdate(shardIndex, dispatch),
+                    () -> member(shardIndex, Snowflake.asLong(dispatch.guildId()),
+                            Snowflake.asLong(dispatch.user().id())));
+        }
+
+        @Override
+        public Mono<Void> onGuildRoleCreate(int shardIndex, GuildRoleCreate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guildId());
+            long roleId = Snowflake.asLong(dispatch.role().id());
+            return capture(updater.onGuildRoleCreate(shardIndex, dispatch),
+                    () -> upsertOrDelete(shardIndex, EntityType.ROLE, guildId, roleId,
+                            accessor.getRoleById(guildId, roleId)));
+        }
+
+        @Override
+        public Mono<RoleData> onGuildRoleDelete(int shardIndex, GuildRoleDelete dispatch) {
+            return capture(updater.onGuildRoleDelete(shardIndex, dispatch),
+                    () -> delete(shardIndex, EntityType.ROLE, Snowflake.asLong(dispatch.guildId()),
+                            Snowflake.asLong(dispatch.roleId())));
+        }
+
+        @Override
+        public Mono<RoleData> onGuildRoleUpdate(int shardIndex, GuildRoleUpdate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guildId());
+            long roleId = Snowflake.asLong(dispatch.role().id());
+            return capture(updater.onGuildRoleUpdate(shardIndex, dispatch),
+                    () -> upsertOrDelete(shardIndex, EntityType.ROLE, guildId, roleId,
+                            accessor.getRoleById(guildId, roleId)));
+        }
+
+        @Override
+        public Mono<GuildData> onGuildUpdate(int shardIndex, GuildUpdate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guild().id());
+            return capture(updater.onGuildUpdate(shardIndex, dispatch),
+                    () -> upsert(shardIndex, EntityType.GUILD, 0, guildId, accessor.getGuildById(guildId)));
+        }
+
+        @Override
+        public Mono<Void> onShardInvalidation(int shardIndex, InvalidationCause cause) {
+            return capture(updater.onShardInvalidation(shardIndex, cause),
+                    () -> Mono.fromRunnable(() -> emit(shardIndex, Operation.DELETE, EntityType.SHARD, 0, shardIndex,
+                            cause)));
+        }
+
+        @Override
+        public Mono<Void> onMessageCreate(int shardIndex, MessageCreate dispatch) {
+            MessageData message = dispatch.message();
+            long channelId = Snowflake.asLong(message.channelId());
+            return capture(updater.onMessageCreate(shardIndex, dispatch), () -> Mono.when(
+                    message(shardIndex, message.channelId(), message.id()),
+                    accessor.getChannelById(channelId)
+                            .doOnNext(channel -> emit(shardIndex, Operation.UPSERT, EntityType.CHANNEL,
+                                    channel.guildId().isAbsent() ? 0 : Snowflake.asLong(channel.guildId().get()),
+                                    channelId, channel))));
+        }
+
+        @Override
+        public Mono<MessageData> onMessageDelete(int shardIndex, MessageDelete dispatch) {
+            return capture(updater.onMessageDelete(shardIndex, dispatch),
+                    () -> delete(shardIndex, EntityType.MESSAGE, Snowflake.asLong(dispatch.channelId()),
+                            Snowflake.asLong(dispatch.id())));
+        }
+
+        @Override
+        public Mono<Set<MessageData>> onMessageDeleteBulk(int shardIndex, MessageDeleteBulk dispatch) {
+            long channelId = Snowflake.asLong(dispatch.channelId());
+            return capture(updater.onMessageDeleteBulk(shardIndex, dispatch),
+                    () -> Flux.fromIterable(dispatch.ids())
+                            .concatMap(id -> delete(shardIndex, EntityType.MESSAGE, channelId, Snowflake.asLong(id))));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionAdd(int shardIndex, MessageReactionAdd dispatch) {
+            return capture(updater.onMessageReactionAdd(shardIndex, dispatch),
+                    () -> message(shardIndex, dispatch.channelId(), dispatch.messageId()));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemove(int shardIndex, MessageReactionRemove dispatch) {
+            return capture(updater.onMessageReactionRemove(shardIndex, dispatch),
+                    () -> message(shardIndex, dispatch.channelId(), dispatch.messageId()));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemoveAll(int shardIndex, MessageReactionRemoveAll dispatch) {
+            return capture(updater.onMessageReactionRemoveAll(shardIndex, dispatch),
+                    () -> message(shardIndex, dispatch.channelId(), dispatch.messageId()));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemoveEmoji(int shardIndex, MessageReactionRemoveEmoji dispatch) {
+            return capture(updater.onMessageReactionRemoveEmoji(shardIndex, dispatch),
+                    () -> message(shardIndex, dispatch.channelId(), dispatch.messageId()));
+        }
+
+        @Override
+        public Mono<MessageData> onMessageUpdate(int shardIndex, MessageUpdate dispatch) {
+            return capture(updater.onMessageUpdate(shardIndex, dispatch),
+                    () -> message(shardIndex, dispatch.message().channelId(), dispatch.message().id()));
+        }
+
+        @Override
+        public Mono<PresenceAndUserData> onPresenceUpdate(int shardIndex, PresenceUpdate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guildId());
+            long userId = Snowflake.asLong(dispatch.user().id());
+            return capture(updater.onPresenceUpdate(shardIndex, dispatch), () -> Mono.when(
+                    upsertOrDelete(shardIndex, EntityType.PRESENCE, guildId, userId,
+                            accessor.getPresenceById(guildId, userId)),
+                    user(shardIndex, userId)));
+        }
+
+        @Override
+        public Mono<Void> onReady(Ready dispatch) {
+            return capture(updater.onReady(dispatch), () -> user(-1, Snowflake.asLong(dispatch.user().id())));
+        }
+
+        @Override
+        public Mono<UserData> onUserUpdate(int shardIndex, UserUpdate dispatch) {
+            return capture(updater.onUserUpdate(shardIndex, dispatch),
+                    () -> user(shardIndex, Snowflake.asLong(dispatch.user().id())));
+        }
+
+        @Override
+        public Mono<VoiceStateData> onVoiceStateUpdateDispatch(int shardIndex, VoiceStateUpdateDispatch dispatch) {
+            VoiceStateData voiceState = dispatch.voiceState();
+            if (voiceState.guildId().isAbsent()) {
+                return updater.onVoiceStateUpdateDispatch(shardIndex, dispatch);
+            }
+            long guildId = Snowflake.asLong(voiceState.guildId().get());
+            long userId = Snowflake.asLong(voiceState.userId());
+            return capture(updater.onVoiceStateUpdateDispatch(shardIndex, dispatch),
+                    () -> upsertOrDelete(shardIndex, EntityType.VOICE_STATE, guildId, userId,
+                            accessor.getVoiceStateById(guildId, userId)));
+        }
+
+        @Override
+        public Mono<Void> onGuildMembersCompletion(long guildId) {
+            return updater.onGuildMembersCompletion(guildId);
+        }
+    }
+
+    /**
+     * A builder to create {@link ChangeCapturingStoreLayout} instances.
+     */
+    public static class Builder {
+
+        protected final StoreLayout delegate;
+        protected EmissionStrategy emissionStrategy;
+        protected int bufferSize = Integer.MAX_VALUE;
+
+        protected Builder(StoreLayout delegate) {
+            this.delegate = Objects.requireNonNull(delegate);
+        }
+
+        /**
+         * Set the {@link EmissionStrategy} to apply when publishing a change fails, typically because subscribers
+         * are too slow to keep the buffer from filling up. Defaults to {@link EmissionStrategy#park(Duration)},
+         * waiting for subscribers to make room, so no change is lost. A strategy dropping changes, like
+         * {@link EmissionStrategy#timeoutDrop(Duration)}, lets updates proceed without waiting, at the cost of
+         * terminating {@link #changes()} with an overflow error on the first dropped change.
+         *
+         * @param emissionStrategy the emission failure handling strategy
+         * @return this builder
+         */
+        public Builder emissionStrategy(EmissionStrategy emissionStrategy) {
+            this.emissionStrategy = Objects.requireNonNull(emissionStrategy);
+            return this;
+        }
+
+        /**
+         * Set the number of changes queued for subscribers before applying the {@link EmissionStrategy}. Defaults to
+         * an unbounded buffer. With a bounded buffer, changes overflowing it before {@link #changes()} is first
+         * subscribed to cannot wait for a subscriber and are dropped whatever the strategy.
+         *
+         * @param bufferSize the number of changes to queue
+         * @return this builder
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public ChangeCapturingStoreLayout build() {
+            if (emissionStrategy == null) {
+                emissionStrategy = EmissionStrategy.park(Duration.ofMillis(10));
+            }
+            return new ChangeCapturingStoreLayout(delegate, emissionStrategy, bufferSize);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates the maps holding members, users, presences and voice states in a {@link LocalStoreLayout}, keyed by user
+ * ID.
+ */
+interface EntityMaps {
+
+    /**
+     * Keeps entities as regular objects in {@link ConcurrentHashMap} instances.
+     */
+    EntityMaps HEAP = new EntityMaps() {
+        @Override
+        public <V> ConcurrentMap<Long, V> create(Class<V> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    <V> ConcurrentMap<Long, V> create(Class<V> type);
+
+    /**
+     * Create a map holding the entities of all guilds, such as users, which is written concurrently by every shard.
+     */
+    default <V> ConcurrentMap<Long, V> createShared(Class<V> type) {
+        return create(type);
+    }
+}
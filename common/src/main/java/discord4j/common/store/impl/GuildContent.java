@@ -0,0 +1,102 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.GuildData;
+import discord4j.discordjson.json.MemberData;
+import discord4j.discordjson.json.PresenceData;
+import discord4j.discordjson.json.VoiceStateData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the state of a single guild. Relations to channels, roles, emojis and members are kept in dedicated mutable
+ * indexes instead of the ID lists of {@link GuildData}, so they can be updated in constant time.
+ */
+class GuildContent {
+
+    /** Guild data without its channel, role, emoji and member ID lists. */
+    volatile GuildData data;
+    final AtomicInteger memberCount;
+    /** Whether all members of this guild are cached. */
+    volatile boolean membersComplete;
+    final Set<Long> channelIds = ConcurrentHashMap.newKeySet();
+    final Set<Long> roleIds = ConcurrentHashMap.newKeySet();
+    final Set<Long> emojiIds = ConcurrentHashMap.newKeySet();
+    final ConcurrentMap<Long, MemberData> members;
+    final ConcurrentMap<Long, PresenceData> presences;
+    final ConcurrentMap<Long, VoiceStateData> voiceStates;
+
+    GuildContent(GuildData data, EntityMaps maps) {
+        this.data = stripLists(data);
+        this.memberCount = new AtomicInteger(data.memberCount());
+        this.members = maps.create(MemberData.class);
+        this.presences = maps.create(PresenceData.class);
+        this.voiceStates = maps.create(VoiceStateData.class);
+    }
+
+    /**
+     * Materialize the full {@link GuildData} of this guild, including ID lists built from the current indexes.
+     *
+     * @return the current guild data
+     */
+    GuildData toGuildData() {
+        return GuildData.builder()
+                .from(data)
+                .channels(toIds(channelIds))
+                .roles(toIds(roleIds))
+                .emojis(toIds(emojiIds))
+                .members(toIds(members.keySet()))
+                .memberCount(memberCount.get())
+                .build();
+    }
+
+    /**
+     * Discard the members, presences and voice states of this guild.
+     */
+    void clear() {
+        members.clear();
+        presences.clear();
+        voiceStates.clear();
+    }
+
+    private static List<Id> toIds(Collection<Long> ids) {
+        List<Id> list = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            list.add(Id.of(id));
+        }
+        return list;
+    }
+
+    static GuildData stripLists(GuildData data) {
+        return GuildData.builder()
+                .from(data)
+                .channels(Collections.emptyList())
+                .roles(Collections.emptyList())
+                .emojis(Collections.emptyList())
+                .members(Collections.emptyList())
+                .build();
+    }
+}
@@ -0,0 +1,1239 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.layout.StoreProjection;
+import discord4j.common.store.api.object.ExactResultNotAvailableException;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.api.object.PresenceAndUserData;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.*;
+import discord4j.discordjson.json.gateway.*;
+import discord4j.discordjson.possible.Possible;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory {@link StoreLayout} backed by {@link ConcurrentHashMap} instances.
+ * <p>
+ * Unlike {@link discord4j.common.store.legacy.LegacyStoreLayout}, the relations of a guild to its channels, roles,
+ * emojis and members are kept in dedicated indexes per guild, and the ID lists of {@link GuildData} are only
+ * materialized when a guild is read. Adding or removing a member, role or channel is therefore a constant time
+ * operation regardless of the guild size, and guild-scoped counts don't require traversing the guild contents.
+ */
+public class LocalStoreLayout implements StoreLayout, DataAccessor, GatewayDataUpdater {
+
+    private final ConcurrentMap<Long, GuildContent> guilds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Long>> guildsByShard = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ChannelData> channels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, RoleData> roles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, EmojiData> emojis = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, UserData> users;
+    // number of cached guilds each user is a member of, to release users without mutual guilds
+    private final ConcurrentMap<Long, Integer> userRefs = new ConcurrentHashMap<>();
+    private final MessageStore messages;
+    private final EntityMaps entityMaps;
+    private final StoreProjection projection;
+    // id of the current user as received on READY, to flag its own reactions
+    private volatile long selfId;
+
+    LocalStoreLayout(MessageCachePolicy messageCachePolicy, EntityMaps entityMaps, StoreProjection projection) {
+        this.messages = new MessageStore(messageCachePolicy);
+        this.entityMaps = entityMaps;
+        this.projection = projection;
+        this.users = entityMaps.createShared(UserData.class);
+    }
+
+    /**
+     * Create a new, empty {@link LocalStoreLayout} that never evicts messages.
+     *
+     * @return a new in-memory {@link StoreLayout}
+     */
+    public static LocalStoreLayout create() {
+        return create(MessageCachePolicy.unbounded());
+    }
+
+    /**
+     * Create a new, empty {@link LocalStoreLayout} evicting messages according to the given policy.
+     *
+     * @param messageCachePolicy the bounds of the message cache
+     * @return a new in-memory {@link StoreLayout}
+     */
+    public static LocalStoreLayout create(MessageCachePolicy messageCachePolicy) {
+        return create(messageCachePolicy, StoreProjection.none());
+    }
+
+    /**
+     * Create a new, empty {@link LocalStoreLayout} evicting messages according to the given policy, and saving
+     * members, users and presences as projected by the given {@link StoreProjection}.
+     *
+     * @param messageCachePolicy the bounds of the message cache
+     * @param projection the fields of members, users and presences to retain
+     * @return a new in-memory {@link StoreLayout}
+     */
+    public static LocalStoreLayout create(MessageCachePolicy messageCachePolicy, StoreProjection projection) {
+        return new LocalStoreLayout(Objects.requireNonNull(messageCachePolicy), EntityMaps.HEAP,
+                Objects.requireNonNull(projection));
+    }
+
+    /**
+     * Returns a snapshot of the message cache size and eviction counters.
+     *
+     * @return the current {@link MessageCacheStats}
+     */
+    public MessageCacheStats getMessageCacheStats() {
+        return messages.stats();
+    }
+
+    @Override
+    public DataAccessor getDataAccessor() {
+        return this;
+    }
+
+    @Override
+    public GatewayDataUpdater getGatewayDataUpdater() {
+        return this;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////
+    //// Query model methods
+    /////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Mono<Long> countChannels() {
+        return Mono.fromCallable(() -> (long) channels.size());
+    }
+
+    @Override
+    public Mono<Long> countChannelsInGuild(long guildId) {
+        return countInGuild(guildId, guild -> guild.channelIds.size());
+    }
+
+    @Override
+    public Mono<Long> countEmojis() {
+        return Mono.fromCallable(() -> (long) emojis.size());
+    }
+
+    @Override
+    public Mono<Long> countEmojisInGuild(long guildId) {
+        return countInGuild(guildId, guild -> guild.emojiIds.size());
+    }
+
+    @Override
+    public Mono<Long> countGuilds() {
+        return Mono.fromCallable(() -> (long) guilds.size());
+    }
+
+    @Override
+    public Mono<Long> countMembers() {
+        return Mono.fromCallable(() -> guilds.values().stream().mapToLong(guild -> guild.members.size()).sum());
+    }
+
+    @Override
+    public Mono<Long> countMembersInGuild(long guildId) {
+        return countInGuild(guildId, guild -> guild.members.size());
+    }
+
+    @Override
+    public Mono<Long> countExactMembersInGuild(long guildId) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(guildId);
+            if (guild == null || !guild.membersComplete) {
+                throw new ExactResultNotAvailableException();
+            }
+            return (long) guild.members.size();
+        });
+    }
+
+    @Override
+    public Mono<Long> countMessages() {
+        return Mono.fromCallable(messages::count);
+    }
+
+    @Override
+    public Mono<Long> countMessagesInChannel(long channelId) {
+        return Mono.fromCallable(() -> messages.count(channelId));
+    }
+
+    @Override
+    public Mono<Long> countPresences() {
+        return Mono.fromCallable(() -> guilds.values().stream().mapToLong(this::presenceCount).sum());
+    }
+
+    @Override
+    public Mono<Long> countPresencesInGuild(long guildId) {
+        return countInGuild(guildId, this::presenceCount);
+    }
+
+    @Override
+    public Mono<Long> countRoles() {
+        return Mono.fromCallable(() -> (long) roles.size());
+    }
+
+    @Override
+    public Mono<Long> countRolesInGuild(long guildId) {
+        return countInGuild(guildId, guild -> guild.roleIds.size());
+    }
+
+    @Override
+    public Mono<Long> countUsers() {
+        return Mono.fromCallable(() -> (long) users.size());
+    }
+
+    @Override
+    public Mono<Long> countVoiceStates() {
+        return Mono.fromCallable(() -> guilds.values().stream().mapToLong(guild -> guild.voiceStates.size()).sum());
+    }
+
+    @Override
+    public Mono<Long> countVoiceStatesInGuild(long guildId) {
+        return countInGuild(guildId, guild -> guild.voiceStates.size());
+    }
+
+    @Override
+    public Mono<Long> countVoiceStatesInChannel(long guildId, long channelId) {
+        return getVoiceStatesInChannel(guildId, channelId).count();
+    }
+
+    private Mono<Long> countInGuild(long guildId, ToIntFunction<GuildContent> counter) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(guildId);
+            return guild == null ? 0L : counter.applyAsInt(guild);
+        });
+    }
+
+    @Override
+    public Flux<ChannelData> getChannels() {
+        return Flux.defer(() -> Flux.fromIterable(channels.values()));
+    }
+
+    @Override
+    public Flux<ChannelData> getChannelsInGuild(long guildId) {
+        return inGuild(guildId, guild -> lookup(guild.channelIds, channels));
+    }
+
+    @Override
+    public Mono<ChannelData> getChannelById(long channelId) {
+        return Mono.fromCallable(() -> channels.get(channelId));
+    }
+
+    @Override
+    public Flux<EmojiData> getEmojis() {
+        return Flux.defer(() -> Flux.fromIterable(emojis.values()));
+    }
+
+    @Override
+    public Flux<EmojiData> getEmojisInGuild(long guildId) {
+        return inGuild(guildId, guild -> lookup(guild.emojiIds, emojis));
+    }
+
+    @Override
+    public Mono<EmojiData> getEmojiById(long guildId, long emojiId) {
+        return Mono.fromCallable(() -> emojis.get(emojiId));
+    }
+
+    @Override
+    public Flux<GuildData> getGuilds() {
+        return Flux.defer(() -> Flux.fromIterable(guilds.values())).map(GuildContent::toGuildData);
+    }
+
+    @Override
+    public Mono<GuildData> getGuildById(long guildId) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(guildId);
+            return guild == null ? null : guild.toGuildData();
+        });
+    }
+
+    @Override
+    public Flux<MemberData> getMembers() {
+        return Flux.defer(() -> Flux.fromIterable(guilds.values()))
+                .flatMapIterable(guild -> guild.members.values());
+    }
+
+    @Override
+    public Flux<MemberData> getMembersInGuild(long guildId) {
+        return inGuild(guildId, guild -> guild.members.values());
+    }
+
+    @Override
+    public Flux<MemberData> getExactMembersInGuild(long guildId) {
+        return Flux.defer(() -> {
+            GuildContent guild = guilds.get(guildId);
+            if (guild == null || !guild.membersComplete) {
+                return Flux.error(new ExactResultNotAvailableException());
+            }
+            return Flux.fromIterable(guild.members.values());
+        });
+    }
+
+    @Override
+    public Mono<MemberData> getMemberById(long guildId, long userId) {
+        return fromGuild(guildId, guild -> guild.members.get(userId));
+    }
+
+    @Override
+    public Flux<MemberData> getMembersByIds(long guildId, long[] userIds) {
+        return inGuild(guildId, guild -> lookup(userIds, guild.members));
+    }
+
+    @Override
+    public Flux<MessageData> getMessages() {
+        return Flux.defer(() -> Flux.fromIterable(messages.values()));
+    }
+
+    @Override
+    public Flux<MessageData> getMessagesInChannel(long channelId) {
+        return Flux.defer(() -> Flux.fromIterable(messages.values(channelId)));
+    }
+
+    /**
+     * Retrieves the latest messages of the channel with the given ID, from the newest to the oldest.
+     *
+     * @param channelId the channel ID
+     * @param limit the maximum number of messages to return
+     * @return a {@link Flux} emitting up to {@code limit} of the latest messages in the channel
+     */
+    public Flux<MessageData> getLatestMessagesInChannel(long channelId, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(messages.latest(channelId, limit)));
+    }
+
+    @Override
+    public Mono<MessageData> getMessageById(long channelId, long messageId) {
+        return Mono.fromCallable(() -> messages.get(channelId, messageId));
+    }
+
+    @Override
+    public Flux<PresenceData> getPresences() {
+        return Flux.defer(() -> Flux.fromIterable(guilds.values()))
+                .flatMapIterable(this::presencesOf);
+    }
+
+    @Override
+    public Flux<PresenceData> getPresencesInGuild(long guildId) {
+        return inGuild(guildId, this::presencesOf);
+    }
+
+    @Override
+    public Mono<PresenceData> getPresenceById(long guildId, long userId) {
+        return fromGuild(guildId, guild -> presenceOf(guild, userId));
+    }
+
+    /**
+     * Returns the presence of a guild member, which is offline if presences of offline members are not saved and
+     * there is none for it.
+     */
+    @Nullable
+    private PresenceData presenceOf(GuildContent guild, long userId) {
+        PresenceData presence = guild.presences.get(userId);
+        if (presence != null || projection.storesOfflinePresences()) {
+            return presence;
+        }
+        MemberData member = guild.members.get(userId);
+        return member == null ? null : createPresence(member);
+    }
+
+    private Collection<PresenceData> presencesOf(GuildContent guild) {
+        if (projection.storesOfflinePresences()) {
+            return guild.presences.values();
+        }
+        List<PresenceData> result = new ArrayList<>(guild.presences.values());
+        guild.members.forEach((userId, member) -> {
+            if (!guild.presences.containsKey(userId)) {
+                result.add(createPresence(member));
+            }
+        });
+        return result;
+    }
+
+    private int presenceCount(GuildContent guild) {
+        int count = guild.presences.size();
+        if (!projection.storesOfflinePresences()) {
+            for (Long userId : guild.members.keySet()) {
+                if (!guild.presences.containsKey(userId)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Flux<RoleData> getRoles() {
+        return Flux.defer(() -> Flux.fromIterable(roles.values()));
+    }
+
+    @Override
+    public Flux<RoleData> getRolesInGuild(long guildId) {
+        return inGuild(guildId, guild -> lookup(guild.roleIds, roles));
+    }
+
+    @Override
+    public Mono<RoleData> getRoleById(long guildId, long roleId) {
+        return Mono.fromCallable(() -> roles.get(roleId));
+    }
+
+    @Override
+    public Flux<RoleData> getRolesByIds(long guildId, long[] roleIds) {
+        return inGuild(guildId, guild -> {
+            // roles are stored by ID only, so keep those of this guild
+            List<RoleData> result = new ArrayList<>(roleIds.length);
+            for (long roleId : roleIds) {
+                RoleData role = guild.roleIds.contains(roleId) ? roles.get(roleId) : null;
+                if (role != null) {
+                    result.add(role);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public Flux<UserData> getUsers() {
+        return Flux.defer(() -> Flux.fromIterable(users.values()));
+    }
+
+    @Override
+    public Mono<UserData> getUserById(long userId) {
+        return Mono.fromCallable(() -> users.get(userId));
+    }
+
+    @Override
+    public Flux<UserData> getUsersByIds(long[] userIds) {
+        return Flux.defer(() -> Flux.fromIterable(lookup(userIds, users)));
+    }
+
+    @Override
+    public Flux<VoiceStateData> getVoiceStates() {
+        return Flux.defer(() -> Flux.fromIterable(guilds.values()))
+                .flatMapIterable(guild -> guild.voiceStates.values());
+    }
+
+    @Override
+    public Flux<VoiceStateData> getVoiceStatesInChannel(long guildId, long channelId) {
+        return getVoiceStatesInGuild(guildId)
+                .filter(data -> data.channelId()
+                        .filter(id -> Snowflake.asLong(id) == channelId)
+                        .isPresent());
+    }
+
+    @Override
+    public Flux<VoiceStateData> getVoiceStatesInGuild(long guildId) {
+        return inGuild(guildId, guild -> guild.voiceStates.values());
+    }
+
+    @Override
+    public Mono<VoiceStateData> getVoiceStateById(long guildId, long userId) {
+        return fromGuild(guildId, guild -> guild.voiceStates.get(userId));
+    }
+
+    private <T> Flux<T> inGuild(long guildId, Function<GuildContent, Iterable<T>> contents) {
+        return Flux.defer(() -> {
+            GuildContent guild = guilds.get(guildId);
+            return guild == null ? Flux.empty() : Flux.fromIterable(contents.apply(guild));
+        });
+    }
+
+    private <T> Mono<T> fromGuild(long guildId, Function<GuildContent, T> content) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(guildId);
+            return guild == null ? null : content.apply(guild);
+        });
+    }
+
+    private static <T> List<T> lookup(Set<Long> ids, Map<Long, T> source) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T value = source.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<T> lookup(long[] ids, Map<Long, T> source) {
+        List<T> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T value = source.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////
+    //// Command model methods
+    /////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Mono<Void> onChannelCreate(int shardIndex, ChannelCreate dispatch) {
+        return Mono.fromRunnable(() -> {
+            ChannelData channel = dispatch.channel();
+            if (channel.guildId().isAbsent()) {
+                return; // private channels are not cached
+            }
+            long channelId = Snowflake.asLong(channel.id());
+            GuildContent guild = guilds.get(Snowflake.asLong(channel.guildId().get()));
+            if (guild != null) {
+                guild.channelIds.add(channelId);
+            }
+            channels.put(channelId, channel);
+        });
+    }
+
+    @Override
+    public Mono<ChannelData> onChannelDelete(int shardIndex, ChannelDelete dispatch) {
+        return Mono.fromCallable(() -> {
+            ChannelData channel = dispatch.channel();
+            if (channel.guildId().isAbsent()) {
+                return null;
+            }
+            long channelId = Snowflake.asLong(channel.id());
+            GuildContent guild = guilds.get(Snowflake.asLong(channel.guildId().get()));
+            if (guild != null) {
+                guild.channelIds.remove(channelId);
+            }
+            messages.removeChannel(channelId);
+            return channels.remove(channelId);
+        });
+    }
+
+    @Override
+    public Mono<ChannelData> onChannelUpdate(int shardIndex, ChannelUpdate dispatch) {
+        return Mono.fromCallable(() -> {
+            ChannelData channel = dispatch.channel();
+            if (channel.guildId().isAbsent()) {
+                return null;
+            }
+            return channels.put(Snowflake.asLong(channel.id()), channel);
+        });
+    }
+
+    @Override
+    public Mono<Void> onGuildCreate(int shardIndex, GuildCreate dispatch) {
+        return Mono.fromRunnable(() -> {
+            GuildCreateData createData = dispatch.guild();
+            long guildId = Snowflake.asLong(createData.id());
+            GuildContent guild = new GuildContent(GuildData.builder().from(createData).build(), entityMaps);
+
+            for (ChannelData channel : createData.channels()) {
+                long channelId = Snowflake.asLong(channel.id());
+                guild.channelIds.add(channelId);
+                channels.put(channelId, ChannelData.builder().from(channel).guildId(createData.id()).build());
+            }
+            for (RoleData role : createData.roles()) {
+                long roleId = Snowflake.asLong(role.id());
+                guild.roleIds.add(roleId);
+                roles.put(roleId, role);
+            }
+            for (EmojiData emoji : createData.emojis()) {
+                long emojiId = Snowflake.asLong(emoji.id().orElseThrow(NoSuchElementException::new));
+                guild.emojiIds.add(emojiId);
+                emojis.put(emojiId, emoji);
+            }
+            for (PresenceData presence : createData.presences()) {
+                set(guild.presences, Snowflake.asLong(presence.user().id()), projection.projectPresence(presence));
+            }
+            for (VoiceStateData voiceState : createData.voiceStates()) {
+                set(guild.voiceStates, Snowflake.asLong(voiceState.userId()), VoiceStateData.builder()
+                        .from(voiceState)
+                        .guildId(createData.id())
+                        .build());
+            }
+
+            for (MemberData member : createData.members()) {
+                saveMember(guild, member);
+            }
+            guild.membersComplete = !createData.large() && guild.members.size() >= guild.memberCount.get();
+            GuildContent old = guilds.put(guildId, guild);
+            if (old != null) {
+                // a re-sent guild keeps the messages of its remaining channels and the users of its remaining members
+                release(old, guild);
+            }
+            guildsByShard.computeIfAbsent(shardIndex, k -> ConcurrentHashMap.newKeySet()).add(guildId);
+        });
+    }
+
+    @Override
+    public Mono<GuildData> onGuildDelete(int shardIndex, GuildDelete dispatch) {
+        return Mono.fromCallable(() -> {
+            long guildId = Snowflake.asLong(dispatch.guild().id());
+            Set<Long> shardGuilds = guildsByShard.get(shardIndex);
+            if (shardGuilds != null) {
+                shardGuilds.remove(guildId);
+            }
+            GuildContent guild = guilds.get(guildId);
+            GuildData data = guild == null ? null : guild.toGuildData();
+            removeGuild(guildId);
+            return data;
+        });
+    }
+
+    @Nullable
+    private GuildContent removeGuild(long guildId) {
+        GuildContent guild = guilds.remove(guildId);
+        if (guild != null) {
+            release(guild, null);
+        }
+        return guild;
+    }
+
+    /**
+     * Release the entities referenced by a guild that is no longer cached. Channels, roles and emojis still
+     * referenced by the given replacement are kept, and the users of its members are only released once per
+     * guild, so members saved again by the replacement remain cached.
+     */
+    private void release(GuildContent guild, @Nullable GuildContent replacement) {
+        for (long channelId : guild.channelIds) {
+            if (replacement == null || !replacement.channelIds.contains(channelId)) {
+                messages.removeChannel(channelId);
+                channels.remove(channelId);
+            }
+        }
+        for (long roleId : guild.roleIds) {
+            if (replacement == null || !replacement.roleIds.contains(roleId)) {
+                roles.remove(roleId);
+            }
+        }
+        for (long emojiId : guild.emojiIds) {
+            if (replacement == null || !replacement.emojiIds.contains(emojiId)) {
+                emojis.remove(emojiId);
+            }
+        }
+        guild.members.keySet().forEach(this::releaseUser);
+        guild.clear();
+    }
+
+    /**
+     * Discard all cached entities.
+     */
+    void clear() {
+        guildsByShard.clear();
+        guilds.keySet().forEach(this::removeGuild);
+        users.clear();
+        userRefs.clear();
+        channels.keySet().forEach(messages::removeChannel);
+        channels.clear();
+        roles.clear();
+        emojis.clear();
+    }
+
+    /**
+     * Write all cached entities to the given snapshot, each guild being followed by its contents.
+     */
+    void writeSnapshot(SnapshotFile.Writer writer) throws IOException {
+        writer.write(SnapshotFile.SELF, 0, selfId, null);
+        for (Map.Entry<Integer, Set<Long>> shard : guildsByShard.entrySet()) {
+            for (long guildId : shard.getValue()) {
+                GuildContent guild = guilds.get(guildId);
+                if (guild == null) {
+                    continue;
+                }
+                writer.write(SnapshotFile.GUILD, shard.getKey(), guildId, GuildData.builder()
+                        .from(guild.data)
+                        .memberCount(guild.memberCount.get())
+                        .build());
+                if (guild.membersComplete) {
+                    writer.write(SnapshotFile.MEMBERS_COMPLETE, guildId, 0, null);
+                }
+                writeAll(writer, SnapshotFile.CHANNEL, guildId, guild.channelIds, channels);
+                writeAll(writer, SnapshotFile.ROLE, guildId, guild.roleIds, roles);
+                writeAll(writer, SnapshotFile.EMOJI, guildId, guild.emojiIds, emojis);
+                writeAll(writer, SnapshotFile.MEMBER, guildId, guild.members);
+                writeAll(writer, SnapshotFile.PRESENCE, guildId, guild.presences);
+                writeAll(writer, SnapshotFile.VOICE_STATE, guildId, guild.voiceStates);
+            }
+        }
+        for (Map.Entry<Long, UserData> user : users.entrySet()) {
+            writer.write(SnapshotFile.USER, 0, user.getKey(), user.getValue());
+        }
+        for (Map.Entry<Long, ChannelData> channel : channels.entrySet()) {
+            if (channel.getValue().guildId().isAbsent()) {
+                writer.write(SnapshotFile.CHANNEL, 0, channel.getKey(), channel.getValue());
+            }
+        }
+        for (MessageData message : messages.values()) {
+            writer.write(SnapshotFile.MESSAGE, Snowflake.asLong(message.channelId()), Snowflake.asLong(message.id()),
+                    message);
+        }
+    }
+
+    private static void writeAll(SnapshotFile.Writer writer, byte kind, long guildId, Set<Long> ids,
+                                 Map<Long, ?> source) throws IOException {
+        for (long id : ids) {
+            Object value = source.get(id);
+            if (value != null) {
+                writer.write(kind, guildId, id, value);
+            }
+        }
+    }
+
+    private static void writeAll(SnapshotFile.Writer writer, byte kind, long guildId,
+                                 Map<Long, ?> source) throws IOException {
+        for (Map.Entry<Long, ?> entry : source.entrySet()) {
+            writer.write(kind, guildId, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Restore an entity read from a snapshot written by {@link #writeSnapshot(SnapshotFile.Writer)}.
+     */
+    void restore(byte kind, long key1, long key2, @Nullable Object value) {
+        GuildContent guild = kind == SnapshotFile.GUILD ? null : guilds.get(key1);
+        switch (kind) {
+            case SnapshotFile.SELF:
+                selfId = key2;
+                break;
+            case SnapshotFile.GUILD:
+                guilds.put(key2, new GuildContent((GuildData) value, entityMaps));
+                guildsByShard.computeIfAbsent((int) key1, k -> ConcurrentHashMap.newKeySet()).add(key2);
+                break;
+            case SnapshotFile.MEMBERS_COMPLETE:
+                if (guild != null) {
+                    guild.membersComplete = true;
+                }
+                break;
+            case SnapshotFile.CHANNEL:
+                channels.put(key2, (ChannelData) value);
+                if (guild != null) {
+                    guild.channelIds.add(key2);
+                }
+                break;
+            case SnapshotFile.ROLE:
+                roles.put(key2, (RoleData) value);
+                if (guild != null) {
+                    guild.roleIds.add(key2);
+                }
+                break;
+            case SnapshotFile.EMOJI:
+                emojis.put(key2, (EmojiData) value);
+                if (guild != null) {
+                    guild.emojiIds.add(key2);
+                }
+                break;
+            case SnapshotFile.MEMBER:
+                if (guild != null) {
+                    saveMember(guild, (MemberData) value);
+                }
+                break;
+            case SnapshotFile.PRESENCE:
+                if (guild != null) {
+                    set(guild.presences, key2, (PresenceData) value);
+                }
+                break;
+            case SnapshotFile.VOICE_STATE:
+                if (guild != null) {
+                    set(guild.voiceStates, key2, (VoiceStateData) value);
+                }
+                break;
+            case SnapshotFile.USER:
+                set(users, key2, (UserData) value);
+                break;
+            case SnapshotFile.MESSAGE:
+                messages.save(key1, key2, (MessageData) value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown snapshot entry kind " + kind);
+        }
+    }
+
+    @Override
+    public Mono<Set<EmojiData>> onGuildEmojisUpdate(int shardIndex, GuildEmojisUpdate dispatch) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild == null) {
+                return null;
+            }
+            Set<EmojiData> oldEmojis = new HashSet<>(lookup(guild.emojiIds, emojis));
+            Set<Long> newIds = new HashSet<>();
+            for (EmojiData emoji : dispatch.emojis()) {
+                long emojiId = Snowflake.asLong(emoji.id().orElseThrow(NoSuchElementException::new));
+                newIds.add(emojiId);
+                guild.emojiIds.add(emojiId);
+                emojis.put(emojiId, emoji);
+            }
+            for (Iterator<Long> it = guild.emojiIds.iterator(); it.hasNext(); ) {
+                Long emojiId = it.next();
+                if (!newIds.contains(emojiId)) {
+                    it.remove();
+                    emojis.remove(emojiId);
+                }
+            }
+            return oldEmojis;
+        });
+    }
+
+    @Override
+    public Mono<Void> onGuildMemberAdd(int shardIndex, GuildMemberAdd dispatch) {
+        return Mono.fromRunnable(() -> {
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild != null && saveMember(guild, dispatch.member())) {
+                guild.memberCount.incrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public Mono<MemberData> onGuildMemberRemove(int shardIndex, GuildMemberRemove dispatch) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild == null) {
+                return null;
+            }
+            long userId = Snowflake.asLong(dispatch.user().id());
+            MemberData member = guild.members.remove(userId);
+            if (member == null) {
+                return null;
+            }
+            guild.memberCount.decrementAndGet();
+            guild.presences.remove(userId);
+            releaseUser(userId);
+            return member;
+        });
+    }
+
+    @Override
+    public Mono<Void> onGuildMembersChunk(int shardIndex, GuildMembersChunk dispatch) {
+        return Mono.fromRunnable(() -> {
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild == null) {
+                return;
+            }
+            for (MemberData member : dispatch.members()) {
+                saveMember(guild, member);
+            }
+        });
+    }
+
+    /**
+     * Save a member of a cached guild along with its user, creating an offline presence for it if missing.
+     *
+     * @return whether the member was not already cached
+     */
+    private boolean saveMember(GuildContent guild, MemberData data) {
+        MemberData member = projection.projectMember(data);
+        long userId = Snowflake.asLong(member.user().id());
+        boolean added = set(guild.members, userId, member);
+        if (added) {
+            userRefs.compute(userId, (id, refs) -> {
+                set(users, id, member.user());
+                return refs == null ? 1 : refs + 1;
+            });
+        } else {
+            set(users, userId, member.user());
+        }
+        if (projection.storesOfflinePresences()) {
+            guild.presences.computeIfAbsent(userId, id -> createPresence(member));
+        }
+        return added;
+    }
+
+    private void saveUser(UserData user) {
+        set(users, Snowflake.asLong(user.id()), projection.projectUser(user));
+    }
+
+    private void releaseUser(long userId) {
+        userRefs.computeIfPresent(userId, (id, refs) -> {
+            if (refs > 1) {
+                return refs - 1;
+            }
+            users.remove(id);
+            return null;
+        });
+    }
+
+    private static PresenceData createPresence(MemberData member) {
+        return PresenceData.builder()
+                .user(PartialUserData.builder()
+                        .id(member.user().id())
+                        .username(member.user().username())
+                        .discriminator(member.user().discriminator())
+                        .avatar(Possible.of(member.user().avatar()))
+                        .bot(member.user().bot())
+                        .system(member.user().system())
+                        .mfaEnabled(member.user().mfaEnabled())
+                        .locale(member.user().locale())
+                        .verified(member.user().verified())
+                        .email(member.user().email().isAbsent() ? Possible.absent() :
+                                member.user().email().get().map(Possible::of).orElse(Possible.absent()))
+                        .flags(member.user().flags())
+                        .premiumType(member.user().premiumType())
+                        .build())
+                .status("offline")
+                .clientStatus(ClientStatusData.builder()
+                        .desktop(Possible.absent())
+                        .mobile(Possible.absent())
+                        .web(Possible.absent())
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Mono<MemberData> onGuildMemberUpdate(int shardIndex, GuildMemberUpdate dispatch) {
+        return fromGuild(Snowflake.asLong(dispatch.guildId()), guild -> update(guild.members,
+                Snowflake.asLong(dispatch.user().id()), oldMember -> projection.projectMember(MemberData.builder()
+                        .from(oldMember)
+                        .roles(dispatch.roles().stream().map(Id::of).collect(Collectors.toList()))
+                        .user(dispatch.user())
+                        .nick(dispatch.nick())
+                        .joinedAt(dispatch.joinedAt())
+                        .premiumSince(dispatch.premiumSince())
+                        .pending(dispatch.pending())
+                        .build())));
+    }
+
+    @Override
+    public Mono<Void> onGuildRoleCreate(int shardIndex, GuildRoleCreate dispatch) {
+        return Mono.fromRunnable(() -> {
+            RoleData role = dispatch.role();
+            long roleId = Snowflake.asLong(role.id());
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild != null) {
+                guild.roleIds.add(roleId);
+            }
+            roles.put(roleId, role);
+        });
+    }
+
+    @Override
+    public Mono<RoleData> onGuildRoleDelete(int shardIndex, GuildRoleDelete dispatch) {
+        return Mono.fromCallable(() -> {
+            long roleId = Snowflake.asLong(dispatch.roleId());
+            RoleData role = roles.remove(roleId);
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            if (guild != null && guild.roleIds.remove(roleId)) {
+                for (Long memberId : guild.members.keySet()) {
+                    guild.members.computeIfPresent(memberId, (id, member) -> {
+                        if (!member.roles().contains(dispatch.roleId())) {
+                            return member;
+                        }
+                        List<Id> memberRoles = new ArrayList<>(member.roles());
+                        memberRoles.remove(dispatch.roleId());
+                        return MemberData.builder().from(member).roles(memberRoles).build();
+                    });
+                }
+            }
+            return role;
+        });
+    }
+
+    @Override
+    public Mono<RoleData> onGuildRoleUpdate(int shardIndex, GuildRoleUpdate dispatch) {
+        return Mono.fromCallable(() -> roles.put(Snowflake.asLong(dispatch.role().id()), dispatch.role()));
+    }
+
+    @Override
+    public Mono<GuildData> onGuildUpdate(int shardIndex, GuildUpdate dispatch) {
+        return Mono.fromCallable(() -> {
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guild().id()));
+            if (guild == null) {
+                return null;
+            }
+            GuildData oldData = guild.toGuildData();
+            guild.data = GuildContent.stripLists(GuildData.builder()
+                    .from(oldData)
+                    .from(dispatch.guild())
+                    .build());
+            replaceIds(guild.roleIds, dispatch.guild().roles().stream()
+                    .map(role -> Snowflake.asLong(role.id()))
+                    .collect(Collectors.toSet()));
+            replaceIds(guild.emojiIds, dispatch.guild().emojis().stream()
+                    .map(EmojiData::id)
+                    .filter(Optional::isPresent)
+                    .map(id -> Snowflake.asLong(id.get()))
+                    .collect(Collectors.toSet()));
+            return oldData;
+        });
+    }
+
+    private static void replaceIds(Set<Long> target, Set<Long> ids) {
+        target.retainAll(ids);
+        target.addAll(ids);
+    }
+
+    @Override
+    public Mono<Void> onShardInvalidation(int shardIndex, InvalidationCause cause) {
+        return Mono.fromRunnable(() -> {
+            Set<Long> shardGuilds = guildsByShard.remove(shardIndex);
+            if (shardGuilds != null) {
+                shardGuilds.forEach(this::removeGuild);
+            }
+        });
+    }
+
+    @Override
+    public Mono<Void> onMessageCreate(int shardIndex, MessageCreate dispatch) {
+        return Mono.fromRunnable(() -> {
+            MessageData message = dispatch.message();
+            messages.save(Snowflake.asLong(message.channelId()), Snowflake.asLong(message.id()), message);
+            channels.computeIfPresent(Snowflake.asLong(message.channelId()), (id, channel) -> ChannelData.builder()
+                    .from(channel)
+                    .lastMessageId(message.id())
+                    .build());
+        });
+    }
+
+    @Override
+    public Mono<MessageData> onMessageDelete(int shardIndex, MessageDelete dispatch) {
+        return Mono.fromCallable(() -> messages.remove(Snowflake.asLong(dispatch.channelId()),
+                Snowflake.asLong(dispatch.id())));
+    }
+
+    @Override
+    public Mono<Set<MessageData>> onMessageDeleteBulk(int shardIndex, MessageDeleteBulk dispatch) {
+        return Mono.fromCallable(() -> new HashSet<>(messages.removeAll(Snowflake.asLong(dispatch.channelId()),
+                dispatch.ids().stream().map(Snowflake::asLong).collect(Collectors.toList()))));
+    }
+
+    @Override
+    public Mono<Void> onMessageReactionAdd(int shardIndex, MessageReactionAdd dispatch) {
+        return Mono.fromRunnable(() -> messages.update(Snowflake.asLong(dispatch.channelId()),
+                Snowflake.asLong(dispatch.messageId()), oldMessage -> {
+            boolean me = Snowflake.asLong(dispatch.userId()) == selfId;
+            List<ReactionData> reactions = new ArrayList<>(oldMessage.reactions().toOptional()
+                    .orElse(Collections.emptyList()));
+            int i = indexOfReactionByEmojiData(reactions, dispatch.emoji());
+            if (i < reactions.size()) {
+                // message already has this reaction: bump 1
+                ReactionData existing = reactions.get(i);
+                reactions.set(i, ReactionData.builder()
+                        .from(existing)
+                        .me(existing.me() || me)
+                        .count(existing.count() + 1)
+                        .build());
+            } else {
+                // message doesn't have this reaction: create
+                reactions.add(ReactionData.builder()
+                        .emoji(dispatch.emoji())
+                        .me(me)
+                        .count(1)
+                        .build());
+            }
+            return MessageData.builder().from(oldMessage).reactions(reactions).build();
+        }));
+    }
+
+    @Override
+    public Mono<Void> onMessageReactionRemove(int shardIndex, MessageReactionRemove dispatch) {
+        return Mono.fromRunnable(() -> messages.update(Snowflake.asLong(dispatch.channelId()),
+                Snowflake.asLong(dispatch.messageId()), oldMessage -> {
+            if (oldMessage.reactions().isAbsent()) {
+                return oldMessage;
+            }
+            boolean me = Snowflake.asLong(dispatch.userId()) == selfId;
+            List<ReactionData> reactions = new ArrayList<>(oldMessage.reactions().get());
+            int i = indexOfReactionByEmojiData(reactions, dispatch.emoji());
+            if (i < reactions.size()) {
+                ReactionData existing = reactions.get(i);
+                if (existing.count() - 1 == 0) {
+                    reactions.remove(i);
+                } else {
+                    reactions.set(i, ReactionData.builder()
+                            .from(existing)
+                            .count(existing.count() - 1)
+                            .me(!me && existing.me())
+                            .build());
+                }
+            }
+            return MessageData.builder().from(oldMessage).reactions(reactions).build();
+        }));
+    }
+
+    @Override
+    public Mono<Void> onMessageReactionRemoveAll(int shardIndex, MessageReactionRemoveAll dispatch) {
+        return Mono.fromRunnable(() -> messages.update(Snowflake.asLong(dispatch.channelId()),
+                Snowflake.asLong(dispatch.messageId()),
+                message -> MessageData.builder()
+                        .from(message)
+                        .reactions(Possible.absent())
+                        .build()));
+    }
+
+    @Override
+    public Mono<Void> onMessageReactionRemoveEmoji(int shardIndex, MessageReactionRemoveEmoji dispatch) {
+        return Mono.fromRunnable(() -> messages.update(Snowflake.asLong(dispatch.channelId()),
+                Snowflake.asLong(dispatch.messageId()), oldMessage -> {
+            if (oldMessage.reactions().isAbsent()) {
+                return oldMessage;
+            }
+            List<ReactionData> reactions = new ArrayList<>(oldMessage.reactions().get());
+            int i = indexOfReactionByEmojiData(reactions, dispatch.emoji());
+            if (i < reactions.size()) {
+                reactions.remove(i);
+            }
+            return MessageData.builder().from(oldMessage).reactions(reactions).build();
+        }));
+    }
+
+    private static int indexOfReactionByEmojiData(List<ReactionData> reactions, EmojiData emojiData) {
+        int i;
+        for (i = 0; i < reactions.size(); i++) {
+            ReactionData r = reactions.get(i);
+            // (non-null id && matching id) OR (null id && matching name)
+            boolean emojiHasId = emojiData.id().isPresent();
+            if ((emojiHasId && emojiData.id().equals(r.emoji().id()))
+                    || (!emojiHasId && emojiData.name().equals(r.emoji().name()))) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public Mono<MessageData> onMessageUpdate(int shardIndex, MessageUpdate dispatch) {
+        PartialMessageData messageData = dispatch.message();
+
+        return Mono.fromCallable(() -> messages.update(Snowflake.asLong(messageData.channelId()),
+                Snowflake.asLong(messageData.id()),
+                oldMessageData -> MessageData.builder()
+                        .from(oldMessageData)
+                        .content(messageData.content().toOptional()
+                                .orElse(oldMessageData.content()))
+                        .embeds(messageData.embeds())
+                        .mentions(messageData.mentions())
+                        .mentionRoles(messageData.mentionRoles())
+                        .mentionEveryone(messageData.mentionEveryone().toOptional()
+                                .orElse(oldMessageData.mentionEveryone()))
+                        .editedTimestamp(messageData.editedTimestamp())
+                        .build()));
+    }
+
+    @Override
+    public Mono<PresenceAndUserData> onPresenceUpdate(int shardIndex, PresenceUpdate dispatch) {
+        PartialUserData userData = dispatch.user();
+        long userId = Snowflake.asLong(userData.id());
+
+        return Mono.fromCallable(() -> {
+            PresenceData presenceData = projection.projectPresence(PresenceData.builder()
+                    .user(dispatch.user())
+                    .status(dispatch.status())
+                    .activities(dispatch.activities())
+                    .clientStatus(dispatch.clientStatus())
+                    .build());
+            GuildContent guild = guilds.get(Snowflake.asLong(dispatch.guildId()));
+            PresenceData oldPresence = guild == null ? null : updatePresence(guild, userId, presenceData);
+            UserData oldUser = update(users, userId, oldUserData -> projection.projectUser(UserData.builder()
+                    .from(oldUserData)
+                    .username(userData.username().toOptional()
+                            .orElse(oldUserData.username()))
+                    .discriminator(userData.discriminator().toOptional()
+                            .orElse(oldUserData.discriminator()))
+                    .avatar(userData.avatar().isAbsent() ? oldUserData.avatar() :
+                            Possible.flatOpt(userData.avatar()))
+                    .build()));
+            return PresenceAndUserData.of(oldPresence, oldUser);
+        });
+    }
+
+    @Nullable
+    private PresenceData updatePresence(GuildContent guild, long userId, PresenceData presence) {
+        if (projection.storesOfflinePresences()) {
+            return guild.presences.replace(userId, presence);
+        }
+        PresenceData oldPresence = presenceOf(guild, userId);
+        if (oldPresence != null) {
+            // absent presences of members are offline ones
+            if ("offline".equals(presence.status())) {
+                guild.presences.remove(userId);
+            } else {
+                set(guild.presences, userId, presence);
+            }
+        }
+        return oldPresence;
+    }
+
+    @Override
+    public Mono<Void> onReady(Ready dispatch) {
+        return Mono.fromRunnable(() -> {
+            selfId = Snowflake.asLong(dispatch.user().id());
+            saveUser(dispatch.user());
+        });
+    }
+
+    @Override
+    public Mono<UserData> onUserUpdate(int shardIndex, UserUpdate dispatch) {
+        return Mono.fromCallable(() -> users.put(Snowflake.asLong(dispatch.user().id()),
+                projection.projectUser(dispatch.user())));
+    }
+
+    @Override
+    public Mono<VoiceStateData> onVoiceStateUpdateDispatch(int shardIndex, VoiceStateUpdateDispatch dispatch) {
+        VoiceStateData voiceStateData = dispatch.voiceState();
+        long guildId = Snowflake.asLong(voiceStateData.guildId().get());
+        long userId = Snowflake.asLong(voiceStateData.userId());
+
+        return fromGuild(guildId, guild -> voiceStateData.channelId().isPresent()
+                ? guild.voiceStates.put(userId, voiceStateData)
+                : guild.voiceStates.remove(userId));
+    }
+
+    @Override
+    public Mono<Void> onGuildMembersCompletion(long guildId) {
+        return Mono.fromRunnable(() -> {
+            GuildContent guild = guilds.get(guildId);
+            if (guild != null) {
+                guild.membersComplete = true;
+            }
+        });
+    }
+
+    /**
+     * Map the given key to the given value, without decoding the previous value of maps keeping their values
+     * serialized.
+     *
+     * @return whether the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> boolean set(ConcurrentMap<Long, V> map, long key, V value) {
+        if (map instanceof OffHeapMap) {
+            return ((OffHeapMap<V>) map).set(key, value);
+        }
+        return map.put(key, value) == null;
+    }
+
+    /**
+     * Atomically replace the value mapped to the given key, if present.
+     *
+     * @return the previous value, or {@code null} if none was present
+     */
+    @Nullable
+    private static <V> V update(ConcurrentMap<Long, V> map, long key, UnaryOperator<V> updater) {
+        List<V> old = new ArrayList<>(1);
+        map.computeIfPresent(key, (k, value) -> {
+            old.clear();
+            old.add(value);
+            return updater.apply(value);
+        });
+        return old.isEmpty() ? null : old.get(0);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import reactor.util.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Defines the bounds of the message cache of a {@link LocalStoreLayout}. By default, messages are never evicted.
+ * <p>
+ * Bounds are enforced when messages are saved: once a channel holds more than {@link #getMaxPerChannel()} messages,
+ * its oldest messages are evicted; once the whole cache holds more than {@link #getMaxTotal()} messages or contains
+ * messages older than {@link #getMaxAge()}, the oldest messages overall are evicted. Message age is derived from the
+ * message ID, unless a frequency-based policy is used.
+ */
+public class MessageCachePolicy {
+
+    private static final MessageCachePolicy UNBOUNDED = builder().build();
+
+    private final int maxPerChannel;
+    private final long maxTotal;
+    @Nullable
+    private final Duration maxAge;
+    private final boolean frequencyBased;
+
+    private MessageCachePolicy(Builder builder) {
+        this.maxPerChannel = builder.maxPerChannel;
+        this.maxTotal = builder.maxTotal;
+        this.maxAge = builder.maxAge;
+        this.frequencyBased = builder.frequencyBased;
+    }
+
+    /**
+     * Returns a policy that never evicts messages.
+     *
+     * @return an unbounded {@link MessageCachePolicy}
+     */
+    public static MessageCachePolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Create a builder to customize a {@link MessageCachePolicy}.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getMaxPerChannel() {
+        return maxPerChannel;
+    }
+
+    public long getMaxTotal() {
+        return maxTotal;
+    }
+
+    @Nullable
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public boolean isFrequencyBased() {
+        return frequencyBased;
+    }
+
+    boolean isBounded() {
+        return maxTotal < Long.MAX_VALUE || maxAge != null || frequencyBased;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageCachePolicy{" +
+                "maxPerChannel=" + maxPerChannel +
+                ", maxTotal=" + maxTotal +
+                ", maxAge=" + maxAge +
+                ", frequencyBased=" + frequencyBased +
+                '}';
+    }
+
+    /**
+     * A builder to create {@link MessageCachePolicy} instances.
+     */
+    public static class Builder {
+
+        private int maxPerChannel = Integer.MAX_VALUE;
+        private long maxTotal = Long.MAX_VALUE;
+        private Duration maxAge;
+        private boolean frequencyBased;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the maximum number of messages to keep for each channel. The oldest messages of a channel are evicted
+         * first.
+         *
+         * @param maxPerChannel a positive number of messages
+         * @return this builder
+         */
+        public Builder maxPerChannel(int maxPerChannel) {
+            if (maxPerChannel <= 0) {
+                throw new IllegalArgumentException("maxPerChannel must be positive");
+            }
+            this.maxPerChannel = maxPerChannel;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of messages to keep across all channels.
+         *
+         * @param maxTotal a positive number of messages
+         * @return this builder
+         */
+        public Builder maxTotal(long maxTotal) {
+            if (maxTotal <= 0) {
+                throw new IllegalArgumentException("maxTotal must be positive");
+            }
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        /**
+         * Set the maximum age of cached messages, based on the timestamp of their ID.
+         *
+         * @param maxAge the maximum age of a message
+         * @return this builder
+         */
+        public Builder maxAge(Duration maxAge) {
+            this.maxAge = Objects.requireNonNull(maxAge);
+            return this;
+        }
+
+        /**
+         * Set whether the {@link #maxTotal(long) total} and {@link #maxAge(Duration) age} bounds should be enforced
+         * by a Caffeine cache, evicting messages according to their recency and frequency of use instead of their
+         * creation order. In this mode, message age is measured from the time a message was cached.
+         *
+         * @param frequencyBased {@code true} to use frequency-based eviction
+         * @return this builder
+         */
+        public Builder frequencyBased(boolean frequencyBased) {
+            this.frequencyBased = frequencyBased;
+            return this;
+        }
+
+        public MessageCachePolicy build() {
+            return new MessageCachePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+/**
+ * A snapshot of the size and eviction counters of the message cache of a {@link LocalStoreLayout}.
+ */
+public class MessageCacheStats {
+
+    private final long count;
+    private final long evictedFromChannel;
+    private final long evictedFromTotal;
+    private final long expired;
+
+    MessageCacheStats(long count, long evictedFromChannel, long evictedFromTotal, long expired) {
+        this.count = count;
+        this.evictedFromChannel = evictedFromChannel;
+        this.evictedFromTotal = evictedFromTotal;
+        this.expired = expired;
+    }
+
+    /**
+     * Returns the number of currently cached messages.
+     *
+     * @return the number of cached messages
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of messages evicted because their channel exceeded its maximum number of messages.
+     *
+     * @return the number of messages evicted from full channels
+     */
+    public long getEvictedFromChannel() {
+        return evictedFromChannel;
+    }
+
+    /**
+     * Returns the number of messages evicted because the cache exceeded its maximum number of messages.
+     *
+     * @return the number of messages evicted from the full cache
+     */
+    public long getEvictedFromTotal() {
+        return evictedFromTotal;
+    }
+
+    /**
+     * Returns the number of messages evicted because they exceeded their maximum age.
+     *
+     * @return the number of expired messages
+     */
+    public long getExpired() {
+        return expired;
+    }
+
+    /**
+     * Returns the total number of evicted messages.
+     *
+     * @return the number of evicted messages
+     */
+    public long getEvicted() {
+        return evictedFromChannel + evictedFromTotal + expired;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageCacheStats{" +
+                "count=" + count +
+                ", evictedFromChannel=" + evictedFromChannel +
+                ", evictedFromTotal=" + evictedFromTotal +
+                ", expired=" + expired +
+                '}';
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.json.MessageData;
+import reactor.util.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps cached messages grouped by channel, each channel holding its messages ordered by ID, therefore by creation
+ * time. Message counts are tracked on every write so they can be read in constant time, and deleting the messages of
+ * a channel doesn't require traversing other channels.
+ * <p>
+ * Messages are evicted according to a {@link MessageCachePolicy} when new messages are saved. Expired messages are
+ * also purged when the store is read, at most once every {@link #EXPIRY_INTERVAL_MILLIS}, so channels that stopped
+ * receiving messages don't retain them past the maximum age. Channels without cached messages are not retained.
+ */
+class MessageStore {
+
+    static final long EXPIRY_INTERVAL_MILLIS = 1000;
+
+    private final ConcurrentMap<Long, ChannelMessages> channels = new ConcurrentHashMap<>();
+    private final AtomicLong count = new AtomicLong();
+    private final int maxPerChannel;
+    private final Tracker tracker;
+
+    private final LongAdder evictedFromChannel = new LongAdder();
+    private final LongAdder evictedFromTotal = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final AtomicLong nextExpiry = new AtomicLong();
+
+    MessageStore(MessageCachePolicy policy) {
+        this.maxPerChannel = policy.getMaxPerChannel();
+        if (!policy.isBounded()) {
+            this.tracker = NoOpTracker.INSTANCE;
+        } else if (policy.isFrequencyBased()) {
+            this.tracker = new CaffeineTracker(policy);
+        } else {
+            this.tracker = new OrderTracker(policy);
+        }
+    }
+
+    /**
+     * Save a message, replacing any previous version of it.
+     *
+     * @return the previous version of the message, or {@code null} if it wasn't cached
+     */
+    @Nullable
+    MessageData save(long channelId, long messageId, MessageData message) {
+        Holder<MessageData> old = new Holder<>();
+        List<Long> evicted = new ArrayList<>(1);
+        channels.compute(channelId, (id, channel) -> {
+            ChannelMessages target = channel == null ? new ChannelMessages() : channel;
+            old.value = target.messages.put(messageId, message);
+            if (old.value == null) {
+                target.count++;
+                count.incrementAndGet();
+                while (target.count > maxPerChannel) {
+                    Map.Entry<Long, MessageData> eldest = target.messages.pollFirstEntry();
+                    if (eldest == null) {
+                        break;
+                    }
+                    target.count--;
+                    count.decrementAndGet();
+                    evicted.add(eldest.getKey());
+                }
+            }
+            return target;
+        });
+        evictedFromChannel.add(evicted.size());
+        evicted.forEach(tracker::removed);
+        if (old.value == null) {
+            tracker.saved(channelId, messageId);
+        }
+        return old.value;
+    }
+
+    /**
+     * Replace a cached message, if present, by the result of the given function.
+     *
+     * @return the previous version of the message, or {@code null} if it wasn't cached
+     */
+    @Nullable
+    MessageData update(long channelId, long messageId, UnaryOperator<MessageData> updater) {
+        ChannelMessages channel = channels.get(channelId);
+        if (channel == null) {
+            return null;
+        }
+        Holder<MessageData> old = new Holder<>();
+        channel.messages.computeIfPresent(messageId, (id, message) -> {
+            old.value = message;
+            return updater.apply(message);
+        });
+        return old.value;
+    }
+
+    @Nullable
+    MessageData get(long channelId, long messageId) {
+        expireIfDue();
+        ChannelMessages channel = channels.get(channelId);
+        MessageData message = channel == null ? null : channel.messages.get(messageId);
+        if (message != null) {
+            tracker.read(messageId);
+        }
+        return message;
+    }
+
+    /**
+     * Delete a cached message.
+     *
+     * @return the deleted message, or {@code null} if it wasn't cached
+     */
+    @Nullable
+    MessageData remove(long channelId, long messageId) {
+        MessageData removed = evict(channelId, messageId);
+        if (removed != null) {
+            tracker.removed(messageId);
+        }
+        return removed;
+    }
+
+    @Nullable
+    private MessageData evict(long channelId, long messageId) {
+        Holder<MessageData> old = new Holder<>();
+        channels.computeIfPresent(channelId, (id, channel) -> {
+            old.value = channel.messages.remove(messageId);
+            if (old.value != null) {
+                channel.count--;
+                count.decrementAndGet();
+            }
+            return channel.count == 0 ? null : channel;
+        });
+        return old.value;
+    }
+
+    /**
+     * Delete several cached messages from the same channel.
+     *
+     * @return the deleted messages
+     */
+    List<MessageData> removeAll(long channelId, Collection<Long> messageIds) {
+        List<MessageData> removed = new ArrayList<>(messageIds.size());
+        channels.computeIfPresent(channelId, (id, channel) -> {
+            for (Long messageId : messageIds) {
+                MessageData message = channel.messages.remove(messageId);
+                if (message != null) {
+                    removed.add(message);
+                }
+            }
+            channel.count -= removed.size();
+            count.addAndGet(-removed.size());
+            return channel.count == 0 ? null : channel;
+        });
+        for (MessageData message : removed) {
+            tracker.removed(Snowflake.asLong(message.id()));
+        }
+        return removed;
+    }
+
+    /**
+     * Delete all cached messages from a channel.
+     */
+    void removeChannel(long channelId) {
+        ChannelMessages removed = channels.remove(channelId);
+        if (removed != null) {
+            count.addAndGet(-removed.count);
+            removed.messages.keySet().forEach(tracker::removed);
+        }
+    }
+
+    /**
+     * Purge the messages older than the maximum age of the policy, if not done recently.
+     */
+    private void expireIfDue() {
+        long now = System.currentTimeMillis();
+        long next = nextExpiry.get();
+        if (now >= next && nextExpiry.compareAndSet(next, now + EXPIRY_INTERVAL_MILLIS)) {
+            tracker.expire();
+        }
+    }
+
+    long count() {
+        expireIfDue();
+        return count.get();
+    }
+
+    long count(long channelId) {
+        expireIfDue();
+        ChannelMessages channel = channels.get(channelId);
+        return channel == null ? 0 : channel.count;
+    }
+
+    // visible for testing
+    int channelCount() {
+        return channels.size();
+    }
+
+    MessageCacheStats stats() {
+        expireIfDue();
+        return new MessageCacheStats(count.get(), evictedFromChannel.sum(), evictedFromTotal.sum(), expired.sum());
+    }
+
+    Iterable<MessageData> values() {
+        expireIfDue();
+        return () -> new Iterator<MessageData>() {
+
+            private final Iterator<ChannelMessages> channelIterator = channels.values().iterator();
+            private Iterator<MessageData> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && channelIterator.hasNext()) {
+                    current = channelIterator.next().messages.values().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public MessageData next() {
+                hasNext();
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Return the cached messages of a channel, from the oldest to the newest.
+     */
+    Collection<MessageData> values(long channelId) {
+        expireIfDue();
+        ChannelMessages channel = channels.get(channelId);
+        return channel == null ? Collections.emptyList() : channel.messages.values();
+    }
+
+    /**
+     * Return up to {@code limit} of the latest cached messages of a channel, from the newest to the oldest.
+     */
+    List<MessageData> latest(long channelId, int limit) {
+        expireIfDue();
+        ChannelMessages channel = channels.get(channelId);
+        if (channel == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<MessageData> result = new ArrayList<>(Math.min(limit, 64));
+        for (MessageData message : channel.messages.descendingMap().values()) {
+            result.add(message);
+            if (result.size() == limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static class ChannelMessages {
+
+        private final ConcurrentSkipListMap<Long, MessageData> messages = new ConcurrentSkipListMap<>();
+        private volatile int count; // only written while holding the channel entry lock
+    }
+
+    private static class Holder<T> {
+
+        private T value;
+    }
+
+    /**
+     * Enforces the cache-wide bounds of a {@link MessageCachePolicy}. Callbacks are never invoked while holding the
+     * lock of a channel entry, as they may evict messages from any channel.
+     */
+    private interface Tracker {
+
+        void saved(long channelId, long messageId);
+
+        void read(long messageId);
+
+        void removed(long messageId);
+
+        void expire();
+    }
+
+    private enum NoOpTracker implements Tracker {
+        INSTANCE;
+
+        @Override
+        public void saved(long channelId, long messageId) {
+        }
+
+        @Override
+        public void read(long messageId) {
+        }
+
+        @Override
+        public void removed(long messageId) {
+        }
+
+        @Override
+        public void expire() {
+        }
+    }
+
+    /**
+     * Evicts the oldest messages first, using the creation order given by message IDs.
+     */
+    private class OrderTracker implements Tracker {
+
+        private final ConcurrentSkipListMap<Long, Long> channelByMessage = new ConcurrentSkipListMap<>();
+        private final long maxTotal;
+        @Nullable
+        private final Duration maxAge;
+
+        private OrderTracker(MessageCachePolicy policy) {
+            this.maxTotal = policy.getMaxTotal();
+            this.maxAge = policy.getMaxAge();
+        }
+
+        @Override
+        public void saved(long channelId, long messageId) {
+            channelByMessage.put(messageId, channelId);
+            expire();
+            while (count.get() > maxTotal) {
+                Map.Entry<Long, Long> eldest = channelByMessage.firstEntry();
+                if (eldest == null) {
+                    break;
+                }
+                evictEntry(eldest, evictedFromTotal);
+            }
+        }
+
+        private void evictEntry(Map.Entry<Long, Long> entry, LongAdder counter) {
+            if (channelByMessage.remove(entry.getKey(), entry.getValue())
+                    && evict(entry.getValue(), entry.getKey()) != null) {
+                counter.increment();
+            }
+        }
+
+        @Override
+        public void read(long messageId) {
+        }
+
+        @Override
+        public void removed(long messageId) {
+            channelByMessage.remove(messageId);
+        }
+
+        @Override
+        public void expire() {
+            if (maxAge == null) {
+                return;
+            }
+            long threshold = (System.currentTimeMillis() - maxAge.toMillis() - Snowflake.DISCORD_EPOCH) << 22;
+            Map.Entry<Long, Long> eldest;
+            while ((eldest = channelByMessage.firstEntry()) != null && eldest.getKey() < threshold) {
+                evictEntry(eldest, expired);
+            }
+        }
+    }
+
+    /**
+     * Delegates eviction decisions to a Caffeine cache, tracking recency and frequency of use.
+     */
+    private class CaffeineTracker implements Tracker {
+
+        private final Cache<Long, Long> channelByMessage;
+
+        private CaffeineTracker(MessageCachePolicy policy) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder().executor(Runnable::run);
+            if (policy.getMaxTotal() < Long.MAX_VALUE) {
+                builder.maximumSize(policy.getMaxTotal());
+            }
+            if (policy.getMaxAge() != null) {
+                builder.expireAfterWrite(policy.getMaxAge().toNanos(), TimeUnit.NANOSECONDS)
+                        .scheduler(Scheduler.systemScheduler());
+            }
+            this.channelByMessage = builder.<Long, Long>removalListener(this::onRemoval).build();
+        }
+
+        private void onRemoval(@Nullable Long messageId, @Nullable Long channelId, RemovalCause cause) {
+            if (!cause.wasEvicted() || messageId == null || channelId == null) {
+                return;
+            }
+            if (evict(channelId, messageId) != null) {
+                (cause == RemovalCause.EXPIRED ? expired : evictedFromTotal).increment();
+            }
+        }
+
+        @Override
+        public void saved(long channelId, long messageId) {
+            channelByMessage.put(messageId, channelId);
+        }
+
+        @Override
+        public void read(long messageId) {
+            channelByMessage.getIfPresent(messageId);
+        }
+
+        @Override
+        public void removed(long messageId) {
+            channelByMessage.invalidate(messageId);
+        }
+
+        @Override
+        public void expire() {
+            channelByMessage.cleanUp();
+        }
+    }
+}
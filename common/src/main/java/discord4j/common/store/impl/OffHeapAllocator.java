@@ -0,0 +1,78 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates native memory blocks holding a length-prefixed byte array each, keeping track of the allocated size.
+ */
+class OffHeapAllocator {
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    private volatile boolean closed;
+
+    OffHeapAllocator() {
+        if (!PlatformDependent.hasUnsafe()) {
+            throw new UnsupportedOperationException("Off-heap storage requires sun.misc.Unsafe");
+        }
+    }
+
+    /**
+     * Copy the given bytes to a new native memory block.
+     *
+     * @return the address of the block, never {@code 0}
+     * @throws IllegalStateException if this allocator was closed
+     */
+    long allocate(byte[] bytes) {
+        if (closed) {
+            throw new IllegalStateException("Cannot allocate from a closed off-heap allocator");
+        }
+        long address = PlatformDependent.allocateMemory(HEADER_SIZE + bytes.length);
+        PlatformDependent.putInt(address, bytes.length);
+        PlatformDependent.copyMemory(bytes, 0, address + HEADER_SIZE, bytes.length);
+        usedBytes.addAndGet(HEADER_SIZE + bytes.length);
+        return address;
+    }
+
+    byte[] read(long address) {
+        int length = PlatformDependent.getInt(address);
+        byte[] bytes = new byte[length];
+        PlatformDependent.copyMemory(address + HEADER_SIZE, bytes, 0, length);
+        return bytes;
+    }
+
+    void free(long address) {
+        usedBytes.addAndGet(-(HEADER_SIZE + PlatformDependent.getInt(address)));
+        PlatformDependent.freeMemory(address);
+    }
+
+    /**
+     * Reject any further allocation. Allocated blocks can still be read and freed.
+     */
+    void close() {
+        closed = true;
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import reactor.core.Exceptions;
+import reactor.util.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link ConcurrentMap} keeping its values serialized in native memory, indexed by open addressing hash tables
+ * of primitive {@code long} keys. The only heap memory used per entry are two array slots; values are decoded on
+ * every read, so each read returns a new instance.
+ * <p>
+ * Keys are spread over a fixed number of segments, each being a hash table of its own. Operations are serialized
+ * on the segment of their key, so a map created with several segments can be written by several threads at once.
+ * Iterators operate on a snapshot of the keys taken on creation, skipping entries removed since then.
+ * <p>
+ * Clearing the map releases its native memory and closes it: any later write is rejected with an
+ * {@link IllegalStateException}, as the native memory it would allocate could never be released.
+ *
+ * @param <V> the type of values
+ */
+class OffHeapMap<V> extends AbstractMap<Long, V> implements ConcurrentMap<Long, V> {
+
+    static final int MIN_CAPACITY = 8;
+
+    private final OffHeapAllocator allocator;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final OffHeapMap<V>.Segment[] segments;
+
+    OffHeapMap(OffHeapAllocator allocator, ObjectMapper mapper, Class<V> type) {
+        this(allocator, mapper, type, 1);
+    }
+
+    /**
+     * Create a map spreading its keys over the given number of segments, rounded up to a power of two.
+     */
+    OffHeapMap(OffHeapAllocator allocator, ObjectMapper mapper, Class<V> type, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.allocator = allocator;
+        this.reader = mapper.readerFor(type);
+        this.writer = mapper.writerFor(type);
+        int count = Math.max(1, Integer.highestOneBit(concurrency - 1) << 1);
+        @SuppressWarnings("unchecked")
+        OffHeapMap<V>.Segment[] segments = (OffHeapMap<V>.Segment[]) new OffHeapMap<?>.Segment[count];
+        this.segments = segments;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof Long)) {
+            return false;
+        }
+        Segment segment = segmentFor((Long) key);
+        synchronized (segment) {
+            return segment.indexOf((Long) key) >= 0;
+        }
+    }
+
+    @Override
+    @Nullable
+    public V get(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        Segment segment = segmentFor((Long) key);
+        synchronized (segment) {
+            int index = segment.indexOf((Long) key);
+            return index < 0 ? null : segment.valueAt(index);
+        }
+    }
+
+    @Override
+    @Nullable
+    public V put(Long key, V value) {
+        byte[] bytes = encode(value);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.store(key, bytes, true);
+        }
+    }
+
+    /**
+     * Map the given key to the given value without decoding the previous value, unlike {@link #put(Long, Object)}.
+     *
+     * @return {@code true} if the key was absent, {@code false} if its previous value was replaced
+     */
+    boolean set(long key, V value) {
+        byte[] bytes = encode(value);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            boolean absent = segment.indexOf(key) < 0;
+            segment.store(key, bytes, false);
+            return absent;
+        }
+    }
+
+    @Override
+    @Nullable
+    public V putIfAbsent(Long key, V value) {
+        byte[] bytes = encode(value);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int index = segment.indexOf(key);
+            if (index >= 0) {
+                return segment.valueAt(index);
+            }
+            return segment.store(key, bytes, false);
+        }
+    }
+
+    @Override
+    @Nullable
+    public V remove(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        Segment segment = segmentFor((Long) key);
+        synchronized (segment) {
+            int index = segment.indexOf((Long) key);
+            if (index < 0) {
+                return null;
+            }
+            V old = segment.valueAt(index);
+            segment.removeAt(index);
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof Long) || value == null) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        byte[] expected = encode((V) value);
+        Segment segment = segmentFor((Long) key);
+        synchronized (segment) {
+            int index = segment.indexOf((Long) key);
+            if (index < 0 || !Arrays.equals(allocator.read(segment.addresses[index]), expected)) {
+                return false;
+            }
+            segment.removeAt(index);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean replace(Long key, V oldValue, V newValue) {
+        byte[] expected = encode(oldValue);
+        byte[] bytes = encode(newValue);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int index = segment.indexOf(key);
+            if (index < 0 || !Arrays.equals(allocator.read(segment.addresses[index]), expected)) {
+                return false;
+            }
+            segment.store(key, bytes, false);
+            return true;
+        }
+    }
+
+    @Override
+    @Nullable
+    public V replace(Long key, V value) {
+        byte[] bytes = encode(value);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.indexOf(key) < 0 ? null : segment.store(key, bytes, true);
+        }
+    }
+
+    @Override
+    @Nullable
+    public V computeIfAbsent(Long key, Function<? super Long, ? extends V> mappingFunction) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int index = segment.indexOf(key);
+            if (index >= 0) {
+                return segment.valueAt(index);
+            }
+            V value = mappingFunction.apply(key);
+            if (value != null) {
+                segment.store(key, encode(value), false);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    @Nullable
+    public V computeIfPresent(Long key, BiFunction<? super Long, ? super V, ? extends V> remappingFunction) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int index = segment.indexOf(key);
+            if (index < 0) {
+                return null;
+            }
+            V old = segment.valueAt(index);
+            V value = remappingFunction.apply(key, old);
+            if (value == null) {
+                segment.removeAt(segment.indexOf(key));
+            } else if (value != old) {
+                // values are decoded into new instances, so an identical instance is an unchanged value
+                segment.store(key, encode(value), false);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Release the native memory of all entries and reject any later write.
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.close();
+            }
+        }
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        return new AbstractSet<Long>() {
+            @Override
+            public Iterator<Long> iterator() {
+                long[] snapshot = snapshotKeys();
+                return new Iterator<Long>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < snapshot.length;
+                    }
+
+                    @Override
+                    public Long next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return snapshot[index++];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return OffHeapMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return new AbstractSet<Entry<Long, V>>() {
+            @Override
+            public Iterator<Entry<Long, V>> iterator() {
+                long[] snapshot = snapshotKeys();
+                return new Iterator<Entry<Long, V>>() {
+
+                    private int index;
+                    private Entry<Long, V> next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && index < snapshot.length) {
+                            long key = snapshot[index++];
+                            V value = get(key);
+                            if (value != null) {
+                                next = new SimpleImmutableEntry<>(key, value);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<Long, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Long, V> entry = next;
+                        next = null;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OffHeapMap.this.size();
+            }
+        };
+    }
+
+    private long[] snapshotKeys() {
+        long[][] parts = new long[segments.length][];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                parts[i] = segments[i].snapshotKeys();
+            }
+            total += parts[i].length;
+        }
+        long[] snapshot = new long[total];
+        int count = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, snapshot, count, part.length);
+            count += part.length;
+        }
+        return snapshot;
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) (hash(key) >>> 40) & (segments.length - 1)];
+    }
+
+    private byte[] encode(V value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    // visible for testing
+    static int slot(long key, int mask) {
+        long hash = hash(key);
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * A hash table holding the keys of one segment, only accessed while holding its monitor.
+     */
+    private class Segment {
+
+        private long[] keys = new long[MIN_CAPACITY];
+        private long[] addresses = new long[MIN_CAPACITY]; // 0 marks an empty slot
+        private int size;
+        private boolean closed;
+
+        private V valueAt(int index) {
+            try {
+                return reader.readValue(allocator.read(addresses[index]));
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+
+        /**
+         * Map the given key to a new block holding the given bytes, releasing the previous block if any.
+         *
+         * @return the previous value if requested and the key was present, {@code null} otherwise
+         */
+        @Nullable
+        private V store(long key, byte[] bytes, boolean decodeOld) {
+            if (closed) {
+                throw new IllegalStateException("Cannot write to a cleared off-heap map");
+            }
+            long address = allocator.allocate(bytes);
+            int index = indexOf(key);
+            if (index >= 0) {
+                V old = decodeOld ? valueAt(index) : null;
+                allocator.free(addresses[index]);
+                addresses[index] = address;
+                return old;
+            }
+            index = -index - 1;
+            keys[index] = key;
+            addresses[index] = address;
+            if (++size > keys.length * 3 / 4) {
+                resize(keys.length * 2);
+            }
+            return null;
+        }
+
+        /**
+         * Find the slot of the given key.
+         *
+         * @return the slot index if present, or {@code -(insertion slot) - 1} if absent
+         */
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            int index = slot(key, mask);
+            while (addresses[index] != 0) {
+                if (keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -index - 1;
+        }
+
+        /**
+         * Release the block of the given slot and empty it, shifting back the following entries of its probe
+         * sequence so lookups never need tombstones.
+         */
+        private void removeAt(int index) {
+            allocator.free(addresses[index]);
+            int mask = keys.length - 1;
+            addresses[index] = 0;
+            size--;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (addresses[next] == 0) {
+                    return;
+                }
+                int home = slot(keys[next], mask);
+                boolean movable = next > index ? (home <= index || home > next) : (home <= index && home > next);
+                if (movable) {
+                    keys[index] = keys[next];
+                    addresses[index] = addresses[next];
+                    addresses[next] = 0;
+                    index = next;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldAddresses = addresses;
+            keys = new long[capacity];
+            addresses = new long[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != 0) {
+                    int index = slot(oldKeys[i], mask);
+                    while (addresses[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    addresses[index] = oldAddresses[i];
+                }
+            }
+        }
+
+        private void close() {
+            for (long address : addresses) {
+                if (address != 0) {
+                    allocator.free(address);
+                }
+            }
+            keys = new long[MIN_CAPACITY];
+            addresses = new long[MIN_CAPACITY];
+            size = 0;
+            closed = true;
+        }
+
+        private long[] snapshotKeys() {
+            long[] snapshot = new long[size];
+            int count = 0;
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i] != 0) {
+                    snapshot[count++] = keys[i];
+                }
+            }
+            return snapshot;
+        }
+    }
+}
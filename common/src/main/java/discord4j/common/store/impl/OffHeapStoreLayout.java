@@ -0,0 +1,144 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import discord4j.common.annotations.Experimental;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.layout.StoreProjection;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link LocalStoreLayout} keeping members, users, presences and voice states serialized in native memory instead
+ * of the Java heap, indexed by primitive {@code long} user IDs.
+ * <p>
+ * This trades CPU time on every read and write of those entities, which are decoded into new instances each time,
+ * for a much smaller heap and shorter garbage collection pauses when caching millions of members. Guilds, channels,
+ * roles, emojis and messages are kept on heap like in {@link LocalStoreLayout}.
+ * <p>
+ * Native memory is not reclaimed by the garbage collector: call {@link #dispose()} once this layout is no longer
+ * used.
+ */
+@Experimental
+public class OffHeapStoreLayout extends LocalStoreLayout {
+
+    private final OffHeapAllocator allocator;
+
+    private OffHeapStoreLayout(MessageCachePolicy messageCachePolicy, StoreProjection projection,
+                               OffHeapAllocator allocator, ObjectMapper mapper) {
+        super(messageCachePolicy, new OffHeapEntityMaps(allocator, mapper), projection);
+        this.allocator = allocator;
+    }
+
+    /**
+     * Create a new, empty {@link OffHeapStoreLayout} that never evicts messages.
+     *
+     * @return a new off-heap {@link StoreLayout}
+     * @throws UnsupportedOperationException if native memory cannot be accessed in this JVM
+     */
+    public static OffHeapStoreLayout create() {
+        return create(MessageCachePolicy.unbounded());
+    }
+
+    /**
+     * Create a new, empty {@link OffHeapStoreLayout} evicting messages according to the given policy.
+     *
+     * @param messageCachePolicy the bounds of the message cache
+     * @return a new off-heap {@link StoreLayout}
+     * @throws UnsupportedOperationException if native memory cannot be accessed in this JVM
+     */
+    public static OffHeapStoreLayout create(MessageCachePolicy messageCachePolicy) {
+        return create(JacksonResources.create().getObjectMapper(), messageCachePolicy);
+    }
+
+    /**
+     * Create a new, empty {@link OffHeapStoreLayout} serializing entities with the given {@link ObjectMapper} and
+     * evicting messages according to the given policy.
+     *
+     * @param mapper the {@link ObjectMapper} used to serialize entities, able to handle Discord4J JSON types
+     * @param messageCachePolicy the bounds of the message cache
+     * @return a new off-heap {@link StoreLayout}
+     * @throws UnsupportedOperationException if native memory cannot be accessed in this JVM
+     */
+    public static OffHeapStoreLayout create(ObjectMapper mapper, MessageCachePolicy messageCachePolicy) {
+        return create(mapper, messageCachePolicy, StoreProjection.none());
+    }
+
+    /**
+     * Create a new, empty {@link OffHeapStoreLayout} serializing entities with the given {@link ObjectMapper},
+     * evicting messages according to the given policy, and saving members, users and presences as projected by the
+     * given {@link StoreProjection}. Projecting entities also reduces the native memory they require.
+     *
+     * @param mapper the {@link ObjectMapper} used to serialize entities, able to handle Discord4J JSON types
+     * @param messageCachePolicy the bounds of the message cache
+     * @param projection the fields of members, users and presences to retain
+     * @return a new off-heap {@link StoreLayout}
+     * @throws UnsupportedOperationException if native memory cannot be accessed in this JVM
+     */
+    public static OffHeapStoreLayout create(ObjectMapper mapper, MessageCachePolicy messageCachePolicy,
+                                            StoreProjection projection) {
+        return new OffHeapStoreLayout(Objects.requireNonNull(messageCachePolicy), Objects.requireNonNull(projection),
+                new OffHeapAllocator(), Objects.requireNonNull(mapper));
+    }
+
+    /**
+     * Returns the number of bytes of native memory currently allocated by this layout.
+     *
+     * @return the size of the off-heap entities, in bytes
+     */
+    public long getOffHeapBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * Discard all cached entities, releasing the native memory held by this layout. The layout can no longer be
+     * updated afterwards: updates saving members, users, presences or voice states will fail with an
+     * {@link IllegalStateException}.
+     */
+    public void dispose() {
+        allocator.close();
+        clear();
+    }
+
+    private static class OffHeapEntityMaps implements EntityMaps {
+
+        // segments of the maps written by every shard, such as the user map
+        private static final int SHARED_CONCURRENCY = 16;
+
+        private final OffHeapAllocator allocator;
+        private final ObjectMapper mapper;
+
+        private OffHeapEntityMaps(OffHeapAllocator allocator, ObjectMapper mapper) {
+            this.allocator = allocator;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public <V> ConcurrentMap<Long, V> create(Class<V> type) {
+            return new OffHeapMap<>(allocator, mapper, type);
+        }
+
+        @Override
+        public <V> ConcurrentMap<Long, V> createShared(Class<V> type) {
+            return new OffHeapMap<>(allocator, mapper, type, SHARED_CONCURRENCY);
+        }
+    }
+}
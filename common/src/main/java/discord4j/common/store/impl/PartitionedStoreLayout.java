@@ -0,0 +1,362 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import discord4j.common.annotations.Experimental;
+import discord4j.common.store.api.ActionMapper;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.api.object.PresenceAndUserData;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.*;
+import discord4j.discordjson.json.gateway.*;
+import discord4j.discordjson.possible.Possible;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+/**
+ * A {@link StoreLayout} decorator serializing the Gateway updates applied to the delegate layout by guild, so the
+ * read-modify-write sequences performed by an update, like adding a member to the member list of its guild, never
+ * interleave with another update of the same guild.
+ * <p>
+ * Guilds are distributed by ID into a fixed number of partitions. Updates within a partition run one at a time, in
+ * the order they are subscribed to, while updates from different partitions run concurrently, so the throughput grows
+ * with the number of guilds, and therefore shards, handled by the process. Updates to direct messages and private
+ * channels are partitioned by channel ID. A shard invalidation touches every guild of its shard, so it waits for the
+ * partitions that received a guild of that shard, and only for them. Reads are not serialized and go directly to the
+ * delegate.
+ * <p>
+ * Entities shared between guilds, like users, are still updated concurrently by different partitions, with
+ * last-writer-wins semantics. This includes {@code READY} and user updates, which only save the current user. As
+ * updates may wait for their partition, they are never executed synchronously by
+ * {@link discord4j.common.store.Store#tryExecuteNow(discord4j.common.store.api.StoreAction)}.
+ */
+@Experimental
+public class PartitionedStoreLayout implements StoreLayout {
+
+    private final StoreLayout delegate;
+    private final UpdateSerializer[] partitions;
+    private final GatewayDataUpdater updater;
+    // the partitions holding guilds of each shard, kept in ascending order
+    private final ConcurrentMap<Integer, Set<Integer>> partitionsByShard = new ConcurrentHashMap<>();
+
+    private PartitionedStoreLayout(StoreLayout delegate, int partitions) {
+        this.delegate = delegate;
+        this.partitions = new UpdateSerializer[partitions];
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new UpdateSerializer();
+        }
+        this.updater = new PartitionedUpdater(delegate.getGatewayDataUpdater());
+    }
+
+    /**
+     * Create a {@link PartitionedStoreLayout} serializing the updates applied to the given layout, with default
+     * settings.
+     *
+     * @param delegate the layout storing entities
+     * @return a new partitioned {@link StoreLayout}
+     */
+    public static PartitionedStoreLayout create(StoreLayout delegate) {
+        return builder(delegate).build();
+    }
+
+    /**
+     * Create a builder to customize a {@link PartitionedStoreLayout} serializing the updates applied to the given
+     * layout.
+     *
+     * @param delegate the layout storing entities
+     * @return a new {@link Builder}
+     */
+    public static Builder builder(StoreLayout delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public DataAccessor getDataAccessor() {
+        return delegate.getDataAccessor();
+    }
+
+    @Override
+    public GatewayDataUpdater getGatewayDataUpdater() {
+        return updater;
+    }
+
+    @Override
+    public ActionMapper getCustomActionMapper() {
+        return delegate.getCustomActionMapper();
+    }
+
+    private int partitionOf(long key) {
+        int hash = Long.hashCode(key);
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+    }
+
+    private <T> Mono<T> inPartition(long key, Supplier<? extends Mono<T>> update) {
+        return partitions[partitionOf(key)].serialize(update);
+    }
+
+    private <T> Mono<T> inPartition(Possible<Id> guildId, Id channelId, Supplier<? extends Mono<T>> update) {
+        return inPartition(Snowflake.asLong(guildId.isAbsent() ? channelId : guildId.get()), update);
+    }
+
+    private <T> Mono<T> inShardPartitions(int shardIndex, Supplier<? extends Mono<T>> update) {
+        return Mono.defer(() -> {
+            Set<Integer> indexes = partitionsByShard.getOrDefault(shardIndex, Collections.emptySet());
+            // always acquired in ascending order, so two of these can't deadlock
+            Integer[] ordered = indexes.toArray(new Integer[0]);
+            Supplier<? extends Mono<T>> result = update;
+            for (int i = ordered.length - 1; i >= 0; i--) {
+                UpdateSerializer partition = partitions[ordered[i]];
+                Supplier<? extends Mono<T>> next = result;
+                result = () -> partition.serialize(next);
+            }
+            return result.get();
+        });
+    }
+
+    // visible for testing
+    Collection<Integer> getShardPartitions(int shardIndex) {
+        return partitionsByShard.getOrDefault(shardIndex, Collections.emptySet());
+    }
+
+    private class PartitionedUpdater implements GatewayDataUpdater {
+
+        private final GatewayDataUpdater updater;
+
+        private PartitionedUpdater(GatewayDataUpdater updater) {
+            this.updater = updater;
+        }
+
+        @Override
+        public Mono<Void> onChannelCreate(int shardIndex, ChannelCreate dispatch) {
+            return inPartition(dispatch.channel().guildId(), dispatch.channel().id(),
+                    () -> updater.onChannelCreate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<ChannelData> onChannelDelete(int shardIndex, ChannelDelete dispatch) {
+            return inPartition(dispatch.channel().guildId(), dispatch.channel().id(),
+                    () -> updater.onChannelDelete(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<ChannelData> onChannelUpdate(int shardIndex, ChannelUpdate dispatch) {
+            return inPartition(dispatch.channel().guildId(), dispatch.channel().id(),
+                    () -> updater.onChannelUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onGuildCreate(int shardIndex, GuildCreate dispatch) {
+            long guildId = Snowflake.asLong(dispatch.guild().id());
+            return Mono.defer(() -> {
+                // registered on subscription, so a later invalidation of the shard queues behind this update
+                partitionsByShard.computeIfAbsent(shardIndex, k -> new ConcurrentSkipListSet<>())
+                        .add(partitionOf(guildId));
+                return inPartition(guildId, () -> updater.onGuildCreate(shardIndex, dispatch));
+            });
+        }
+
+        @Override
+        public Mono<GuildData> onGuildDelete(int shardIndex, GuildDelete dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guild().id()),
+                    () -> updater.onGuildDelete(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Set<EmojiData>> onGuildEmojisUpdate(int shardIndex, GuildEmojisUpdate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildEmojisUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onGuildMemberAdd(int shardIndex, GuildMemberAdd dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildMemberAdd(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<MemberData> onGuildMemberRemove(int shardIndex, GuildMemberRemove dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildMemberRemove(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onGuildMembersChunk(int shardIndex, GuildMembersChunk dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildMembersChunk(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<MemberData> onGuildMemberUpdate(int shardIndex, GuildMemberUpdate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildMemberUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onGuildRoleCreate(int shardIndex, GuildRoleCreate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildRoleCreate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<RoleData> onGuildRoleDelete(int shardIndex, GuildRoleDelete dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildRoleDelete(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<RoleData> onGuildRoleUpdate(int shardIndex, GuildRoleUpdate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onGuildRoleUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<GuildData> onGuildUpdate(int shardIndex, GuildUpdate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guild().id()),
+                    () -> updater.onGuildUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onShardInvalidation(int shardIndex, InvalidationCause cause) {
+            return inShardPartitions(shardIndex, () -> updater.onShardInvalidation(shardIndex, cause));
+        }
+
+        @Override
+        public Mono<Void> onMessageCreate(int shardIndex, MessageCreate dispatch) {
+            return inPartition(dispatch.message().guildId(), dispatch.message().channelId(),
+                    () -> updater.onMessageCreate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<MessageData> onMessageDelete(int shardIndex, MessageDelete dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageDelete(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Set<MessageData>> onMessageDeleteBulk(int shardIndex, MessageDeleteBulk dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageDeleteBulk(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionAdd(int shardIndex, MessageReactionAdd dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageReactionAdd(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemove(int shardIndex, MessageReactionRemove dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageReactionRemove(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemoveAll(int shardIndex, MessageReactionRemoveAll dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageReactionRemoveAll(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onMessageReactionRemoveEmoji(int shardIndex, MessageReactionRemoveEmoji dispatch) {
+            return inPartition(dispatch.guildId(), dispatch.channelId(),
+                    () -> updater.onMessageReactionRemoveEmoji(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<MessageData> onMessageUpdate(int shardIndex, MessageUpdate dispatch) {
+            return inPartition(dispatch.message().guildId(), dispatch.message().channelId(),
+                    () -> updater.onMessageUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<PresenceAndUserData> onPresenceUpdate(int shardIndex, PresenceUpdate dispatch) {
+            return inPartition(Snowflake.asLong(dispatch.guildId()),
+                    () -> updater.onPresenceUpdate(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onReady(Ready dispatch) {
+            return updater.onReady(dispatch);
+        }
+
+        @Override
+        public Mono<UserData> onUserUpdate(int shardIndex, UserUpdate dispatch) {
+            return updater.onUserUpdate(shardIndex, dispatch);
+        }
+
+        @Override
+        public Mono<VoiceStateData> onVoiceStateUpdateDispatch(int shardIndex, VoiceStateUpdateDispatch dispatch) {
+            VoiceStateData voiceState = dispatch.voiceState();
+            if (voiceState.guildId().isAbsent()) {
+                return updater.onVoiceStateUpdateDispatch(shardIndex, dispatch);
+            }
+            return inPartition(Snowflake.asLong(voiceState.guildId().get()),
+                    () -> updater.onVoiceStateUpdateDispatch(shardIndex, dispatch));
+        }
+
+        @Override
+        public Mono<Void> onGuildMembersCompletion(long guildId) {
+            return inPartition(guildId, () -> updater.onGuildMembersCompletion(guildId));
+        }
+    }
+
+    /**
+     * A builder to create {@link PartitionedStoreLayout} instances.
+     */
+    public static class Builder {
+
+        protected final StoreLayout delegate;
+        protected int partitions = Schedulers.DEFAULT_POOL_SIZE * 4;
+
+        protected Builder(StoreLayout delegate) {
+            this.delegate = Objects.requireNonNull(delegate);
+        }
+
+        /**
+         * Set the number of partitions guilds are distributed into, bounding the number of updates applied
+         * concurrently. More partitions make it less likely that updates of unrelated guilds wait for each other.
+         * Defaults to four times the number of available processors.
+         *
+         * @param partitions a positive number of partitions
+         * @return this builder
+         */
+        public Builder partitions(int partitions) {
+            if (partitions <= 0) {
+                throw new IllegalArgumentException("partitions must be positive");
+            }
+            this.partitions = partitions;
+            return this;
+        }
+
+        public PartitionedStoreLayout build() {
+            return new PartitionedStoreLayout(delegate, partitions);
+        }
+    }
+}
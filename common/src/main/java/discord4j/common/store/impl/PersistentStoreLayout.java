@@ -0,0 +1,416 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import discord4j.common.JacksonResources;
+import discord4j.common.annotations.Experimental;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.layout.StoreProjection;
+import discord4j.common.store.api.object.InvalidationCause;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link LocalStoreLayout} persisting its contents to a directory, so a restarted bot can resume its Gateway
+ * sessions with a warm cache instead of requesting every guild again.
+ * <p>
+ * The directory holds a snapshot of all cached entities, written through memory-mapped files, and a log of the
+ * Gateway updates applied since that snapshot. Each update is appended to the log once it has been applied, and both
+ * files are replayed when the layout is built. The log is flushed in batches every {@link Builder#flushInterval
+ * flush interval}, so a crash loses at most the updates of the last interval. Call {@link #snapshot()} periodically to
+ * bound the size of the log, and {@link #close()} on shutdown.
+ * <p>
+ * Updates are logged in the order they are applied as long as each shard applies its updates sequentially, which is
+ * how the Gateway dispatches them.
+ * <p>
+ * To reuse the restored cache, resume the previous sessions when connecting, for example through
+ * {@code GatewayBootstrap#setResumeOptions}. The session ID and sequence of each shard are not part of the Gateway
+ * updates and are therefore not persisted by this layout: save them on shutdown alongside its directory. For this
+ * reason, shard invalidations caused by a logout are not applied, while those caused by a reconnect that could not be
+ * resumed still purge the affected guilds.
+ */
+@Experimental
+public class PersistentStoreLayout extends LocalStoreLayout implements Closeable {
+
+    private static final String SNAPSHOT_FILE = "store.snapshot";
+    private static final String LOG_FILE = "store.log";
+
+    private static final Logger log = Loggers.getLogger(PersistentStoreLayout.class);
+
+    /** Updater methods by signature, so overloads are replayed with the right parameter types. */
+    private static final Map<String, Method> UPDATER_METHODS = new HashMap<>();
+
+    static {
+        for (Method method : GatewayDataUpdater.class.getMethods()) {
+            UPDATER_METHODS.put(signature(method), method);
+        }
+    }
+
+    private final Path directory;
+    private final ObjectMapper mapper;
+    private final Duration flushInterval;
+    private final GatewayDataUpdater updater;
+    // updates hold the read lock while being logged and applied, snapshots hold the write lock
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Object logLock = new Object();
+    private DataOutputStream logOutput; // guarded by logLock
+    private long generation; // guarded by the write lock of snapshotLock
+    private Disposable flushTask;
+
+    private PersistentStoreLayout(Path directory, MessageCachePolicy messageCachePolicy, StoreProjection projection,
+                                  ObjectMapper mapper, Duration flushInterval) {
+        super(messageCachePolicy, EntityMaps.HEAP, projection);
+        this.directory = directory;
+        this.mapper = mapper;
+        this.flushInterval = flushInterval;
+        this.updater = (GatewayDataUpdater) Proxy.newProxyInstance(GatewayDataUpdater.class.getClassLoader(),
+                new Class<?>[] {GatewayDataUpdater.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(this, args);
+                    }
+                    return update(method, args);
+                });
+    }
+
+    /**
+     * Create a builder to restore or create a {@link PersistentStoreLayout} in the given directory.
+     *
+     * @param directory the directory holding the persisted contents, created if missing
+     * @return a new {@link Builder}
+     */
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    @Override
+    public GatewayDataUpdater getGatewayDataUpdater() {
+        return updater;
+    }
+
+    private Mono<?> update(Method method, Object[] args) {
+        if (method.getName().equals("onShardInvalidation") && args[1] == InvalidationCause.LOGOUT) {
+            // keep the guilds of this shard, they are expected to be resumed on the next start
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            try {
+                ArrayNode record = mapper.createArrayNode().add(signature(method));
+                for (Object arg : args) {
+                    record.addPOJO(arg);
+                }
+                byte[] bytes = mapper.writeValueAsBytes(record);
+                snapshotLock.readLock().lock();
+                try {
+                    // apply and log while holding the read lock, so a concurrent snapshot never misses a logged update
+                    Object value = apply(method, args);
+                    // a failed update is not logged, so it is never replayed
+                    synchronized (logLock) {
+                        logOutput.writeInt(bytes.length);
+                        logOutput.write(bytes);
+                        if (flushInterval.isZero()) {
+                            logOutput.flush();
+                        }
+                    }
+                    return Mono.justOrEmpty(value);
+                } finally {
+                    snapshotLock.readLock().unlock();
+                }
+            } catch (Throwable t) {
+                Exceptions.throwIfJvmFatal(t);
+                return Mono.error(t);
+            }
+        });
+    }
+
+    @Nullable
+    private Object apply(Method method, Object[] args) throws Throwable {
+        // the updates of a local layout complete on subscription, so they are applied right here
+        CompletableFuture<?> result = ((Mono<?>) invoke(method, args)).toFuture();
+        if (!result.isDone()) {
+            result.cancel(false);
+            throw new IllegalStateException("Update " + method.getName() + " did not complete synchronously");
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String signature(Method method) {
+        StringJoiner joiner = new StringJoiner(",", method.getName() + "(", ")");
+        for (Class<?> type : method.getParameterTypes()) {
+            joiner.add(type.getName());
+        }
+        return joiner.toString();
+    }
+
+    private void flush() {
+        // skip flushing while a snapshot replaces the log
+        if (!snapshotLock.readLock().tryLock()) {
+            return;
+        }
+        try {
+            synchronized (logLock) {
+                logOutput.flush();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to flush the store log in {}", directory, e);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    private Object invoke(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(this, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            generation = SnapshotFile.read(snapshot, mapper, this::restore);
+        }
+        Path logFile = directory.resolve(LOG_FILE);
+        if (Files.exists(logFile)) {
+            replay(logFile);
+        }
+        snapshot();
+        if (!flushInterval.isZero()) {
+            long nanos = flushInterval.toNanos();
+            flushTask = Schedulers.parallel().schedulePeriodically(this::flush, nanos, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void replay(Path logFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            try {
+                if (in.readLong() != generation) {
+                    // a log left over by a crash right after a snapshot, already covered by it
+                    return;
+                }
+            } catch (EOFException e) {
+                return;
+            }
+            while (true) {
+                byte[] bytes;
+                try {
+                    bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    // end of the log, possibly with an incomplete record written before a crash
+                    return;
+                }
+                JsonNode record = mapper.readTree(bytes);
+                Method method = UPDATER_METHODS.get(record.get(0).asText());
+                if (method == null) {
+                    throw new IOException("Unknown update in store log " + record.get(0).asText());
+                }
+                Class<?>[] types = method.getParameterTypes();
+                Object[] args = new Object[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    args[i] = mapper.treeToValue(record.get(i + 1), types[i]);
+                }
+                try {
+                    apply(method, args);
+                } catch (Throwable t) {
+                    // skip it rather than failing every restart
+                    log.warn("Skipping store log update {} that failed to apply", method.getName(), t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of the current contents of this layout and reset the log of updates. Updates are blocked while
+     * the snapshot is written.
+     * <p>
+     * The snapshot records the generation of the new log, so a log that could not be reset before a crash is ignored
+     * when restoring instead of being replayed over the snapshot.
+     *
+     * @throws RuntimeException wrapping an {@link IOException} if the snapshot cannot be written
+     */
+    public void snapshot() {
+        snapshotLock.writeLock().lock();
+        try {
+            synchronized (logLock) {
+                if (logOutput != null) {
+                    logOutput.close();
+                }
+            }
+            long next = generation + 1;
+            Path target = directory.resolve(SNAPSHOT_FILE);
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (SnapshotFile.Writer writer = new SnapshotFile.Writer(temp, mapper, next)) {
+                writeSnapshot(writer);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation = next;
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    directory.resolve(LOG_FILE))));
+            output.writeLong(next);
+            output.flush();
+            synchronized (logLock) {
+                logOutput = output;
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write a final snapshot of this layout and release its files.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (flushTask != null) {
+            flushTask.dispose();
+        }
+        snapshotLock.writeLock().lock();
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : e;
+        } finally {
+            synchronized (logLock) {
+                logOutput.close();
+            }
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A builder to create {@link PersistentStoreLayout} instances.
+     */
+    public static class Builder {
+
+        protected final Path directory;
+        protected MessageCachePolicy messageCachePolicy = MessageCachePolicy.unbounded();
+        protected StoreProjection projection = StoreProjection.none();
+        protected ObjectMapper objectMapper;
+        protected Duration flushInterval = Duration.ofSeconds(1);
+
+        protected Builder(Path directory) {
+            this.directory = Objects.requireNonNull(directory);
+        }
+
+        /**
+         * Set the bounds of the message cache. Defaults to {@link MessageCachePolicy#unbounded()}.
+         *
+         * @param messageCachePolicy the bounds of the message cache
+         * @return this builder
+         */
+        public Builder messageCachePolicy(MessageCachePolicy messageCachePolicy) {
+            this.messageCachePolicy = Objects.requireNonNull(messageCachePolicy);
+            return this;
+        }
+
+        /**
+         * Set the fields retained when caching entities. Defaults to {@link StoreProjection#none()}.
+         *
+         * @param projection the projection applied to saved entities
+         * @return this builder
+         */
+        public Builder projection(StoreProjection projection) {
+            this.projection = Objects.requireNonNull(projection);
+            return this;
+        }
+
+        /**
+         * Set the {@link ObjectMapper} used to persist entities and updates, able to handle Discord4J JSON types.
+         * Defaults to the mapper of {@link JacksonResources#create()}.
+         *
+         * @param objectMapper the mapper used to persist contents
+         * @return this builder
+         */
+        public Builder objectMapper(ObjectMapper objectMapper) {
+            this.objectMapper = Objects.requireNonNull(objectMapper);
+            return this;
+        }
+
+        /**
+         * Set how often the log of updates is flushed to its file, bounding the updates lost on a crash. Use
+         * {@link Duration#ZERO} to flush after every update. Defaults to one second.
+         *
+         * @param flushInterval the interval between flushes of the log
+         * @return this builder
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            if (flushInterval.isNegative()) {
+                throw new IllegalArgumentException("flushInterval must not be negative");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Create the {@link PersistentStoreLayout}, restoring the contents found in its directory.
+         *
+         * @return a new persistent {@link StoreLayout}
+         * @throws RuntimeException wrapping an {@link IOException} if the persisted contents cannot be read
+         */
+        public PersistentStoreLayout build() {
+            if (objectMapper == null) {
+                objectMapper = JacksonResources.create().getObjectMapper();
+            }
+            PersistentStoreLayout layout = new PersistentStoreLayout(directory, messageCachePolicy, projection,
+                    objectMapper, flushInterval);
+            try {
+                layout.load();
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+            return layout;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.discordjson.json.*;
+import reactor.util.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes snapshots of a {@link LocalStoreLayout} through memory-mapped files. A snapshot starts with the
+ * generation of the update log following it, then holds a sequence of entries, each made of a kind, two keys
+ * identifying the entity and the entity serialized as JSON.
+ * <p>
+ * Files are mapped in windows of a fixed size, so snapshots are not limited by the maximum size of a single mapping.
+ */
+class SnapshotFile {
+
+    static final byte GUILD = 1;
+    static final byte MEMBERS_COMPLETE = 2;
+    static final byte CHANNEL = 3;
+    static final byte ROLE = 4;
+    static final byte EMOJI = 5;
+    static final byte MEMBER = 6;
+    static final byte PRESENCE = 7;
+    static final byte VOICE_STATE = 8;
+    static final byte USER = 9;
+    static final byte MESSAGE = 10;
+    static final byte SELF = 11;
+
+    private static final Class<?>[] TYPES = {null, GuildData.class, null, ChannelData.class, RoleData.class,
+            EmojiData.class, MemberData.class, PresenceData.class, VoiceStateData.class, UserData.class,
+            MessageData.class, null};
+
+    private static final int MAGIC = 0x44344A53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_HEADER_SIZE = 1 + 2 * Long.BYTES + Integer.BYTES;
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Receives the entries of a snapshot being read.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(byte kind, long key1, long key2, @Nullable Object value);
+    }
+
+    /**
+     * Read all entries of the snapshot at the given path.
+     *
+     * @param path the snapshot file
+     * @param mapper the {@link ObjectMapper} used to deserialize entities
+     * @param consumer the consumer of each entry, in order
+     * @return the generation of the update log following the snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static long read(Path path, ObjectMapper mapper, EntryConsumer consumer) throws IOException {
+        return read(path, mapper, consumer, WINDOW_SIZE);
+    }
+
+    // visible for testing
+    static long read(Path path, ObjectMapper mapper, EntryConsumer consumer, int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = map(channel, null, 0, HEADER_SIZE, size, windowSize);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported store snapshot " + path);
+            }
+            long generation = buffer.getLong();
+            long position = HEADER_SIZE;
+            while (position < size) {
+                buffer = map(channel, buffer, position, ENTRY_HEADER_SIZE, size, windowSize);
+                byte kind = buffer.get();
+                long key1 = buffer.getLong();
+                long key2 = buffer.getLong();
+                int length = buffer.getInt();
+                position += ENTRY_HEADER_SIZE;
+                Object value = null;
+                if (length >= 0) {
+                    buffer = map(channel, buffer, position, length, size, windowSize);
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    value = mapper.readValue(bytes, TYPES[kind]);
+                    position += length;
+                }
+                consumer.accept(kind, key1, key2, value);
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Returns a buffer positioned at the given file position with at least {@code required} bytes remaining, reusing
+     * the current window when possible.
+     */
+    private static MappedByteBuffer map(FileChannel channel, @Nullable MappedByteBuffer buffer, long position,
+                                        int required, long size, int windowSize) throws IOException {
+        if (buffer != null && buffer.remaining() >= required) {
+            return buffer;
+        }
+        if (size - position < required) {
+            throw new IOException("Truncated store snapshot");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(size - position, Math.max(windowSize, required)));
+    }
+
+    /**
+     * Writes entries to a new snapshot file.
+     */
+    static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ObjectMapper mapper;
+        private final int windowSize;
+        private MappedByteBuffer buffer;
+        private long bufferStart;
+
+        /**
+         * Create a new snapshot file.
+         *
+         * @param path the snapshot file, replaced if it exists
+         * @param mapper the {@link ObjectMapper} used to serialize entities
+         * @param generation the generation of the update log following the snapshot
+         * @throws IOException if the file cannot be created
+         */
+        Writer(Path path, ObjectMapper mapper, long generation) throws IOException {
+            this(path, mapper, generation, WINDOW_SIZE);
+        }
+
+        // visible for testing
+        Writer(Path path, ObjectMapper mapper, long generation, int windowSize) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.mapper = mapper;
+            this.windowSize = windowSize;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(windowSize, HEADER_SIZE));
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(generation);
+        }
+
+        /**
+         * Append an entry to the snapshot.
+         *
+         * @param kind the kind of entity
+         * @param key1 the first key, usually the ID of the guild or channel owning the entity
+         * @param key2 the second key, usually the ID of the entity
+         * @param value the entity, or {@code null} for entries without one
+         * @throws IOException if the entry cannot be written
+         */
+        void write(byte kind, long key1, long key2, @Nullable Object value) throws IOException {
+            byte[] bytes = value == null ? null : mapper.writeValueAsBytes(value);
+            int length = bytes == null ? 0 : bytes.length;
+            ensure(ENTRY_HEADER_SIZE + length);
+            buffer.put(kind);
+            buffer.putLong(key1);
+            buffer.putLong(key2);
+            buffer.putInt(bytes == null ? -1 : bytes.length);
+            if (bytes != null) {
+                buffer.put(bytes);
+            }
+        }
+
+        private void ensure(int required) throws IOException {
+            if (buffer.remaining() < required) {
+                buffer.force();
+                bufferStart += buffer.position();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, bufferStart, Math.max(windowSize, required));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                buffer.force();
+                channel.truncate(bufferStart + buffer.position());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.annotations.Experimental;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.api.object.StoreChange;
+import discord4j.common.store.api.object.StoreChange.EntityType;
+import discord4j.common.store.api.object.StoreChange.Operation;
+import discord4j.discordjson.json.*;
+import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Writes and reads {@link StoreChange} sequences as files of JSON lines, for example to record the changes published
+ * by a {@link ChangeCapturingStoreLayout} and feed them to a local index or a test.
+ */
+@Experimental
+public final class StoreChangeFileSink {
+
+    private static final Map<EntityType, Class<?>> DATA_TYPES = new EnumMap<>(EntityType.class);
+
+    static {
+        DATA_TYPES.put(EntityType.GUILD, GuildData.class);
+        DATA_TYPES.put(EntityType.CHANNEL, ChannelData.class);
+        DATA_TYPES.put(EntityType.ROLE, RoleData.class);
+        DATA_TYPES.put(EntityType.EMOJI, EmojiData.class);
+        DATA_TYPES.put(EntityType.MEMBER, MemberData.class);
+        DATA_TYPES.put(EntityType.USER, UserData.class);
+        DATA_TYPES.put(EntityType.PRESENCE, PresenceData.class);
+        DATA_TYPES.put(EntityType.VOICE_STATE, VoiceStateData.class);
+        DATA_TYPES.put(EntityType.MESSAGE, MessageData.class);
+        DATA_TYPES.put(EntityType.SHARD, InvalidationCause.class);
+    }
+
+    private StoreChangeFileSink() {
+    }
+
+    /**
+     * Append the given changes to a file, one JSON object per line, flushing after each change.
+     *
+     * @param changes the changes to write
+     * @param file the target file, created if missing
+     * @param mapper the {@link ObjectMapper} used to serialize entities, able to handle Discord4J JSON types
+     * @return a {@link Mono} completing once all changes are written, or erroring if the file cannot be written
+     */
+    public static Mono<Void> write(Publisher<StoreChange> changes, Path file, ObjectMapper mapper) {
+        return Mono.using(
+                () -> Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND),
+                writer -> Flux.from(changes)
+                        .doOnNext(change -> writeLine(writer, change, mapper))
+                        .then(),
+                StoreChangeFileSink::close);
+    }
+
+    /**
+     * Read the changes written to a file by {@link #write(Publisher, Path, ObjectMapper)}.
+     *
+     * @param file the source file
+     * @param mapper the {@link ObjectMapper} used to deserialize entities, able to handle Discord4J JSON types
+     * @return a {@link Flux} of the changes in the file, in order
+     */
+    public static Flux<StoreChange> read(Path file, ObjectMapper mapper) {
+        return Flux.using(
+                () -> Files.newBufferedReader(file, StandardCharsets.UTF_8),
+                reader -> Flux.fromStream(reader.lines())
+                        .filter(line -> !line.isEmpty())
+                        .map(line -> readLine(line, mapper)),
+                StoreChangeFileSink::close);
+    }
+
+    private static void writeLine(BufferedWriter writer, StoreChange change, ObjectMapper mapper) {
+        ObjectNode node = mapper.createObjectNode()
+                .put("sequence", change.getSequence())
+                .put("shard", change.getShardIndex())
+                .put("operation", change.getOperation().name())
+                .put("entity", change.getEntityType().name())
+                .put("parent_id", change.getParentId())
+                .put("id", change.getId());
+        change.getData().ifPresent(data -> node.putPOJO("data", data));
+        try {
+            writer.write(mapper.writeValueAsString(node));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static StoreChange readLine(String line, ObjectMapper mapper) {
+        try {
+            JsonNode node = mapper.readTree(line);
+            EntityType entityType = EntityType.valueOf(node.get("entity").asText());
+            JsonNode data = node.get("data");
+            return StoreChange.of(node.get("sequence").asLong(), node.get("shard").asInt(),
+                    Operation.valueOf(node.get("operation").asText()), entityType, node.get("parent_id").asLong(),
+                    node.get("id").asLong(),
+                    data == null || data.isNull() ? null : mapper.treeToValue(data, DATA_TYPES.get(entityType)));
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
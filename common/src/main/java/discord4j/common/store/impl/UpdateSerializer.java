@@ -0,0 +1,82 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous updates one at a time, in the order they are subscribed to. Waiting updates are queued instead
+ * of blocking a thread, and updates completing synchronously are drained in a loop instead of recursively.
+ */
+class UpdateSerializer {
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean locked = new AtomicBoolean();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Returns a {@link Mono} subscribing to the given update once all previously subscribed updates of this
+     * serializer have terminated. Cancelling it before the update starts skips the update.
+     *
+     * @param update a supplier of the update to serialize
+     * @param <T> the type of the update result
+     * @return a {@link Mono} running the update exclusively
+     */
+    <T> Mono<T> serialize(Supplier<? extends Mono<T>> update) {
+        return Mono.create(sink -> {
+            Disposable.Swap current = Disposables.swap();
+            sink.onCancel(current);
+            pending.offer(() -> {
+                if (current.isDisposed()) {
+                    release();
+                    return;
+                }
+                current.update(Mono.defer(update)
+                        .doFinally(signal -> release())
+                        .subscribe(sink::success, sink::error, () -> sink.success()));
+            });
+            drain();
+        });
+    }
+
+    private void release() {
+        locked.set(false);
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            // only the draining thread polls, so the queue cannot be emptied concurrently
+            while (!pending.isEmpty() && locked.compareAndSet(false, true)) {
+                pending.poll().run();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.legacy;
+
+import reactor.util.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maintains the number of presences and voice states cached for each guild, and the number of voice states of each
+ * voice channel, so they can be counted without traversing the underlying stores.
+ * <p>
+ * Counters only exist for guilds saved through {@link #reset(long, int, Map)}: updates to other guilds are ignored,
+ * so events received for uncached guilds do not leave entries behind.
+ */
+class GuildCounters {
+
+    private final ConcurrentMap<Long, Counts> countsByGuild = new ConcurrentHashMap<>();
+
+    /**
+     * Reset the counters of a guild being saved with the given contents.
+     *
+     * @param guildId the guild ID
+     * @param presences the number of presences saved for the guild
+     * @param voiceChannels the channel ID of each saved voice state, indexed by user ID
+     */
+    void reset(long guildId, int presences, Map<Long, Long> voiceChannels) {
+        Counts counts = new Counts();
+        counts.presences.set(presences);
+        voiceChannels.forEach((userId, channelId) -> counts.moveVoiceState(userId, channelId));
+        countsByGuild.put(guildId, counts);
+    }
+
+    /**
+     * Discard the counters of a guild.
+     *
+     * @param guildId the guild ID
+     */
+    void remove(long guildId) {
+        countsByGuild.remove(guildId);
+    }
+
+    /**
+     * Adjust the number of presences cached for a guild.
+     *
+     * @param guildId the guild ID
+     * @param delta the number of presences added, negative if they were removed
+     */
+    void addPresences(long guildId, int delta) {
+        Counts counts = countsByGuild.get(guildId);
+        if (counts != null && delta != 0) {
+            counts.presences.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Record the voice channel of a member, replacing its previous one.
+     *
+     * @param guildId the guild ID
+     * @param userId the user ID
+     * @param channelId the current channel ID, or {@code null} if the member left voice channels
+     */
+    void moveVoiceState(long guildId, long userId, @Nullable Long channelId) {
+        Counts counts = countsByGuild.get(guildId);
+        if (counts != null) {
+            counts.moveVoiceState(userId, channelId);
+        }
+    }
+
+    // visible for testing
+    int guildCount() {
+        return countsByGuild.size();
+    }
+
+    int presences(long guildId) {
+        Counts counts = countsByGuild.get(guildId);
+        return counts == null ? 0 : counts.presences.get();
+    }
+
+    int voiceStates(long guildId) {
+        Counts counts = countsByGuild.get(guildId);
+        return counts == null ? 0 : counts.voiceChannels.size();
+    }
+
+    int voiceStates(long guildId, long channelId) {
+        Counts counts = countsByGuild.get(guildId);
+        Integer count = counts == null ? null : counts.voiceStatesByChannel.get(channelId);
+        return count == null ? 0 : count;
+    }
+
+    private static class Counts {
+
+        private final AtomicInteger presences = new AtomicInteger();
+        private final ConcurrentMap<Long, Long> voiceChannels = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Long, Integer> voiceStatesByChannel = new ConcurrentHashMap<>();
+
+        private void moveVoiceState(long userId, @Nullable Long channelId) {
+            voiceChannels.compute(userId, (id, oldChannelId) -> {
+                if (oldChannelId != null) {
+                    voiceStatesByChannel.computeIfPresent(oldChannelId,
+                            (channel, count) -> count == 1 ? null : count - 1);
+                }
+                if (channelId != null) {
+                    voiceStatesByChannel.merge(channelId, 1, Integer::sum);
+                }
+                return channelId;
+            });
+        }
+    }
+}
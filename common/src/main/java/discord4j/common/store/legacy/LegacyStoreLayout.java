@@ -20,6 +20,8 @@ package discord4j.common.store.legacy;
 import discord4j.common.store.api.layout.DataAccessor;
 import discord4j.common.store.api.layout.GatewayDataUpdater;
 import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.api.layout.StoreProjection;
+import discord4j.common.store.api.object.ExactResultNotAvailableException;
 import discord4j.common.store.api.object.InvalidationCause;
 import discord4j.common.store.api.object.PresenceAndUserData;
 import discord4j.common.util.Snowflake;
@@ -38,20 +40,51 @@ import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayDataUpdater {
 
     private static final Logger log = Loggers.getLogger(LegacyStoreLayout.class);
+    private static final int INTERN_POOL_SIZE = 1 << 16;
+    private static final ClientStatusData OFFLINE_CLIENT_STATUS = ClientStatusData.builder()
+            .desktop(Possible.absent())
+            .mobile(Possible.absent())
+            .web(Possible.absent())
+            .build();
 
     private final StateHolder stateHolder;
-
-    private LegacyStoreLayout(StoreService storeService) {
+    private final StoreProjection projection;
+    // canonical instances of low-cardinality values repeated across members and presences, such as role IDs, user
+    // flags and statuses, few enough to remain pooled. Entities holding canonical values only are stored as is
+    private final WeakInterner interner = new WeakInterner(INTERN_POOL_SIZE);
+    private final UserGuildIndex userGuilds = new UserGuildIndex();
+    private final GuildCounters counters = new GuildCounters();
+    private final ConcurrentMap<Integer, Set<Long>> guildsByShard = new ConcurrentHashMap<>();
+    // guilds whose member list is known to be fully cached
+    private final Set<Long> completeMemberLists = ConcurrentHashMap.newKeySet();
+
+    private LegacyStoreLayout(StoreService storeService, StoreProjection projection) {
         this.stateHolder = new StateHolder(storeService);
+        this.projection = projection;
     }
 
     public static LegacyStoreLayout of(StoreService storeService) {
-        return new LegacyStoreLayout(storeService);
+        return of(storeService, StoreProjection.none());
+    }
+
+    /**
+     * Create a {@link LegacyStoreLayout} backed by the given {@link StoreService}, saving members, users and
+     * presences as projected by the given {@link StoreProjection}.
+     *
+     * @param storeService the service creating the underlying stores
+     * @param projection the fields of members, users and presences to retain
+     * @return a new {@link LegacyStoreLayout}
+     */
+    public static LegacyStoreLayout of(StoreService storeService, StoreProjection projection) {
+        return new LegacyStoreLayout(storeService, Objects.requireNonNull(projection));
     }
 
     @Override
@@ -75,7 +108,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countChannelsInGuild(long guildId) {
-        return getChannelsInGuild(guildId).count();
+        return countInGuild(guildId, guild -> guild.channels().size());
     }
 
     @Override
@@ -85,7 +118,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countEmojisInGuild(long guildId) {
-        return getEmojisInGuild(guildId).count();
+        return countInGuild(guildId, guild -> guild.emojis().size());
     }
 
     @Override
@@ -100,13 +133,14 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countMembersInGuild(long guildId) {
-        return getMembersInGuild(guildId).count();
+        return countInGuild(guildId, guild -> guild.members().size());
     }
 
     @Override
     public Mono<Long> countExactMembersInGuild(long guildId) {
-        // TODO: can we provide a different implementation?
-        return countMembersInGuild(guildId);
+        return Mono.defer(() -> completeMemberLists.contains(guildId)
+                ? countMembersInGuild(guildId)
+                : Mono.error(new ExactResultNotAvailableException()));
     }
 
     @Override
@@ -121,12 +155,28 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countPresences() {
+        if (!projection.storesOfflinePresences()) {
+            return getGuilds()
+                    .flatMap(guild -> countPresencesInGuild(Snowflake.asLong(guild.id())))
+                    .reduce(0L, Long::sum);
+        }
         return stateHolder.getPresenceStore().count();
     }
 
     @Override
     public Mono<Long> countPresencesInGuild(long guildId) {
-        return getPresencesInGuild(guildId).count();
+        if (!projection.storesOfflinePresences()) {
+            // same sets as getPresencesInGuild, as saved presences may belong to members that are not cached yet
+            return stateHolder.getPresenceStore()
+                    .findInRange(LongLongTuple2.of(guildId, 0), LongLongTuple2.of(guildId, Long.MAX_VALUE))
+                    .map(presence -> Snowflake.asLong(presence.user().id()))
+                    .collect(Collectors.toSet())
+                    .flatMap(onlineUserIds -> getMembersInGuild(guildId)
+                            .filter(member -> !onlineUserIds.contains(Snowflake.asLong(member.user().id())))
+                            .count()
+                            .map(offline -> onlineUserIds.size() + offline));
+        }
+        return Mono.fromCallable(() -> (long) counters.presences(guildId));
     }
 
     @Override
@@ -136,7 +186,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countRolesInGuild(long guildId) {
-        return getRolesInGuild(guildId).count();
+        return countInGuild(guildId, guild -> guild.roles().size());
     }
 
     @Override
@@ -151,12 +201,19 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Long> countVoiceStatesInGuild(long guildId) {
-        return getVoiceStatesInGuild(guildId).count();
+        return Mono.fromCallable(() -> (long) counters.voiceStates(guildId));
     }
 
     @Override
     public Mono<Long> countVoiceStatesInChannel(long guildId, long channelId) {
-        return getVoiceStatesInChannel(guildId, channelId).count();
+        return Mono.fromCallable(() -> (long) counters.voiceStates(guildId, channelId));
+    }
+
+    private Mono<Long> countInGuild(long guildId, ToIntFunction<GuildData> counter) {
+        // ID lists of guilds are kept up to date by the updates, so they can be counted without their entities
+        return getGuildById(guildId)
+                .map(guild -> (long) counter.applyAsInt(guild))
+                .defaultIfEmpty(0L);
     }
 
     @Override
@@ -216,8 +273,9 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Flux<MemberData> getExactMembersInGuild(long guildId) {
-        return stateHolder.getMemberStore()
-                .findInRange(LongLongTuple2.of(guildId, 0), LongLongTuple2.of(guildId, Long.MAX_VALUE));
+        return Flux.defer(() -> completeMemberLists.contains(guildId)
+                ? getMembersInGuild(guildId)
+                : Flux.error(new ExactResultNotAvailableException()));
     }
 
     @Override
@@ -243,18 +301,39 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Flux<PresenceData> getPresences() {
+        if (!projection.storesOfflinePresences()) {
+            return getGuilds().flatMap(guild -> getPresencesInGuild(Snowflake.asLong(guild.id())));
+        }
         return stateHolder.getPresenceStore().values();
     }
 
     @Override
     public Flux<PresenceData> getPresencesInGuild(long guildId) {
-        return stateHolder.getPresenceStore()
+        Flux<PresenceData> presences = stateHolder.getPresenceStore()
                 .findInRange(LongLongTuple2.of(guildId, 0), LongLongTuple2.of(guildId, Long.MAX_VALUE));
+        if (projection.storesOfflinePresences()) {
+            return presences;
+        }
+        // members without a saved presence are offline
+        return presences.collectList().flatMapMany(saved -> {
+            Set<Long> onlineUserIds = new HashSet<>(saved.size());
+            for (PresenceData presence : saved) {
+                onlineUserIds.add(Snowflake.asLong(presence.user().id()));
+            }
+            Flux<PresenceData> offlinePresences = getMembersInGuild(guildId)
+                    .filter(member -> !onlineUserIds.contains(Snowflake.asLong(member.user().id())))
+                    .map(this::createPresence);
+            return Flux.fromIterable(saved).concatWith(offlinePresences);
+        });
     }
 
     @Override
     public Mono<PresenceData> getPresenceById(long guildId, long userId) {
-        return stateHolder.getPresenceStore().find(LongLongTuple2.of(guildId, userId));
+        Mono<PresenceData> presence = stateHolder.getPresenceStore().find(LongLongTuple2.of(guildId, userId));
+        if (projection.storesOfflinePresences()) {
+            return presence;
+        }
+        return presence.switchIfEmpty(getMemberById(guildId, userId).map(this::createPresence));
     }
 
     @Override
@@ -439,98 +518,219 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Void> onGuildCreate(int shardIndex, GuildCreate dispatch) {
-        GuildCreateData createData;
-        GuildData guild;
-        // TODO is there a better solution to this?
-        if (dispatch.guild().large()) {
-            // Solves https://github.com/Discord4J/Discord4J/issues/429
-            // Member store cannot have duplicates because keys cannot
-            // be duplicated, but array addition in GuildBean can
-            //guildBean.setMembers(new long[0]);
-            createData = GuildCreateData.builder()
-                    .from(dispatch.guild())
-                    .members(Collections.emptyList())
-                    .build();
-            guild = GuildData.builder()
-                    .from(createData)
-                    .roles(createData.roles().stream().map(RoleData::id).collect(Collectors.toList()))
-                    .emojis(createData.emojis().stream().map(EmojiData::id).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()))
-                    .channels(createData.channels().stream().map(ChannelData::id).collect(Collectors.toList()))
-                    .build();
-        } else {
-            createData = dispatch.guild();
-            guild = GuildData.builder()
-                    .from(createData)
-                    .roles(createData.roles().stream().map(RoleData::id).collect(Collectors.toList()))
-                    .emojis(createData.emojis().stream().map(EmojiData::id).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()))
-                    .members(createData.members().stream().map(data -> data.user().id()).distinct().collect(Collectors.toList()))
-                    .channels(createData.channels().stream().map(ChannelData::id).collect(Collectors.toList()))
-                    .build();
-        }
+        return Mono.defer(() -> {
+            GuildCreateData createData = dispatch.guild();
+            Id guildIdData = createData.id();
+            long guildId = Snowflake.asLong(guildIdData);
+
+            // walk the payload once, collecting the entries of each store
+            List<Id> channelIds = new ArrayList<>(createData.channels().size());
+            List<Tuple2<Long, ChannelData>> channels = new ArrayList<>(createData.channels().size());
+            for (ChannelData channel : createData.channels()) {
+                channelIds.add(channel.id());
+                channels.add(Tuples.of(Snowflake.asLong(channel.id()),
+                        ChannelData.builder().from(channel).guildId(guildIdData).build()));
+            }
 
-        long guildId = Snowflake.asLong(guild.id());
+            List<Id> roleIds = new ArrayList<>(createData.roles().size());
+            List<Tuple2<Long, RoleData>> roles = new ArrayList<>(createData.roles().size());
+            for (RoleData role : createData.roles()) {
+                roleIds.add(role.id());
+                roles.add(Tuples.of(Snowflake.asLong(role.id()), role));
+            }
 
-        Mono<Void> saveGuild = stateHolder.getGuildStore().save(guildId, guild)
-                .doOnSubscribe(s -> log.trace("GuildCreate doOnSubscribe {}", guildId))
-                .doFinally(s -> log.trace("GuildCreate doFinally {}: {}", guildId, s));
+            List<Id> emojiIds = new ArrayList<>(createData.emojis().size());
+            List<Tuple2<Long, EmojiData>> emojis = new ArrayList<>(createData.emojis().size());
+            for (EmojiData emoji : createData.emojis()) {
+                if (emoji.id().isPresent()) {
+                    emojiIds.add(emoji.id().get());
+                    emojis.add(Tuples.of(Snowflake.asLong(emoji.id().get()), emoji));
+                }
+            }
 
-        Mono<Void> saveChannels = stateHolder.getChannelStore()
-                .save(Flux.fromIterable(createData.channels())
-                        .map(channel -> Tuples.of(Snowflake.asLong(channel.id()),
-                                ChannelData.builder().from(channel).guildId(guild.id()).build())));
+            List<Tuple2<LongLongTuple2, PresenceData>> presences = new ArrayList<>(createData.presences().size());
+            Set<Long> onlineUserIds = new HashSet<>();
+            for (PresenceData presence : createData.presences()) {
+                long userId = Snowflake.asLong(presence.user().id());
+                onlineUserIds.add(userId);
+                presences.add(Tuples.of(LongLongTuple2.of(guildId, userId), storedPresence(presence)));
+            }
 
-        Mono<Void> saveRoles = stateHolder.getRoleStore()
-                .save(Flux.fromIterable(createData.roles())
-                        .map(role -> Tuples.of(Snowflake.asLong(role.id()), role)));
+            // Solves https://github.com/Discord4J/Discord4J/issues/429
+            // Members of large guilds are requested separately and saved through member chunks
+            List<MemberData> memberList = createData.large() ? Collections.emptyList() : createData.members();
+            List<Id> memberIds = new ArrayList<>(memberList.size());
+            List<Tuple2<LongLongTuple2, MemberData>> members = new ArrayList<>(memberList.size());
+            List<Tuple2<Long, UserData>> users = new ArrayList<>(memberList.size());
+            Set<Long> seenUserIds = new HashSet<>();
+            for (MemberData member : memberList) {
+                long userId = Snowflake.asLong(member.user().id());
+                if (!seenUserIds.add(userId)) {
+                    continue;
+                }
+                memberIds.add(member.user().id());
+                members.add(Tuples.of(LongLongTuple2.of(guildId, userId), storedMember(member)));
+                users.add(Tuples.of(userId, storedUser(member.user())));
+                // the payload holds the presences of all online members
+                if (projection.storesOfflinePresences() && !onlineUserIds.contains(userId)) {
+                    presences.add(Tuples.of(LongLongTuple2.of(guildId, userId), createPresence(member)));
+                }
+            }
 
-        Mono<Void> saveEmojis = stateHolder.getGuildEmojiStore()
-                .save(Flux.fromIterable(createData.emojis())
-                        .map(emoji -> Tuples.of(Snowflake.asLong(emoji.id()
-                                .orElseThrow(NoSuchElementException::new)), emoji)));
-
-        Mono<Void> saveMembers = stateHolder.getMemberStore()
-                .save(Flux.fromIterable(createData.members())
-                        .map(member -> Tuples.of(LongLongTuple2.of(guildId,
-                                Snowflake.asLong(member.user().id())), member)));
-
-        Mono<Void> saveUsers = stateHolder.getUserStore()
-                .save(Flux.fromIterable(createData.members())
-                        .map(MemberData::user)
-                        .map(user -> Tuples.of(Snowflake.asLong(user.id()), user)));
-
-        Mono<Void> saveVoiceStates = stateHolder.getVoiceStateStore()
-                .save(Flux.fromIterable(createData.voiceStates())
-                        .map(voiceState -> Tuples.of(LongLongTuple2.of(guildId,
-                                Snowflake.asLong(voiceState.userId())),
-                                VoiceStateData.builder()
-                                        .from(voiceState)
-                                        .guildId(guild.id())
-                                        .build())));
-
-        Mono<Void> savePresences = stateHolder.getPresenceStore()
-                .save(Flux.fromIterable(createData.presences())
-                        .map(presence -> Tuples.of(LongLongTuple2.of(guildId,
-                                Snowflake.asLong(presence.user().id())), presence)));
-
-        Mono<Void> saveOfflinePresences = Flux.fromIterable(createData.members())
+            List<Tuple2<LongLongTuple2, VoiceStateData>> voiceStates =
+                    new ArrayList<>(createData.voiceStates().size());
+            Map<Long, Long> voiceChannels = new HashMap<>();
+            for (VoiceStateData voiceState : createData.voiceStates()) {
+                long userId = Snowflake.asLong(voiceState.userId());
+                voiceStates.add(Tuples.of(LongLongTuple2.of(guildId, userId),
+                        VoiceStateData.builder().from(voiceState).guildId(guildIdData).build()));
+                voiceState.channelId().ifPresent(channelId -> voiceChannels.put(userId, Snowflake.asLong(channelId)));
+            }
+
+            GuildData guild = GuildData.builder()
+                    .from(createData)
+                    .roles(roleIds)
+                    .emojis(emojiIds)
+                    .members(memberIds)
+                    .channels(channelIds)
+                    .build();
+
+            boolean membersComplete = !createData.large() && memberIds.size() >= guild.memberCount();
+            // indexes are only updated once the entities they refer to are saved
+            Mono<Void> updateIndexes = Mono.fromRunnable(() -> {
+                users.forEach(user -> userGuilds.add(user.getT1(), guildId));
+                guildsByShard.computeIfAbsent(shardIndex, k -> ConcurrentHashMap.newKeySet()).add(guildId);
+                counters.reset(guildId, presences.size(), voiceChannels);
+                if (membersComplete) {
+                    completeMemberLists.add(guildId);
+                } else {
+                    completeMemberLists.remove(guildId);
+                }
+            });
+
+            Mono<Void> saveGuild = stateHolder.getGuildStore().save(guildId, guild)
+                    .doOnSubscribe(s -> log.trace("GuildCreate doOnSubscribe {}", guildId))
+                    .doFinally(s -> log.trace("GuildCreate doFinally {}: {}", guildId, s));
+
+            return saveGuild
+                    .and(stateHolder.getChannelStore().save(Flux.fromIterable(channels)))
+                    .and(stateHolder.getRoleStore().save(Flux.fromIterable(roles)))
+                    .and(stateHolder.getGuildEmojiStore().save(Flux.fromIterable(emojis)))
+                    .and(stateHolder.getMemberStore().save(Flux.fromIterable(members)))
+                    .and(stateHolder.getUserStore().save(Flux.fromIterable(users)))
+                    .and(stateHolder.getVoiceStateStore().save(Flux.fromIterable(voiceStates)))
+                    .and(stateHolder.getPresenceStore().save(Flux.fromIterable(presences)))
+                    .then(updateIndexes);
+        });
+    }
+
+    private Mono<Void> saveOfflinePresences(long guildId, List<MemberData> members) {
+        if (!projection.storesOfflinePresences()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(members)
                 .filterWhen(member -> stateHolder.getPresenceStore()
                         .find(LongLongTuple2.of(guildId, Snowflake.asLong(member.user().id())))
                         .hasElement()
-                        .map(id -> !id))
+                        .map(found -> !found))
                 .flatMap(member -> stateHolder.getPresenceStore()
                         .save(LongLongTuple2.of(guildId, Snowflake.asLong(member.user().id())),
-                                createPresence(member)))
+                                createPresence(member))
+                        .doOnSuccess(v -> counters.addPresences(guildId, 1)))
                 .then();
+    }
 
-        return saveGuild
-                .and(saveChannels)
-                .and(saveRoles)
-                .and(saveEmojis)
-                .and(saveMembers)
-                .and(saveUsers)
-                .and(saveVoiceStates)
-                .and(savePresences)
-                .and(saveOfflinePresences);
+    private MemberData storedMember(MemberData member) {
+        MemberData projected = projection.projectMember(member);
+        UserData user = internUser(projected.user());
+        List<Id> roles = internAll(projected.roles());
+        if (user == projected.user() && roles == projected.roles()) {
+            return projected;
+        }
+        return MemberData.builder()
+                .from(projected)
+                .user(user)
+                .roles(roles)
+                .build();
+    }
+
+    private UserData storedUser(UserData user) {
+        return internUser(projection.projectUser(user));
+    }
+
+    private UserData internUser(UserData user) {
+        Possible<Integer> flags = internPossible(user.flags());
+        Possible<Integer> publicFlags = internPossible(user.publicFlags());
+        if (flags == user.flags() && publicFlags == user.publicFlags()) {
+            return user;
+        }
+        return UserData.builder()
+                .from(user)
+                .flags(flags)
+                .publicFlags(publicFlags)
+                .build();
+    }
+
+    private PresenceData storedPresence(PresenceData presence) {
+        PresenceData projected = projection.projectPresence(presence);
+        String status = interner.intern(projected.status());
+        ClientStatusData clientStatus = interner.intern(projected.clientStatus());
+        List<ActivityData> activities = internActivities(projected.activities());
+        if (status == projected.status() && clientStatus == projected.clientStatus()
+                && activities == projected.activities()) {
+            return projected;
+        }
+        return PresenceData.builder()
+                .from(projected)
+                .status(status)
+                .clientStatus(clientStatus)
+                .activities(activities)
+                .build();
+    }
+
+    /**
+     * Returns the given list if the fields shared by many activities are all canonical, or a list of activities
+     * holding their canonical instances otherwise.
+     */
+    private List<ActivityData> internActivities(List<ActivityData> activities) {
+        List<ActivityData> result = null;
+        for (int i = 0; i < activities.size(); i++) {
+            ActivityData activity = activities.get(i);
+            String name = interner.intern(activity.name());
+            Possible<Id> applicationId = internPossible(activity.applicationId());
+            ActivityData canonical = name == activity.name() && applicationId == activity.applicationId()
+                    ? activity
+                    : ActivityData.builder().from(activity).name(name).applicationId(applicationId).build();
+            if (result == null && canonical != activity) {
+                result = new ArrayList<>(activities.subList(0, i));
+            }
+            if (result != null) {
+                result.add(canonical);
+            }
+        }
+        return result == null ? activities : result;
+    }
+
+    /**
+     * Returns the given list if all its elements are canonical, or a list of their canonical instances otherwise.
+     */
+    private <T> List<T> internAll(List<T> values) {
+        List<T> result = null;
+        for (int i = 0; i < values.size(); i++) {
+            T value = values.get(i);
+            T canonical = interner.intern(value);
+            if (result == null && canonical != value) {
+                result = new ArrayList<>(values.subList(0, i));
+            }
+            if (result != null) {
+                result.add(canonical);
+            }
+        }
+        return result == null ? values : result;
+    }
+
+    private <T> Possible<T> internPossible(Possible<T> value) {
+        return value.isAbsent() ? value : interner.intern(value);
     }
 
     private PresenceData createPresence(MemberData member) {
@@ -551,11 +751,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                         .premiumType(member.user().premiumType())
                         .build())
                 .status("offline")
-                .clientStatus(ClientStatusData.builder()
-                        .desktop(Possible.absent())
-                        .mobile(Possible.absent())
-                        .web(Possible.absent())
-                        .build())
+                .clientStatus(OFFLINE_CLIENT_STATUS)
                 .build();
     }
 
@@ -563,6 +759,16 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
     public Mono<GuildData> onGuildDelete(int shardIndex, GuildDelete dispatch) {
         long guildId = Snowflake.asLong(dispatch.guild().id());
 
+        return Mono.fromRunnable(() -> {
+                    Set<Long> shardGuilds = guildsByShard.get(shardIndex);
+                    if (shardGuilds != null) {
+                        shardGuilds.remove(guildId);
+                    }
+                })
+                .then(deleteGuild(guildId));
+    }
+
+    private Mono<GuildData> deleteGuild(long guildId) {
         Mono<Void> deleteGuild = stateHolder.getGuildStore().delete(guildId);
 
         return stateHolder.getGuildStore().find(guildId)
@@ -577,7 +783,10 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                     Mono<Void> deleteMembers = stateHolder.getMemberStore()
                             .deleteInRange(LongLongTuple2.of(guildId, 0), LongLongTuple2.of(guildId, -1));
                     // TODO delete messages
-                    // TODO delete no longer visible users
+                    Mono<Void> deleteOrphanUsers = stateHolder.getUserStore()
+                            .delete(Flux.fromIterable(guild.members())
+                                    .map(Snowflake::asLong)
+                                    .filter(userId -> userGuilds.remove(userId, guildId)));
                     Mono<Void> deleteVoiceStates = stateHolder.getVoiceStateStore()
                             .deleteInRange(LongLongTuple2.of(guildId, 0), LongLongTuple2.of(guildId, -1));
                     Mono<Void> deletePresences = stateHolder.getPresenceStore()
@@ -587,11 +796,16 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                             .and(deleteRoles)
                             .and(deleteEmojis)
                             .and(deleteMembers)
+                            .and(deleteOrphanUsers)
                             .and(deleteVoiceStates)
                             .and(deletePresences)
                             .thenReturn(guild);
                 })
-                .flatMap(deleteGuild::thenReturn);
+                .flatMap(deleteGuild::thenReturn)
+                .doFinally(s -> {
+                    completeMemberLists.remove(guildId);
+                    counters.remove(guildId);
+                });
     }
 
     @Override
@@ -646,10 +860,11 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                 .doFinally(s -> log.trace("GuildMemberAdd doFinally {}: {}", guildId, s));
 
         Mono<Void> saveMember = stateHolder.getMemberStore()
-                .save(LongLongTuple2.of(guildId, userId), member);
+                .save(LongLongTuple2.of(guildId, userId), storedMember(member));
 
         Mono<Void> saveUser = stateHolder.getUserStore()
-                .save(userId, user);
+                .save(userId, storedUser(user))
+                .doOnSubscribe(s -> userGuilds.add(userId, guildId));
 
         return addMemberId
                 .and(saveMember)
@@ -679,15 +894,16 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
         Mono<Void> deleteMember = stateHolder.getMemberStore()
                 .delete(LongLongTuple2.of(guildId, userId));
 
+        // a single lookup decides both the delete and the counter update
         Mono<Void> deletePresence = stateHolder.getPresenceStore()
-                .delete(LongLongTuple2.of(guildId, userId));
+                .find(LongLongTuple2.of(guildId, userId))
+                .flatMap(oldPresence -> stateHolder.getPresenceStore()
+                        .delete(LongLongTuple2.of(guildId, userId))
+                        .doOnSuccess(v -> counters.addPresences(guildId, -1)));
 
-        Mono<Void> deleteOrphanUser = stateHolder.getMemberStore()
-                .keys().filter(key -> key.getT1() != guildId && key.getT2() == userId)
-                .hasElements()
-                .flatMap(hasMutualServers -> Mono.just(userId)
-                        .filter(__ -> !hasMutualServers)
-                        .flatMap(stateHolder.getUserStore()::delete));
+        Mono<Void> deleteOrphanUser = Mono.defer(() -> userGuilds.remove(userId, guildId)
+                ? stateHolder.getUserStore().delete(userId)
+                : Mono.empty());
 
         return member.flatMap(value -> Mono.when(removeMemberId, deleteMember, deletePresence, deleteOrphanUser)
                 .thenReturn(value));
@@ -700,10 +916,11 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
         Flux<Tuple2<LongLongTuple2, MemberData>> memberPairs = Flux.fromIterable(members)
                 .map(data -> Tuples.of(LongLongTuple2.of(guildId, Snowflake.asLong(data.user().id())),
-                        data));
+                        storedMember(data)));
 
         Flux<Tuple2<Long, UserData>> userPairs = Flux.fromIterable(members)
-                .map(data -> Tuples.of(Snowflake.asLong(data.user().id()), data.user()));
+                .map(data -> Tuples.of(Snowflake.asLong(data.user().id()), storedUser(data.user())))
+                .doOnNext(pair -> userGuilds.add(pair.getT1(), guildId));
 
         Mono<Void> addMemberIds = stateHolder.getGuildStore()
                 .find(guildId)
@@ -721,15 +938,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
         Mono<Void> saveUsers = stateHolder.getUserStore().save(userPairs);
 
-        Mono<Void> saveOfflinePresences = Flux.fromIterable(members)
-                .filterWhen(member -> stateHolder.getPresenceStore()
-                        .find(LongLongTuple2.of(guildId, Snowflake.asLong(member.user().id())))
-                        .hasElement()
-                        .map(identity -> !identity))
-                .flatMap(member -> stateHolder.getPresenceStore()
-                        .save(LongLongTuple2.of(guildId, Snowflake.asLong(member.user().id())),
-                                createPresence(member)))
-                .then();
+        Mono<Void> saveOfflinePresences = saveOfflinePresences(guildId, members);
 
         return addMemberIds
                 .and(saveMembers)
@@ -757,7 +966,9 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                             .pending(dispatch.pending())
                             .build();
 
-                    return stateHolder.getMemberStore().save(key, newMember).thenReturn(oldMember);
+                    return stateHolder.getMemberStore()
+                            .save(key, storedMember(newMember))
+                            .thenReturn(oldMember);
                 });
     }
 
@@ -867,8 +1078,11 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Void> onShardInvalidation(int shardIndex, InvalidationCause cause) {
-        // TODO implement onShardInvalidation
-        return Mono.empty();
+        return Mono.defer(() -> Mono.justOrEmpty(guildsByShard.remove(shardIndex)))
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(this::deleteGuild)
+                .doOnSubscribe(s -> log.trace("ShardInvalidation doOnSubscribe {}: {}", shardIndex, cause))
+                .then();
     }
 
     @Override
@@ -1089,25 +1303,42 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
         PartialUserData userData = dispatch.user();
         long userId = Snowflake.asLong(userData.id());
         LongLongTuple2 key = LongLongTuple2.of(guildId, userId);
-        PresenceData presenceData = PresenceData.builder()
+        PresenceData presenceData = storedPresence(PresenceData.builder()
                 .user(dispatch.user())
                 .status(dispatch.status())
                 .activities(dispatch.activities())
                 .clientStatus(dispatch.clientStatus())
-                .build();
+                .build());
+
+        // without saved offline presences, absent presences of cached members are offline ones
+        boolean removePresence = !projection.storesOfflinePresences() && "offline".equals(presenceData.status());
+        Mono<Void> updatePresence = removePresence
+                ? stateHolder.getPresenceStore().delete(key)
+                : stateHolder.getPresenceStore().save(key, presenceData);
 
         Mono<Optional<PresenceData>> savePresence = stateHolder.getPresenceStore()
                 .find(key)
-                .flatMap(oldPresenceData -> stateHolder.getPresenceStore()
-                        .save(key, presenceData)
-                        .thenReturn(oldPresenceData))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(storedPresence -> {
+                    Mono<PresenceData> oldPresence = storedPresence.isPresent()
+                            || projection.storesOfflinePresences()
+                            ? Mono.justOrEmpty(storedPresence)
+                            : getMemberById(guildId, userId).map(this::createPresence);
+                    int delta = storedPresence.isPresent() ? (removePresence ? -1 : 0) : (removePresence ? 0 : 1);
+                    // the lookup tells whether there is anything to delete
+                    Mono<Void> update = removePresence && !storedPresence.isPresent() ? Mono.empty() : updatePresence;
+                    return oldPresence.flatMap(oldPresenceData -> update
+                            .doOnSuccess(v -> counters.addPresences(guildId, delta))
+                            .thenReturn(oldPresenceData));
+                })
                 .map(Optional::of)
                 .defaultIfEmpty(Optional.empty());
 
         Mono<Optional<UserData>> saveUser = stateHolder.getUserStore()
                 .find(userId)
                 .flatMap(oldUserData -> {
-                    UserData newUserData = UserData.builder()
+                    UserData newUserData = storedUser(UserData.builder()
                             .from(oldUserData)
                             .username(userData.username().toOptional()
                                     .orElse(oldUserData.username()))
@@ -1115,7 +1346,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
                                     .orElse(oldUserData.discriminator()))
                             .avatar(userData.avatar().isAbsent() ? oldUserData.avatar() :
                                     Possible.flatOpt(userData.avatar()))
-                            .build();
+                            .build());
 
                     return stateHolder.getUserStore().save(userId, newUserData).thenReturn(oldUserData);
                 })
@@ -1128,7 +1359,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Void> onReady(Ready dispatch) {
-        UserData userData = dispatch.user();
+        UserData userData = storedUser(dispatch.user());
         long userId = Snowflake.asLong(userData.id());
 
         return stateHolder.getUserStore().save(userId, userData);
@@ -1136,7 +1367,7 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<UserData> onUserUpdate(int shardIndex, UserUpdate dispatch) {
-        UserData userData = dispatch.user();
+        UserData userData = storedUser(dispatch.user());
         long userId = Snowflake.asLong(userData.id());
 
         Mono<Void> saveNew = stateHolder.getUserStore().save(userId, userData);
@@ -1156,9 +1387,11 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
         LongLongTuple2 key = LongLongTuple2.of(guildId, userId);
 
-        Mono<Void> saveNewOrRemove = voiceStateData.channelId().isPresent()
+        Mono<Void> saveNewOrRemove = (voiceStateData.channelId().isPresent()
                 ? stateHolder.getVoiceStateStore().save(key, voiceStateData)
-                : stateHolder.getVoiceStateStore().delete(key);
+                : stateHolder.getVoiceStateStore().delete(key))
+                .doOnSuccess(v -> counters.moveVoiceState(guildId, userId,
+                        voiceStateData.channelId().map(Snowflake::asLong).orElse(null)));
 
         return stateHolder.getVoiceStateStore()
                 .find(key)
@@ -1168,7 +1401,9 @@ public class LegacyStoreLayout implements StoreLayout, DataAccessor, GatewayData
 
     @Override
     public Mono<Void> onGuildMembersCompletion(long guildId) {
-        // TODO needs implementation
-        return Mono.empty();
+        return stateHolder.getGuildStore()
+                .find(guildId)
+                .doOnNext(guild -> completeMemberLists.add(guildId))
+                .then();
     }
 }
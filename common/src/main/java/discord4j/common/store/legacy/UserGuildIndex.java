@@ -0,0 +1,82 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.legacy;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the guilds each cached user is a member of, allowing to detect users without mutual guilds without
+ * traversing the member store. Guild IDs are kept as small sorted arrays since most users share few guilds with the
+ * bot.
+ */
+class UserGuildIndex {
+
+    private final ConcurrentMap<Long, long[]> guildsByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Record that the given user is a member of the given guild.
+     *
+     * @param userId the user ID
+     * @param guildId the guild ID
+     */
+    void add(long userId, long guildId) {
+        guildsByUser.compute(userId, (id, guilds) -> {
+            if (guilds == null) {
+                return new long[] {guildId};
+            }
+            int index = Arrays.binarySearch(guilds, guildId);
+            if (index >= 0) {
+                return guilds;
+            }
+            int insertion = -index - 1;
+            long[] result = new long[guilds.length + 1];
+            System.arraycopy(guilds, 0, result, 0, insertion);
+            result[insertion] = guildId;
+            System.arraycopy(guilds, insertion, result, insertion + 1, guilds.length - insertion);
+            return result;
+        });
+    }
+
+    /**
+     * Record that the given user is no longer a member of the given guild.
+     *
+     * @param userId the user ID
+     * @param guildId the guild ID
+     * @return {@code true} if this call removed the last tracked guild of the user, {@code false} if the user is
+     * still a member of other guilds or was not tracked as a member of the given guild
+     */
+    boolean remove(long userId, long guildId) {
+        boolean[] removedLast = new boolean[1];
+        guildsByUser.computeIfPresent(userId, (id, guilds) -> {
+            int index = Arrays.binarySearch(guilds, guildId);
+            if (index < 0) {
+                return guilds;
+            }
+            if (guilds.length == 1) {
+                removedLast[0] = true;
+                return null;
+            }
+            long[] result = new long[guilds.length - 1];
+            System.arraycopy(guilds, 0, result, 0, index);
+            System.arraycopy(guilds, index + 1, result, index, guilds.length - index - 1);
+            return result;
+        });
+        return removedLast[0];
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.legacy;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A bounded pool of canonical instances for equal immutable values, like strings, IDs or activities repeated across
+ * many cached entities. Entries are weakly referenced, so values are released once no cached entity uses them.
+ * <p>
+ * The pool is split into stripes locked independently. Once a stripe reaches its capacity it is cleared, so values
+ * that are still in use remain shared but are no longer canonical.
+ */
+class WeakInterner {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int stripeCapacity;
+
+    /**
+     * Create a pool holding at most about {@code capacity} canonical instances.
+     *
+     * @param capacity the maximum number of pooled values
+     */
+    WeakInterner(int capacity) {
+        this.stripeCapacity = Math.max(1, capacity / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns the canonical instance equal to the given value, pooling the given one if there is none.
+     *
+     * @param value the value to intern
+     * @param <T> the type of the value
+     * @return an instance equal to the given value
+     */
+    @SuppressWarnings("unchecked")
+    <T> T intern(T value) {
+        int hash = value.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<Object> ref = stripe.pool.get(value);
+            Object canonical = ref == null ? null : ref.get();
+            if (canonical != null) {
+                return (T) canonical;
+            }
+            if (stripe.pool.size() >= stripeCapacity) {
+                stripe.pool.clear();
+            }
+            stripe.pool.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    private static class Stripe {
+
+        private final Map<Object, WeakReference<Object>> pool = new WeakHashMap<>();
+    }
+}
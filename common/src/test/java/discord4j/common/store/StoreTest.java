@@ -0,0 +1,83 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store;
+
+import discord4j.common.store.action.read.ReadActions;
+import discord4j.common.store.api.ActionMapper;
+import discord4j.common.store.api.ActionResult;
+import discord4j.common.store.api.StoreAction;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreLayout;
+import discord4j.common.store.impl.LocalStoreLayout;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoreTest {
+
+    private final LocalStoreLayout local = LocalStoreLayout.create();
+    private final Store store = Store.fromLayout(new StoreLayout() {
+        @Override
+        public DataAccessor getDataAccessor() {
+            return local;
+        }
+
+        @Override
+        public GatewayDataUpdater getGatewayDataUpdater() {
+            return local;
+        }
+
+        @Override
+        public ActionMapper getCustomActionMapper() {
+            return ActionMapper.builder()
+                    .map(AsyncAction.class, action -> Mono.just(1).hide())
+                    .build();
+        }
+    });
+
+    @Test
+    public void testExecuteCallableNow() {
+        ActionResult<Long> result = store.tryExecuteNow(ReadActions.countGuilds());
+
+        assertTrue(result.isDone());
+        assertEquals(Long.valueOf(0), result.get());
+    }
+
+    @Test
+    public void testExecuteUnknownActionNow() {
+        ActionResult<Object> result = store.tryExecuteNow(new StoreAction<Object>() {});
+
+        assertTrue(result.isDone());
+        assertNull(result.get());
+    }
+
+    @Test
+    public void testAsyncActionIsPending() {
+        ActionResult<Integer> result = store.tryExecuteNow(new AsyncAction());
+
+        assertFalse(result.isDone());
+        StepVerifier.create(result.asPublisher())
+                .expectNext(1)
+                .verifyComplete();
+    }
+
+    private static class AsyncAction implements StoreAction<Integer> {
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.api.layout;
+
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.UserData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoreProjectionTest {
+
+    private final UserData user = UserData.builder()
+            .id(Id.of(1))
+            .username("user")
+            .discriminator("0001")
+            .avatar("a_hash")
+            .bot(true)
+            .build();
+
+    @Test
+    public void testNoneKeepsInstance() {
+        assertSame(user, StoreProjection.none().projectUser(user));
+    }
+
+    @Test
+    public void testDiscardUserFields() {
+        UserData projected = StoreProjection.builder()
+                .retainUserFields(StoreProjection.UserField.BOT)
+                .build()
+                .projectUser(user);
+
+        assertEquals(user.id(), projected.id());
+        assertEquals(user.username(), projected.username());
+        assertFalse(projected.avatar().isPresent());
+        assertTrue(projected.bot().toOptional().orElse(false));
+    }
+}
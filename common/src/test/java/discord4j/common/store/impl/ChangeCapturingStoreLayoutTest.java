@@ -0,0 +1,156 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.api.object.StoreChange;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.UserData;
+import discord4j.discordjson.json.gateway.GuildCreate;
+import discord4j.discordjson.json.gateway.GuildDelete;
+import discord4j.discordjson.json.gateway.GuildMemberRemove;
+import discord4j.discordjson.json.gateway.UserUpdate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeCapturingStoreLayoutTest {
+
+    private final UserData user = UserData.builder()
+            .id(Id.of(1))
+            .username("user")
+            .discriminator("0001")
+            .build();
+
+    private final ChangeCapturingStoreLayout layout = ChangeCapturingStoreLayout.create(LocalStoreLayout.create());
+
+    @Test
+    public void testCaptureUpsert() {
+        layout.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(user).build()).block();
+        layout.shutdown();
+
+        StepVerifier.create(layout.changes())
+                .assertNext(change -> {
+                    assertEquals(1, change.getSequence());
+                    assertEquals(StoreChange.Operation.UPSERT, change.getOperation());
+                    assertEquals(StoreChange.EntityType.USER, change.getEntityType());
+                    assertEquals(1, change.getId());
+                    assertEquals(user, change.getData().orElse(null));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFileSinkRoundTrip(@TempDir Path directory) {
+        ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+        Path file = directory.resolve("changes.jsonl");
+        layout.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(user).build()).block();
+        layout.shutdown();
+
+        StoreChangeFileSink.write(layout.changes(), file, mapper).block();
+
+        StepVerifier.create(StoreChangeFileSink.read(file, mapper))
+                .expectNext(StoreChange.of(1, 0, StoreChange.Operation.UPSERT, StoreChange.EntityType.USER, 0, 1,
+                        user))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCaptureDeletes() throws IOException {
+        ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+        JsonNode dispatches;
+        try (InputStream in = ChangeCapturingStoreLayoutTest.class.getResourceAsStream("dispatches.json")) {
+            dispatches = mapper.readTree(in);
+        }
+        GatewayDataUpdater updater = layout.getGatewayDataUpdater();
+        updater.onGuildCreate(0, mapper.treeToValue(dispatches.get("GUILD_CREATE"), GuildCreate.class)).block();
+        updater.onGuildMemberRemove(0, mapper.treeToValue(dispatches.get("GUILD_MEMBER_REMOVE"),
+                GuildMemberRemove.class)).block();
+        updater.onGuildDelete(0, mapper.treeToValue(dispatches.get("GUILD_DELETE"), GuildDelete.class)).block();
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block();
+        layout.shutdown();
+
+        List<StoreChange> deletes = layout.changes()
+                .filter(change -> change.getOperation() == StoreChange.Operation.DELETE)
+                .collectList()
+                .block();
+
+        // deleting a guild or a shard publishes a single change for everything they contain
+        assertEquals(Arrays.asList("MEMBER 100 2", "PRESENCE 100 2", "USER 0 2", "GUILD 0 100", "SHARD 0 0"),
+                deletes.stream()
+                        .map(change -> change.getEntityType() + " " + change.getParentId() + " " + change.getId())
+                        .collect(Collectors.toList()));
+        assertEquals(InvalidationCause.HARD_RECONNECT, deletes.get(4).getData().orElse(null));
+        assertNull(layout.getDataAccessor().getChannelById(200).block());
+        for (int i = 1; i < deletes.size(); i++) {
+            assertTrue(deletes.get(i - 1).getSequence() < deletes.get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void testNoChangeLostWithoutSubscriber() {
+        int updates = Queues.SMALL_BUFFER_SIZE + 10;
+        for (int i = 1; i <= updates; i++) {
+            UserData data = UserData.builder().from(user).id(Id.of(i)).build();
+            layout.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(data).build())
+                    .block(Duration.ofSeconds(5));
+        }
+        layout.shutdown();
+
+        StepVerifier.create(layout.changes().map(StoreChange::getSequence))
+                .expectNextSequence(LongStream.rangeClosed(1, updates).boxed().collect(Collectors.toList()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDroppedChangeFailsChanges() {
+        ChangeCapturingStoreLayout bounded = ChangeCapturingStoreLayout.builder(LocalStoreLayout.create())
+                .bufferSize(8)
+                .emissionStrategy(EmissionStrategy.timeoutDrop(Duration.ZERO))
+                .build();
+        for (int i = 1; i <= 10; i++) {
+            UserData data = UserData.builder().from(user).id(Id.of(i)).build();
+            // updates never wait for a subscriber to make room
+            bounded.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(data).build())
+                    .block(Duration.ofSeconds(5));
+        }
+        bounded.shutdown();
+
+        StepVerifier.create(bounded.changes().map(StoreChange::getSequence))
+                .expectNext(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L)
+                .verifyErrorMatches(Exceptions::isOverflow);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.JacksonResources;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.object.ExactResultNotAvailableException;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.MessageData;
+import discord4j.discordjson.json.ReactionData;
+import discord4j.discordjson.json.gateway.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalStoreLayoutTest {
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private final LocalStoreLayout layout = LocalStoreLayout.create();
+    private final DataAccessor accessor = layout.getDataAccessor();
+    private final GatewayDataUpdater updater = layout.getGatewayDataUpdater();
+    private JsonNode dispatches;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        try (InputStream in = LocalStoreLayoutTest.class.getResourceAsStream("dispatches.json")) {
+            dispatches = mapper.readTree(in);
+        }
+    }
+
+    @Test
+    public void testGuildCreateAndDelete() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onMessageCreate(0, dispatch("MESSAGE_CREATE", MessageCreate.class)).block();
+
+        assertEquals(1, accessor.countGuilds().block());
+        assertEquals(2, accessor.countChannelsInGuild(100).block());
+        assertEquals(2, accessor.countRolesInGuild(100).block());
+        assertEquals(1, accessor.countEmojisInGuild(100).block());
+        assertEquals(2, accessor.countMembersInGuild(100).block());
+        assertEquals(2, accessor.countUsers().block());
+        assertEquals(1, accessor.countMessagesInChannel(200).block());
+        assertEquals(Id.of(100), accessor.getChannelById(200).block().guildId().get());
+
+        assertNotNull(updater.onGuildDelete(0, dispatch("GUILD_DELETE", GuildDelete.class)).block());
+
+        assertEquals(0, accessor.countGuilds().block());
+        assertEquals(0, accessor.countChannels().block());
+        assertEquals(0, accessor.countRoles().block());
+        assertEquals(0, accessor.countEmojis().block());
+        assertEquals(0, accessor.countMembers().block());
+        assertEquals(0, accessor.countUsers().block());
+        assertEquals(0, accessor.countMessages().block());
+    }
+
+    @Test
+    public void testResentGuildCreateKeepsMessagesAndMembers() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onMessageCreate(0, dispatch("MESSAGE_CREATE", MessageCreate.class)).block();
+
+        // the guild is sent again without channel 201 and member 2
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy();
+        ((ArrayNode) guild.get("channels")).remove(1);
+        ((ArrayNode) guild.get("members")).remove(1);
+        guild.put("member_count", 1);
+        updater.onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+
+        assertEquals(1, accessor.countGuilds().block());
+        assertEquals(1, accessor.countMessagesInChannel(200).block());
+        assertNotNull(accessor.getChannelById(200).block());
+        assertNull(accessor.getChannelById(201).block());
+        assertEquals(2, accessor.countRolesInGuild(100).block());
+        assertEquals(1, accessor.countEmojisInGuild(100).block());
+        assertNotNull(accessor.getUserById(1).block());
+        assertNull(accessor.getUserById(2).block());
+        assertEquals(1, accessor.countUsers().block());
+    }
+
+    @Test
+    public void testMemberAddAndRemoveReleasesUser() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onGuildCreate(1, dispatch("GUILD_CREATE_OTHER_SHARD", GuildCreate.class)).block();
+        assertEquals(3, accessor.countUsers().block());
+
+        updater.onGuildMemberAdd(0, dispatch("GUILD_MEMBER_ADD", GuildMemberAdd.class)).block();
+        assertEquals(3, accessor.countMembersInGuild(100).block());
+        assertNotNull(accessor.getUserById(4).block());
+
+        // user 2 is still a member of guild 110
+        assertNotNull(updater.onGuildMemberRemove(0, dispatch("GUILD_MEMBER_REMOVE", GuildMemberRemove.class))
+                .block());
+        assertEquals(2, accessor.countMembersInGuild(100).block());
+        assertNull(accessor.getMemberById(100, 2).block());
+        assertNotNull(accessor.getUserById(2).block());
+
+        ObjectNode remove = dispatches.get("GUILD_MEMBER_REMOVE").deepCopy();
+        remove.put("guild_id", "110");
+        assertNotNull(updater.onGuildMemberRemove(1, mapper.treeToValue(remove, GuildMemberRemove.class)).block());
+        assertNull(accessor.getUserById(2).block());
+        assertEquals(3, accessor.countUsers().block());
+    }
+
+    @Test
+    public void testExactMembersRequireCompletion() throws IOException {
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy().put("large", true);
+        updater.onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+
+        StepVerifier.create(accessor.getExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        ObjectNode chunk = mapper.createObjectNode().put("guild_id", "100").put("chunk_index", 0).put("chunk_count", 1);
+        chunk.set("members", guild.get("members"));
+        updater.onGuildMembersChunk(0, mapper.treeToValue(chunk, GuildMembersChunk.class)).block();
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        updater.onGuildMembersCompletion(100).block();
+
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(accessor.getExactMembersInGuild(100).count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCompleteGuildHasExactMembers() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(accessor.countExactMembersInGuild(110))
+                .verifyError(ExactResultNotAvailableException.class);
+    }
+
+    @Test
+    public void testRoleDeleteRemovesMemberRole() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        assertTrue(accessor.getMemberById(100, 2).block().roles().contains(Id.of(300)));
+
+        assertNotNull(updater.onGuildRoleDelete(0, dispatch("GUILD_ROLE_DELETE", GuildRoleDelete.class)).block());
+
+        assertNull(accessor.getRoleById(100, 300).block());
+        assertEquals(1, accessor.countRolesInGuild(100).block());
+        assertFalse(accessor.getMemberById(100, 2).block().roles().contains(Id.of(300)));
+    }
+
+    @Test
+    public void testShardInvalidationRemovesOnlyItsGuilds() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onGuildCreate(1, dispatch("GUILD_CREATE_OTHER_SHARD", GuildCreate.class)).block();
+        updater.onMessageCreate(0, dispatch("MESSAGE_CREATE", MessageCreate.class)).block();
+
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block();
+
+        assertNull(accessor.getGuildById(100).block());
+        assertNotNull(accessor.getGuildById(110).block());
+        assertEquals(1, accessor.countChannels().block());
+        assertEquals(0, accessor.countMessages().block());
+        assertNull(accessor.getUserById(1).block());
+        assertNotNull(accessor.getUserById(2).block());
+        assertNotNull(accessor.getUserById(3).block());
+    }
+
+    @Test
+    public void testReactionFromSelfIsFlagged() throws IOException {
+        updater.onReady(dispatch("READY", Ready.class)).block();
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onMessageCreate(0, dispatch("MESSAGE_CREATE", MessageCreate.class)).block();
+
+        ObjectNode reaction = dispatches.get("MESSAGE_REACTION_ADD").deepCopy();
+        reaction.put("user_id", "2");
+        updater.onMessageReactionAdd(0, mapper.treeToValue(reaction, MessageReactionAdd.class)).block();
+        assertFalse(reactionOf(accessor.getMessageById(200, 500).block()).me());
+
+        updater.onMessageReactionAdd(0, dispatch("MESSAGE_REACTION_ADD", MessageReactionAdd.class)).block();
+        ReactionData reactionData = reactionOf(accessor.getMessageById(200, 500).block());
+        assertTrue(reactionData.me());
+        assertEquals(2, reactionData.count());
+    }
+
+    @Test
+    public void testMessagesInChannelAreOrderedById() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        for (long messageId : new long[] {503, 501, 504, 502}) {
+            updater.onMessageCreate(0, messageCreate(200, messageId)).block();
+        }
+        updater.onMessageCreate(0, messageCreate(201, 505)).block();
+
+        assertEquals(Arrays.asList(501L, 502L, 503L, 504L), ids(accessor.getMessagesInChannel(200)));
+        assertEquals(Arrays.asList(504L, 503L), ids(layout.getLatestMessagesInChannel(200, 2)));
+        assertEquals(Arrays.asList(504L, 503L, 502L, 501L), ids(layout.getLatestMessagesInChannel(200, 10)));
+        assertEquals(Collections.emptyList(), ids(layout.getLatestMessagesInChannel(200, 0)));
+        assertEquals(Collections.emptyList(), ids(layout.getLatestMessagesInChannel(202, 10)));
+        assertEquals(4, accessor.countMessagesInChannel(200).block());
+        assertEquals(Collections.singletonList(505L), ids(accessor.getMessagesInChannel(201)));
+    }
+
+    @Test
+    public void testMessageDeletesUpdateChannelIndex() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        for (long messageId = 501; messageId <= 505; messageId++) {
+            updater.onMessageCreate(0, messageCreate(200, messageId)).block();
+        }
+        updater.onMessageCreate(0, messageCreate(201, 506)).block();
+
+        ObjectNode delete = mapper.createObjectNode().put("id", "502").put("channel_id", "200").put("guild_id", "100");
+        assertNotNull(updater.onMessageDelete(0, mapper.treeToValue(delete, MessageDelete.class)).block());
+        assertNull(updater.onMessageDelete(0, mapper.treeToValue(delete, MessageDelete.class)).block());
+        assertEquals(Arrays.asList(501L, 503L, 504L, 505L), ids(accessor.getMessagesInChannel(200)));
+        assertEquals(4, accessor.countMessagesInChannel(200).block());
+
+        ObjectNode deleteBulk = mapper.createObjectNode().put("channel_id", "200").put("guild_id", "100");
+        deleteBulk.putArray("ids").add("501").add("504").add("506");
+        assertEquals(2, updater.onMessageDeleteBulk(0, mapper.treeToValue(deleteBulk, MessageDeleteBulk.class))
+                .block().size());
+        assertEquals(Arrays.asList(503L, 505L), ids(accessor.getMessagesInChannel(200)));
+        assertEquals(Collections.singletonList(505L), ids(layout.getLatestMessagesInChannel(200, 1)));
+        assertEquals(2, accessor.countMessagesInChannel(200).block());
+        assertEquals(1, accessor.countMessagesInChannel(201).block());
+
+        ObjectNode channelDelete = ((ObjectNode) dispatches.get("GUILD_CREATE").get("channels").get(0)).deepCopy()
+                .put("guild_id", "100");
+        assertNotNull(updater.onChannelDelete(0, mapper.treeToValue(channelDelete, ChannelDelete.class)).block());
+        assertEquals(Collections.emptyList(), ids(accessor.getMessagesInChannel(200)));
+        assertEquals(0, accessor.countMessagesInChannel(200).block());
+        assertEquals(1, accessor.countMessages().block());
+        assertEquals(1, accessor.countChannelsInGuild(100).block());
+    }
+
+    @Test
+    public void testLookupsByIds() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onGuildCreate(1, dispatch("GUILD_CREATE_OTHER_SHARD", GuildCreate.class)).block();
+
+        // role 110 belongs to the other guild
+        assertEquals(Arrays.asList(300L, 100L), accessor.getRolesByIds(100, new long[] {300, 110, 999, 100})
+                .map(role -> Snowflake.asLong(role.id()))
+                .collectList()
+                .block());
+        assertEquals(Arrays.asList(2L, 1L), accessor.getMembersByIds(100, new long[] {2, 3, 1})
+                .map(member -> Snowflake.asLong(member.user().id()))
+                .collectList()
+                .block());
+        assertEquals(Arrays.asList(3L, 1L), accessor.getUsersByIds(new long[] {3, 999, 1})
+                .map(user -> Snowflake.asLong(user.id()))
+                .collectList()
+                .block());
+        assertEquals(Collections.emptyList(), accessor.getRolesByIds(120, new long[] {100}).collectList().block());
+    }
+
+    private MessageCreate messageCreate(long channelId, long messageId) throws IOException {
+        ObjectNode message = dispatches.get("MESSAGE_CREATE").deepCopy();
+        message.put("id", String.valueOf(messageId));
+        message.put("channel_id", String.valueOf(channelId));
+        return mapper.treeToValue(message, MessageCreate.class);
+    }
+
+    private static List<Long> ids(Flux<MessageData> messages) {
+        return messages.map(message -> Snowflake.asLong(message.id())).collectList().block();
+    }
+
+    private <T> T dispatch(String name, Class<T> type) throws IOException {
+        return mapper.treeToValue(dispatches.get(name), type);
+    }
+
+    private static ReactionData reactionOf(MessageData message) {
+        return message.reactions().get().get(0);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.JacksonResources;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.json.MessageData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageStoreTest {
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private ObjectNode template;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        try (InputStream in = MessageStoreTest.class.getResourceAsStream("dispatches.json")) {
+            template = (ObjectNode) mapper.readTree(in).get("MESSAGE_CREATE");
+        }
+    }
+
+    @Test
+    public void testMaxPerChannel() throws IOException {
+        MessageStore store = new MessageStore(MessageCachePolicy.builder().maxPerChannel(2).build());
+        save(store, 10, 1);
+        save(store, 10, 2);
+        save(store, 10, 3);
+        save(store, 20, 4);
+
+        assertEquals(Arrays.asList(2L, 3L), ids(store.values(10)));
+        assertEquals(Collections.singletonList(4L), ids(store.values(20)));
+        assertEquals(2, store.count(10));
+        MessageCacheStats stats = store.stats();
+        assertEquals(3, stats.getCount());
+        assertEquals(1, stats.getEvictedFromChannel());
+        assertEquals(0, stats.getEvictedFromTotal());
+        assertEquals(1, stats.getEvicted());
+    }
+
+    @Test
+    public void testMaxTotalEvictsOldest() throws IOException {
+        MessageStore store = new MessageStore(MessageCachePolicy.builder().maxTotal(3).build());
+        save(store, 10, 1);
+        save(store, 20, 2);
+        save(store, 10, 3);
+        save(store, 20, 4);
+
+        assertNull(store.get(10, 1));
+        assertEquals(Collections.singletonList(3L), ids(store.values(10)));
+        assertEquals(3, store.count());
+
+        save(store, 10, 5);
+        assertEquals(Collections.singletonList(4L), ids(store.values(20)));
+        assertEquals(Arrays.asList(3L, 5L), ids(store.values(10)));
+        assertEquals(2, store.stats().getEvictedFromTotal());
+    }
+
+    @Test
+    public void testMaxAgeOnSave() throws IOException {
+        MessageStore store = new MessageStore(MessageCachePolicy.builder().maxAge(Duration.ofMinutes(1)).build());
+        save(store, 10, idAt(Instant.now().minus(Duration.ofMinutes(2))));
+        long recent = idAt(Instant.now());
+        save(store, 20, recent);
+
+        assertEquals(Collections.singletonList(recent), ids(store.values()));
+        assertEquals(1, store.stats().getExpired());
+        assertEquals(1, store.channelCount());
+    }
+
+    @Test
+    public void testIdleChannelExpires() throws Exception {
+        MessageStore store = new MessageStore(MessageCachePolicy.builder().maxAge(Duration.ofMillis(200)).build());
+        save(store, 10, idAt(Instant.now()));
+
+        // no message is saved afterwards, so the expiration must happen when reading
+        Thread.sleep(300);
+
+        assertEquals(0, store.count(10));
+        assertEquals(Collections.emptyList(), ids(store.values(10)));
+        MessageCacheStats stats = store.stats();
+        assertEquals(0, stats.getCount());
+        assertEquals(1, stats.getExpired());
+        assertEquals(0, store.channelCount());
+    }
+
+    @Test
+    public void testFrequencyBasedEviction() throws IOException {
+        MessageStore store = new MessageStore(MessageCachePolicy.builder()
+                .maxTotal(2)
+                .frequencyBased(true)
+                .build());
+        save(store, 10, 1);
+        save(store, 10, 2);
+        save(store, 20, 3);
+
+        assertEquals(2, store.count());
+        assertEquals(2, ids(store.values()).size());
+        assertEquals(1, store.stats().getEvictedFromTotal());
+        assertEquals(store.count(), store.count(10) + store.count(20));
+    }
+
+    @Test
+    public void testEmptyChannelsAreRemoved() throws IOException {
+        MessageStore store = new MessageStore(MessageCachePolicy.unbounded());
+        save(store, 10, 1);
+        save(store, 10, 2);
+        save(store, 20, 3);
+        save(store, 30, 4);
+        assertEquals(3, store.channelCount());
+
+        assertNotNull(store.remove(10, 1));
+        assertEquals(3, store.channelCount());
+        assertNotNull(store.remove(10, 2));
+        assertEquals(2, store.channelCount());
+        assertEquals(1, store.removeAll(20, Arrays.asList(3L, 5L)).size());
+        assertEquals(1, store.channelCount());
+        store.removeChannel(30);
+        assertEquals(0, store.channelCount());
+        assertEquals(0, store.count());
+    }
+
+    private void save(MessageStore store, long channelId, long messageId) throws IOException {
+        ObjectNode message = template.deepCopy()
+                .put("id", String.valueOf(messageId))
+                .put("channel_id", String.valueOf(channelId));
+        store.save(channelId, messageId, mapper.treeToValue(message, MessageData.class));
+    }
+
+    private static long idAt(Instant timestamp) {
+        return Snowflake.of(timestamp).asLong();
+    }
+
+    private static List<Long> ids(Iterable<MessageData> messages) {
+        List<Long> ids = new ArrayList<>();
+        for (MessageData message : messages) {
+            ids.add(Snowflake.asLong(message.id()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapMapTest {
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private final OffHeapAllocator allocator = new OffHeapAllocator();
+
+    @Test
+    public void testCollisionChainWrapsAround() {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class);
+        int mask = OffHeapMap.MIN_CAPACITY - 1;
+        // three keys hashed to the last slot occupy it and the first two slots, pushing a key of the first slot
+        List<Long> keys = keysInSlot(mask, mask, 3);
+        keys.addAll(keysInSlot(0, mask, 1));
+        for (long key : keys) {
+            assertNull(map.put(key, "value" + key));
+        }
+        for (long key : keys) {
+            assertEquals("value" + key, map.get(key));
+        }
+
+        assertEquals("value" + keys.get(0), map.remove(keys.get(0)));
+        assertNull(map.get(keys.get(0)));
+        assertFalse(map.containsKey(keys.get(0)));
+        for (long key : keys.subList(1, keys.size())) {
+            assertEquals("value" + key, map.get(key));
+        }
+
+        assertEquals("value" + keys.get(2), map.remove(keys.get(2)));
+        assertEquals("value" + keys.get(1), map.get(keys.get(1)));
+        assertEquals("value" + keys.get(3), map.get(keys.get(3)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testDeleteThenLookup() {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class);
+        for (long key = 1; key <= 5; key++) {
+            map.put(key, "value" + key);
+        }
+
+        assertEquals("value3", map.remove(3L));
+        assertNull(map.remove(3L));
+        assertNull(map.get(3L));
+        assertFalse(map.remove(4L, "other"));
+        assertTrue(map.remove(4L, "value4"));
+        assertNull(map.get(4L));
+        assertEquals(3, map.size());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 5L)), new HashSet<>(map.keySet()));
+
+        assertNull(map.put(3L, "again"));
+        assertEquals("again", map.get(3L));
+    }
+
+    @Test
+    public void testResize() {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class);
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(map.set(key * 31, "value" + key));
+        }
+        assertFalse(map.set(0L, "value0"));
+
+        assertEquals(1000, map.size());
+        for (long key = 0; key < 1000; key++) {
+            assertEquals("value" + key, map.get(key * 31));
+        }
+        for (long key = 0; key < 1000; key += 2) {
+            assertNotNull(map.remove(key * 31));
+        }
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(key % 2 == 0 ? null : "value" + key, map.get(key * 31));
+        }
+        assertEquals(500, map.entrySet().size());
+    }
+
+    @Test
+    public void testComputeIfPresent() {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class);
+        map.put(1L, "value");
+        long usedBytes = allocator.getUsedBytes();
+
+        assertEquals("value", map.computeIfPresent(1L, (key, value) -> value));
+        assertEquals(usedBytes, allocator.getUsedBytes());
+        assertEquals("updated", map.computeIfPresent(1L, (key, value) -> "updated"));
+        assertEquals("updated", map.get(1L));
+        assertNull(map.computeIfPresent(1L, (key, value) -> null));
+        assertNull(map.computeIfPresent(1L, (key, value) -> "absent"));
+        assertTrue(map.isEmpty());
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test
+    public void testClearReleasesMemoryAndRejectsWrites() {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class, 4);
+        for (long key = 0; key < 100; key++) {
+            map.put(key, "value" + key);
+        }
+        assertTrue(allocator.getUsedBytes() > 0);
+
+        map.clear();
+
+        assertEquals(0, allocator.getUsedBytes());
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+        assertThrows(IllegalStateException.class, () -> map.put(1L, "value"));
+        assertThrows(IllegalStateException.class, () -> map.set(1L, "value"));
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test
+    public void testConcurrentWritesToSegments() throws Exception {
+        OffHeapMap<String> map = new OffHeapMap<>(allocator, mapper, String.class, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                long offset = thread * 10_000L;
+                futures.add(executor.submit(() -> {
+                    for (long key = offset; key < offset + 10_000; key++) {
+                        map.put(key, "value" + key);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(40_000, map.size());
+        for (long key = 0; key < 40_000; key++) {
+            assertEquals("value" + key, map.get(key));
+        }
+        for (long key = 0; key < 40_000; key++) {
+            map.remove(key);
+        }
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    private static List<Long> keysInSlot(int slot, int mask, int count) {
+        List<Long> keys = new ArrayList<>(count);
+        for (long key = 1; keys.size() < count; key++) {
+            if (OffHeapMap.slot(key, mask) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
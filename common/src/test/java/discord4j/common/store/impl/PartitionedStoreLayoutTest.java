@@ -0,0 +1,121 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.JacksonResources;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.store.legacy.LegacyStoreLayout;
+import discord4j.discordjson.json.GuildData;
+import discord4j.discordjson.json.gateway.GuildCreate;
+import discord4j.discordjson.json.gateway.GuildMembersChunk;
+import discord4j.store.jdk.JdkStoreService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedStoreLayoutTest {
+
+    private static final int CHUNKS = 50;
+    private static final int CHUNK_SIZE = 20;
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private final PartitionedStoreLayout layout = PartitionedStoreLayout.builder(
+            LegacyStoreLayout.of(new JdkStoreService()))
+            .partitions(4)
+            .build();
+    private final DataAccessor accessor = layout.getDataAccessor();
+    private final GatewayDataUpdater updater = layout.getGatewayDataUpdater();
+    private JsonNode dispatches;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        try (InputStream in = PartitionedStoreLayoutTest.class.getResourceAsStream("dispatches.json")) {
+            dispatches = mapper.readTree(in);
+        }
+    }
+
+    @Test
+    public void testConcurrentMemberChunks() throws IOException {
+        // members of large guilds are only saved through chunks
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy().put("large", true);
+        updater.onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+
+        JsonNode template = guild.get("members").get(0);
+        Flux.range(0, CHUNKS)
+                .flatMap(index -> Mono.fromCallable(() -> chunk(template, index))
+                        .subscribeOn(Schedulers.parallel())
+                        .flatMap(chunk -> updater.onGuildMembersChunk(0, chunk)))
+                .then()
+                .block(Duration.ofSeconds(30));
+
+        // the member list of the guild is rewritten by every chunk, no addition may be lost
+        GuildData data = accessor.getGuildById(100).block();
+        assertNotNull(data);
+        assertEquals(CHUNKS * CHUNK_SIZE, data.members().size());
+        assertEquals(CHUNKS * CHUNK_SIZE, accessor.countMembersInGuild(100).block());
+    }
+
+    @Test
+    public void testShardInvalidationWaitsForItsPartitionsOnly() throws IOException {
+        updater.onGuildCreate(0, mapper.treeToValue(dispatches.get("GUILD_CREATE"), GuildCreate.class)).block();
+        updater.onGuildCreate(1, mapper.treeToValue(dispatches.get("GUILD_CREATE_OTHER_SHARD"), GuildCreate.class))
+                .block();
+
+        assertEquals(1, layout.getShardPartitions(0).size());
+        assertEquals(1, layout.getShardPartitions(1).size());
+        assertEquals(Collections.emptySet(), layout.getShardPartitions(2));
+
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block(Duration.ofSeconds(10));
+        assertNull(accessor.getGuildById(100).block());
+        assertNotNull(accessor.getGuildById(110).block());
+
+        // a shard without guilds waits for no partition
+        updater.onShardInvalidation(2, InvalidationCause.HARD_RECONNECT).block(Duration.ofSeconds(10));
+        assertNotNull(accessor.getGuildById(110).block());
+    }
+
+    private GuildMembersChunk chunk(JsonNode template, int index) throws IOException {
+        ArrayNode members = mapper.createArrayNode();
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            long userId = 1000 + index * CHUNK_SIZE + i;
+            ObjectNode member = template.deepCopy();
+            ((ObjectNode) member.get("user")).put("id", String.valueOf(userId)).put("username", "user" + userId);
+            members.add(member);
+        }
+        ObjectNode chunk = mapper.createObjectNode()
+                .put("guild_id", "100")
+                .put("chunk_index", index)
+                .put("chunk_count", CHUNKS);
+        chunk.set("members", members);
+        return mapper.treeToValue(chunk, GuildMembersChunk.class);
+    }
+}
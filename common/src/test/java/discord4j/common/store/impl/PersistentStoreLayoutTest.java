@@ -0,0 +1,131 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.UserData;
+import discord4j.discordjson.json.gateway.UserUpdate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentStoreLayoutTest {
+
+    @Test
+    public void testRestoreAfterClose(@TempDir Path directory) throws IOException {
+        PersistentStoreLayout layout = PersistentStoreLayout.builder(directory).build();
+        updateUser(layout, 1, "user");
+        layout.close();
+
+        PersistentStoreLayout restored = PersistentStoreLayout.builder(directory).build();
+        assertEquals("user", username(restored, 1));
+        restored.close();
+    }
+
+    @Test
+    public void testReplayLog(@TempDir Path directory) throws IOException {
+        PersistentStoreLayout layout = create(directory);
+        updateUser(layout, 1, "user");
+        updateUser(layout, 2, "other");
+
+        // not closed, as after a crash
+        PersistentStoreLayout restored = create(directory);
+        assertEquals("user", username(restored, 1));
+        assertEquals("other", username(restored, 2));
+        restored.close();
+    }
+
+    @Test
+    public void testRestoreFromTruncatedLog(@TempDir Path directory) throws IOException {
+        PersistentStoreLayout layout = create(directory);
+        updateUser(layout, 1, "user");
+        updateUser(layout, 2, "other");
+        Path log = directory.resolve("store.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        PersistentStoreLayout restored = create(directory);
+        assertEquals("user", username(restored, 1));
+        assertNull(restored.getDataAccessor().getUserById(2).block());
+        restored.close();
+    }
+
+    @Test
+    public void testLogCoveredBySnapshotIsSkipped(@TempDir Path directory) throws IOException {
+        PersistentStoreLayout layout = create(directory);
+        updateUser(layout, 1, "old");
+        Path log = directory.resolve("store.log");
+        Path staleLog = directory.resolve("stale.log");
+        Files.copy(log, staleLog);
+        updateUser(layout, 1, "new");
+        layout.snapshot();
+        // a crash right after the snapshot was moved, before the log was reset
+        Files.move(staleLog, log, StandardCopyOption.REPLACE_EXISTING);
+
+        PersistentStoreLayout restored = create(directory);
+        assertEquals("new", username(restored, 1));
+        restored.close();
+    }
+
+    @Test
+    public void testUpdateAppliedOnSubscription(@TempDir Path directory) throws IOException {
+        PersistentStoreLayout layout = create(directory);
+        UserData user = UserData.builder()
+                .id(Id.of(1))
+                .username("user")
+                .discriminator("0001")
+                .build();
+        Mono<?> update = layout.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(user).build());
+        assertNull(layout.getDataAccessor().getUserById(1).block());
+
+        update.block();
+        assertEquals("user", username(layout, 1));
+        layout.close();
+    }
+
+    private static PersistentStoreLayout create(Path directory) {
+        return PersistentStoreLayout.builder(directory)
+                .flushInterval(Duration.ZERO)
+                .build();
+    }
+
+    private static void updateUser(PersistentStoreLayout layout, long id, String username) {
+        UserData user = UserData.builder()
+                .id(Id.of(id))
+                .username(username)
+                .discriminator("0001")
+                .build();
+        layout.getGatewayDataUpdater().onUserUpdate(0, UserUpdate.builder().user(user).build()).block();
+    }
+
+    private static String username(PersistentStoreLayout layout, long id) {
+        UserData user = layout.getDataAccessor().getUserById(id).block();
+        assertNotNull(user);
+        return user.username();
+    }
+}
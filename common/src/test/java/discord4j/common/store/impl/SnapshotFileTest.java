@@ -0,0 +1,93 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.UserData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+
+    private static final int WINDOW_SIZE = 64;
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+
+    @Test
+    public void testRoundTripAcrossWindows(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("store.snapshot");
+        // the first entry is larger than a whole window
+        String longName = new String(new char[4 * WINDOW_SIZE]).replace('\0', 'x');
+        List<UserData> users = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            users.add(UserData.builder()
+                    .id(Id.of(i))
+                    .username(i == 1 ? longName : "user" + i)
+                    .discriminator("0001")
+                    .build());
+        }
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file, mapper, 7, WINDOW_SIZE)) {
+            writer.write(SnapshotFile.SELF, 0, 1, null);
+            for (UserData user : users) {
+                writer.write(SnapshotFile.USER, 0, Snowflake.asLong(user.id()), user);
+            }
+        }
+
+        List<Object> read = new ArrayList<>();
+        long generation = SnapshotFile.read(file, mapper, (kind, key1, key2, value) -> {
+            if (kind == SnapshotFile.SELF) {
+                assertEquals(1, key2);
+                assertNull(value);
+            } else {
+                assertEquals(SnapshotFile.USER, kind);
+                assertEquals(Snowflake.asLong(((UserData) value).id()), key2);
+                read.add(value);
+            }
+        }, WINDOW_SIZE);
+
+        assertEquals(7, generation);
+        assertEquals(users, read);
+    }
+
+    @Test
+    public void testReadWithDefaultWindow(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("store.snapshot");
+        UserData user = UserData.builder()
+                .id(Id.of(1))
+                .username("user")
+                .discriminator("0001")
+                .build();
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file, mapper, 3, WINDOW_SIZE)) {
+            writer.write(SnapshotFile.USER, 0, 1, user);
+        }
+
+        List<Object> read = new ArrayList<>();
+        assertEquals(3, SnapshotFile.read(file, mapper, (kind, key1, key2, value) -> read.add(value)));
+        assertEquals(1, read.size());
+        assertEquals(user, read.get(0));
+    }
+}
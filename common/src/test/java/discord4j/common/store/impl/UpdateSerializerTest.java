@@ -0,0 +1,77 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.impl;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UpdateSerializerTest {
+
+    @Test
+    public void testUpdatesRunOneAtATime() {
+        UpdateSerializer serializer = new UpdateSerializer();
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicInteger started = new AtomicInteger();
+
+        serializer.serialize(() -> {
+            started.incrementAndGet();
+            return first.asMono();
+        }).subscribe();
+        serializer.serialize(() -> Mono.fromRunnable(started::incrementAndGet)).subscribe();
+        assertEquals(1, started.get());
+
+        first.tryEmitEmpty();
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    public void testCancelledUpdateIsSkipped() {
+        UpdateSerializer serializer = new UpdateSerializer();
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicInteger started = new AtomicInteger();
+
+        serializer.serialize(first::asMono).subscribe();
+        Disposable second = serializer.serialize(() -> Mono.fromRunnable(started::incrementAndGet)).subscribe();
+        serializer.serialize(() -> Mono.fromRunnable(started::incrementAndGet)).subscribe();
+        second.dispose();
+
+        first.tryEmitEmpty();
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    public void testQueuedSynchronousUpdatesDoNotRecurse() {
+        UpdateSerializer serializer = new UpdateSerializer();
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicInteger completed = new AtomicInteger();
+
+        serializer.serialize(first::asMono).subscribe();
+        for (int i = 0; i < 100_000; i++) {
+            serializer.serialize(() -> Mono.just(1)).subscribe(completed::addAndGet);
+        }
+        assertEquals(0, completed.get());
+
+        first.tryEmitEmpty();
+        assertEquals(100_000, completed.get());
+    }
+}
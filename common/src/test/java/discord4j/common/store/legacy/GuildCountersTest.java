@@ -0,0 +1,68 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.common.store.legacy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GuildCountersTest {
+
+    @Test
+    public void testMoveVoiceStates() {
+        GuildCounters counters = new GuildCounters();
+        counters.reset(1, 0, Collections.singletonMap(10L, 100L));
+        counters.moveVoiceState(1, 11, 100L);
+        counters.moveVoiceState(1, 10, 200L);
+        counters.moveVoiceState(1, 11, null);
+
+        assertEquals(1, counters.voiceStates(1));
+        assertEquals(0, counters.voiceStates(1, 100));
+        assertEquals(1, counters.voiceStates(1, 200));
+    }
+
+    @Test
+    public void testRemovedGuildHasNoCounts() {
+        GuildCounters counters = new GuildCounters();
+        counters.reset(1, 5, Collections.singletonMap(10L, 100L));
+        counters.addPresences(1, -2);
+
+        assertEquals(3, counters.presences(1));
+        counters.remove(1);
+        assertEquals(0, counters.presences(1));
+        assertEquals(0, counters.voiceStates(1, 100));
+    }
+
+    @Test
+    public void testUnknownGuildIsIgnored() {
+        GuildCounters counters = new GuildCounters();
+        counters.addPresences(1, 1);
+        counters.moveVoiceState(1, 10, 100L);
+
+        assertEquals(0, counters.guildCount());
+        assertEquals(0, counters.presences(1));
+        assertEquals(0, counters.voiceStates(1, 100));
+
+        counters.reset(1, 2, Collections.emptyMap());
+        counters.addPresences(1, 1);
+        assertEquals(1, counters.guildCount());
+        assertEquals(3, counters.presences(1));
+    }
+}
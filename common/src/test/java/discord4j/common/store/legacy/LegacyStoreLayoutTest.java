@@ -0,0 +1,256 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.legacy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.JacksonResources;
+import discord4j.common.store.api.layout.DataAccessor;
+import discord4j.common.store.api.layout.GatewayDataUpdater;
+import discord4j.common.store.api.layout.StoreProjection;
+import discord4j.common.store.api.object.ExactResultNotAvailableException;
+import discord4j.common.store.api.object.InvalidationCause;
+import discord4j.common.util.Snowflake;
+import discord4j.discordjson.json.PresenceData;
+import discord4j.discordjson.json.gateway.GuildCreate;
+import discord4j.discordjson.json.gateway.GuildMembersChunk;
+import discord4j.store.jdk.JdkStoreService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegacyStoreLayoutTest {
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private final LegacyStoreLayout layout = LegacyStoreLayout.of(new JdkStoreService());
+    private final DataAccessor accessor = layout.getDataAccessor();
+    private final GatewayDataUpdater updater = layout.getGatewayDataUpdater();
+    private JsonNode dispatches;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        try (InputStream in = LegacyStoreLayoutTest.class.getResourceAsStream(
+                "/discord4j/common/store/impl/dispatches.json")) {
+            dispatches = mapper.readTree(in);
+        }
+    }
+
+    @Test
+    public void testExactMembersRequireCompletion() throws IOException {
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy().put("large", true);
+        updater.onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+
+        StepVerifier.create(accessor.getExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        ObjectNode chunk = mapper.createObjectNode().put("guild_id", "100").put("chunk_index", 0).put("chunk_count", 1);
+        chunk.set("members", guild.get("members"));
+        updater.onGuildMembersChunk(0, mapper.treeToValue(chunk, GuildMembersChunk.class)).block();
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        updater.onGuildMembersCompletion(100).block();
+
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(accessor.getExactMembersInGuild(100).count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCompleteGuildHasExactMembers() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(accessor.countExactMembersInGuild(110))
+                .verifyError(ExactResultNotAvailableException.class);
+    }
+
+    @Test
+    public void testGuildIndexesUpdatedAfterSaves() throws IOException {
+        Mono<Void> guildCreate = updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class));
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block();
+
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        guildCreate.block();
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .expectNext(2L)
+                .verifyComplete();
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block();
+        assertNull(accessor.getGuildById(100).block());
+        assertNull(accessor.getUserById(1).block());
+    }
+
+    @Test
+    public void testShardInvalidationRemovesOnlyItsGuilds() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        updater.onGuildCreate(1, dispatch("GUILD_CREATE_OTHER_SHARD", GuildCreate.class)).block();
+
+        updater.onShardInvalidation(0, InvalidationCause.HARD_RECONNECT).block();
+
+        assertNull(accessor.getGuildById(100).block());
+        assertNotNull(accessor.getGuildById(110).block());
+        assertEquals(1, accessor.countGuilds().block());
+        assertNull(accessor.getChannelById(200).block());
+        assertNotNull(accessor.getChannelById(210).block());
+        assertEquals(0, accessor.countMembersInGuild(100).block());
+        assertEquals(2, accessor.countMembersInGuild(110).block());
+        assertNull(accessor.getUserById(1).block());
+        assertNotNull(accessor.getUserById(2).block());
+        StepVerifier.create(accessor.countExactMembersInGuild(100))
+                .verifyError(ExactResultNotAvailableException.class);
+
+        updater.onShardInvalidation(1, InvalidationCause.LOGOUT).block();
+        assertEquals(0, accessor.countGuilds().block());
+        assertNull(accessor.getUserById(2).block());
+    }
+
+    @Test
+    public void testOfflinePresencesDerivedFromMembers() throws IOException {
+        LegacyStoreLayout layout = LegacyStoreLayout.of(new JdkStoreService(), StoreProjection.builder()
+                .storeOfflinePresences(false)
+                .build());
+        layout.getGatewayDataUpdater().onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+        layout.getGatewayDataUpdater().onGuildCreate(1, dispatch("GUILD_CREATE_OTHER_SHARD", GuildCreate.class))
+                .block();
+        DataAccessor accessor = layout.getDataAccessor();
+
+        Map<Long, String> statuses = accessor.getPresencesInGuild(100)
+                .collectMap(presence -> Snowflake.asLong(presence.user().id()), PresenceData::status)
+                .block();
+        Map<Long, String> expected = new HashMap<>();
+        expected.put(1L, "online");
+        expected.put(2L, "offline");
+        assertEquals(expected, statuses);
+        assertEquals(2, accessor.countPresencesInGuild(100).block());
+        assertEquals(2, accessor.countPresencesInGuild(110).block());
+        assertEquals(4, accessor.countPresences().block());
+        assertEquals(4, accessor.getPresences().count().block());
+    }
+
+    @Test
+    public void testDefaultLookupsByIds() throws IOException {
+        updater.onGuildCreate(0, dispatch("GUILD_CREATE", GuildCreate.class)).block();
+
+        // the default lookups keep the order of the requested IDs and skip missing ones
+        assertEquals(Arrays.asList(300L, 100L), accessor.getRolesByIds(100, new long[] {300, 999, 100})
+                .map(role -> Snowflake.asLong(role.id()))
+                .collectList()
+                .block());
+        assertEquals(Arrays.asList(2L, 1L), accessor.getMembersByIds(100, new long[] {2, 3, 1})
+                .map(member -> Snowflake.asLong(member.user().id()))
+                .collectList()
+                .block());
+        assertEquals(Collections.singletonList(1L), accessor.getUsersByIds(new long[] {999, 1})
+                .map(user -> Snowflake.asLong(user.id()))
+                .collectList()
+                .block());
+
+        // the returned sequences can be subscribed to more than once
+        Flux<Long> roleIds = accessor.getRolesByIds(100, new long[] {300, 100})
+                .map(role -> Snowflake.asLong(role.id()));
+        assertEquals(roleIds.collectList().block(), roleIds.collectList().block());
+    }
+
+    @Test
+    public void testOfflinePresencesOfLargeGuildWithPartialChunks() throws IOException {
+        LegacyStoreLayout layout = LegacyStoreLayout.of(new JdkStoreService(), StoreProjection.builder()
+                .storeOfflinePresences(false)
+                .build());
+        // a large guild only holds the presences of online members, which are not cached yet
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy().put("large", true);
+        guild.putArray("members");
+        ArrayNode presences = guild.putArray("presences");
+        for (int id = 1; id <= 100; id++) {
+            ObjectNode presence = presences.addObject().put("status", "online");
+            presence.putObject("user").put("id", String.valueOf(id));
+            presence.putObject("client_status").put("desktop", "online");
+            presence.putArray("activities");
+        }
+        layout.getGatewayDataUpdater().onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+
+        // a partial chunk with 50 offline members and one online member
+        ObjectNode chunk = mapper.createObjectNode().put("guild_id", "100").put("chunk_index", 0).put("chunk_count", 2);
+        ArrayNode members = chunk.putArray("members");
+        for (int id = 100; id <= 150; id++) {
+            ObjectNode member = dispatches.get("GUILD_CREATE").get("members").get(0).deepCopy();
+            ((ObjectNode) member.get("user")).put("id", String.valueOf(id)).put("username", "user" + id);
+            members.add(member);
+        }
+        layout.getGatewayDataUpdater().onGuildMembersChunk(0, mapper.treeToValue(chunk, GuildMembersChunk.class))
+                .block();
+        DataAccessor accessor = layout.getDataAccessor();
+
+        assertEquals(150, accessor.getPresencesInGuild(100).count().block());
+        assertEquals(150, accessor.countPresencesInGuild(100).block());
+    }
+
+    @Test
+    public void testActivityFieldsSharedBetweenGuilds() throws IOException {
+        ObjectNode guild = dispatches.get("GUILD_CREATE").deepCopy();
+        ObjectNode otherGuild = dispatches.get("GUILD_CREATE_OTHER_SHARD").deepCopy();
+        addPlayingPresence(guild, 1, 1619296362123L);
+        addPlayingPresence(otherGuild, 2, 1619296362456L);
+        updater.onGuildCreate(0, mapper.treeToValue(guild, GuildCreate.class)).block();
+        updater.onGuildCreate(1, mapper.treeToValue(otherGuild, GuildCreate.class)).block();
+
+        PresenceData presence = accessor.getPresenceById(100, 1).block();
+        PresenceData otherPresence = accessor.getPresenceById(110, 2).block();
+        assertNotNull(presence);
+        assertNotNull(otherPresence);
+        // the activities differ, but share a single instance of their name and application ID
+        assertNotEquals(presence.activities().get(0), otherPresence.activities().get(0));
+        assertSame(presence.activities().get(0).name(), otherPresence.activities().get(0).name());
+        assertSame(presence.activities().get(0).applicationId().get(),
+                otherPresence.activities().get(0).applicationId().get());
+    }
+
+    private void addPlayingPresence(ObjectNode guild, long userId, long createdAt) throws IOException {
+        ArrayNode presences = guild.putArray("presences");
+        ObjectNode presence = presences.addObject().put("status", "online");
+        presence.putObject("user").put("id", String.valueOf(userId));
+        presence.putObject("client_status").put("desktop", "online");
+        // parsed separately, so each presence starts with its own instances
+        presence.putArray("activities").add(mapper.readTree("{\"name\": \"game\", \"type\": 0, "
+                + "\"created_at\": " + createdAt + ", \"application_id\": \"500\"}"));
+    }
+
+    private <T> T dispatch(String name, Class<T> type) throws IOException {
+        return mapper.treeToValue(dispatches.get(name), type);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.legacy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserGuildIndexTest {
+
+    @Test
+    public void testOrphanedAfterLastGuild() {
+        UserGuildIndex index = new UserGuildIndex();
+        index.add(1, 30);
+        index.add(1, 10);
+        index.add(1, 20);
+        index.add(1, 20);
+
+        assertFalse(index.remove(1, 20));
+        assertFalse(index.remove(1, 40));
+        assertFalse(index.remove(1, 30));
+        assertTrue(index.remove(1, 10));
+    }
+
+    @Test
+    public void testUntrackedUserIsNotOrphaned() {
+        UserGuildIndex index = new UserGuildIndex();
+        index.add(2, 10);
+
+        assertFalse(index.remove(1, 10));
+        assertFalse(index.remove(2, 20));
+        assertTrue(index.remove(2, 10));
+        assertFalse(index.remove(2, 10));
+    }
+}
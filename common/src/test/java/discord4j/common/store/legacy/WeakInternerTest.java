@@ -0,0 +1,44 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.common.store.legacy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class WeakInternerTest {
+
+    @Test
+    public void testEqualValuesShareInstance() {
+        WeakInterner interner = new WeakInterner(64);
+        String first = new String("Spotify");
+        String second = new String("Spotify");
+
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+    }
+
+    @Test
+    public void testBoundedPoolStillReturnsEqualValues() {
+        WeakInterner interner = new WeakInterner(16);
+        for (int i = 0; i < 1000; i++) {
+            String value = "value" + i;
+            assertEquals(value, interner.intern(value));
+        }
+    }
+}
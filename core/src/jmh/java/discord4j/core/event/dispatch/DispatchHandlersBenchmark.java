@@ -0,0 +1,58 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.core.event.dispatch;
+
+import discord4j.core.event.domain.Event;
+import discord4j.gateway.ShardInfo;
+import discord4j.gateway.retry.GatewayStateChange;
+import discord4j.gateway.state.StatefulDispatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of mapping a dispatch to its {@link Event} through {@link DispatchHandlers}, with and
+ * without assembly checkpoints. Checkpoints were always attached before they became opt-in, so the {@code true} case
+ * approximates the previous per-dispatch overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchHandlersBenchmark {
+
+    @Param({"false", "true"})
+    private boolean checkpoints;
+
+    private DispatchHandlers handlers;
+    private DispatchContext<GatewayStateChange, Void> context;
+
+    @Setup
+    public void setup() {
+        handlers = new DispatchHandlers(checkpoints);
+        ShardInfo shardInfo = ShardInfo.create(0, 1);
+        context = DispatchContext.of(
+                StatefulDispatch.<GatewayStateChange, Void>of(shardInfo, GatewayStateChange.connected(), null), null);
+    }
+
+    @Benchmark
+    public Event handle() {
+        return handlers.handle(context).block();
+    }
+}
@@ -64,6 +64,7 @@ import reactor.util.Loggers;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
@@ -648,6 +649,11 @@ public class GatewayDiscordClient implements EntityRetriever {
         return entityRetriever.getMemberById(guildId, userId);
     }
 
+    @Override
+    public Flux<Member> getMembersByIds(Snowflake guildId, Collection<Snowflake> userIds) {
+        return entityRetriever.getMembersByIds(guildId, userIds);
+    }
+
     @Override
     public Mono<Message> getMessageById(Snowflake channelId, Snowflake messageId) {
         return entityRetriever.getMessageById(channelId, messageId);
@@ -658,11 +664,21 @@ public class GatewayDiscordClient implements EntityRetriever {
         return entityRetriever.getRoleById(guildId, roleId);
     }
 
+    @Override
+    public Flux<Role> getRolesByIds(Snowflake guildId, Collection<Snowflake> roleIds) {
+        return entityRetriever.getRolesByIds(guildId, roleIds);
+    }
+
     @Override
     public Mono<User> getUserById(Snowflake userId) {
         return entityRetriever.getUserById(userId);
     }
 
+    @Override
+    public Flux<User> getUsersByIds(Collection<Snowflake> userIds) {
+        return entityRetriever.getUsersByIds(userIds);
+    }
+
     @Override
     public Flux<Guild> getGuilds() {
         return entityRetriever.getGuilds();
@@ -0,0 +1,441 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.core.event;
+
+import discord4j.common.LogUtil;
+import discord4j.common.annotations.Experimental;
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.common.util.Snowflake;
+import discord4j.core.event.domain.Event;
+import discord4j.core.event.domain.InviteCreateEvent;
+import discord4j.core.event.domain.InviteDeleteEvent;
+import discord4j.core.event.domain.PresenceUpdateEvent;
+import discord4j.core.event.domain.VoiceServerUpdateEvent;
+import discord4j.core.event.domain.VoiceStateUpdateEvent;
+import discord4j.core.event.domain.WebhooksUpdateEvent;
+import discord4j.core.event.domain.channel.PinsUpdateEvent;
+import discord4j.core.event.domain.channel.TypingStartEvent;
+import discord4j.core.event.domain.command.ApplicationCommandCreateEvent;
+import discord4j.core.event.domain.command.ApplicationCommandDeleteEvent;
+import discord4j.core.event.domain.command.ApplicationCommandUpdateEvent;
+import discord4j.core.event.domain.guild.BanEvent;
+import discord4j.core.event.domain.guild.EmojisUpdateEvent;
+import discord4j.core.event.domain.guild.GuildCreateEvent;
+import discord4j.core.event.domain.guild.GuildDeleteEvent;
+import discord4j.core.event.domain.guild.GuildUpdateEvent;
+import discord4j.core.event.domain.guild.IntegrationsUpdateEvent;
+import discord4j.core.event.domain.guild.MemberChunkEvent;
+import discord4j.core.event.domain.guild.MemberJoinEvent;
+import discord4j.core.event.domain.guild.MemberLeaveEvent;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
+import discord4j.core.event.domain.guild.UnbanEvent;
+import discord4j.core.event.domain.message.MessageBulkDeleteEvent;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.event.domain.message.MessageDeleteEvent;
+import discord4j.core.event.domain.message.MessageUpdateEvent;
+import discord4j.core.event.domain.message.ReactionAddEvent;
+import discord4j.core.event.domain.message.ReactionRemoveAllEvent;
+import discord4j.core.event.domain.message.ReactionRemoveEmojiEvent;
+import discord4j.core.event.domain.message.ReactionRemoveEvent;
+import discord4j.core.event.domain.role.RoleCreateEvent;
+import discord4j.core.event.domain.role.RoleDeleteEvent;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static discord4j.common.LogUtil.format;
+
+/**
+ * An {@link EventDispatcher} decorator that runs event handlers given to {@link #on(Class, Function)} and
+ * {@link #on(ReactiveEventAdapter)} in a fixed number of lanes, partitioning events by guild ID or channel ID.
+ * <p>
+ * Events sharing a partition key are always handled in order, one at a time, while events from different partitions
+ * can be handled concurrently on the lane {@link Scheduler}. By default, the partition key of an event is its guild
+ * ID, otherwise its channel ID, falling back to its shard index for events carrying neither.
+ * <p>
+ * Each lane queues its pending events in its own buffer, so a slow handler for one guild only delays events from the
+ * guilds sharing its lane. Lane buffers are unbounded by default, so no event is lost. When lane buffers are bounded,
+ * the lane {@link EmissionStrategy} handles events for a full lane: the default one parks the publishing thread until
+ * the lane makes room, while dropping events must be opted into with a strategy like
+ * {@link EmissionStrategy#timeoutDrop(Duration)}.
+ * <p>
+ * As each lane handles one event at a time, an event handler never runs more than the configured number of lanes
+ * concurrently. This is lower than the concurrency of {@link EventDispatcher#on(Class, Function)}, which lets a
+ * handler process up to 256 events at once, so handlers waiting on I/O may need more lanes to keep their throughput.
+ * <p>
+ * Sequences obtained from {@link #on(Class)} are not partitioned, as they are processed by a single subscriber.
+ */
+@Experimental
+public class PartitionedEventDispatcher implements EventDispatcher {
+
+    private final EventDispatcher delegate;
+    private final int lanes;
+    private final Scheduler laneScheduler;
+    private final Function<Event, Long> partitionKey;
+    private final int laneBufferSize;
+    private final EmissionStrategy laneEmissionStrategy;
+
+    /**
+     * Creates a new partitioned dispatcher.
+     *
+     * @param delegate the {@link EventDispatcher} events are published to and obtained from
+     * @param lanes the number of lanes events are partitioned into, for each event handler
+     * @param laneScheduler the {@link Scheduler} running each lane
+     * @param partitionKey a function deriving the partition key of an event
+     */
+    public PartitionedEventDispatcher(EventDispatcher delegate, int lanes, Scheduler laneScheduler,
+                                      Function<Event, Long> partitionKey) {
+        this(delegate, lanes, laneScheduler, partitionKey, Integer.MAX_VALUE,
+                EmissionStrategy.park(Duration.ofMillis(10)));
+    }
+
+    /**
+     * Creates a new partitioned dispatcher.
+     *
+     * @param delegate the {@link EventDispatcher} events are published to and obtained from
+     * @param lanes the number of lanes events are partitioned into, for each event handler
+     * @param laneScheduler the {@link Scheduler} running each lane
+     * @param partitionKey a function deriving the partition key of an event
+     * @param laneBufferSize the number of events each lane can queue, {@link Integer#MAX_VALUE} for unbounded lanes
+     * @param laneEmissionStrategy the {@link EmissionStrategy} handling events routed to a full lane
+     */
+    public PartitionedEventDispatcher(EventDispatcher delegate, int lanes, Scheduler laneScheduler,
+                                      Function<Event, Long> partitionKey, int laneBufferSize,
+                                      EmissionStrategy laneEmissionStrategy) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.lanes = Math.max(1, lanes);
+        this.laneScheduler = Objects.requireNonNull(laneScheduler);
+        this.partitionKey = Objects.requireNonNull(partitionKey);
+        this.laneBufferSize = Math.max(1, laneBufferSize);
+        this.laneEmissionStrategy = Objects.requireNonNull(laneEmissionStrategy);
+    }
+
+    /**
+     * Create a builder to customize a {@link PartitionedEventDispatcher}.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Derive the default partition key of an event: its guild ID if present, otherwise its channel ID if present,
+     * otherwise its shard index.
+     *
+     * @param event the event to derive the partition key from
+     * @return a key identifying the partition of the event
+     */
+    public static Long defaultPartitionKey(Event event) {
+        Snowflake key = guildIdOf(event);
+        if (key == null) {
+            key = channelIdOf(event);
+        }
+        return key != null ? key.asLong() : (long) event.getShardInfo().getIndex();
+    }
+
+    @Nullable
+    private static Snowflake guildIdOf(Event event) {
+        if (event instanceof MessageCreateEvent) {
+            return ((MessageCreateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof MessageUpdateEvent) {
+            return ((MessageUpdateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof MessageDeleteEvent) {
+            return ((MessageDeleteEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof MessageBulkDeleteEvent) {
+            return ((MessageBulkDeleteEvent) event).getGuildId();
+        } else if (event instanceof ReactionAddEvent) {
+            return ((ReactionAddEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ReactionRemoveEvent) {
+            return ((ReactionRemoveEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ReactionRemoveEmojiEvent) {
+            return ((ReactionRemoveEmojiEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ReactionRemoveAllEvent) {
+            return ((ReactionRemoveAllEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof TypingStartEvent) {
+            return ((TypingStartEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof PinsUpdateEvent) {
+            return ((PinsUpdateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof PresenceUpdateEvent) {
+            return ((PresenceUpdateEvent) event).getGuildId();
+        } else if (event instanceof VoiceStateUpdateEvent) {
+            return ((VoiceStateUpdateEvent) event).getCurrent().getGuildId();
+        } else if (event instanceof VoiceServerUpdateEvent) {
+            return ((VoiceServerUpdateEvent) event).getGuildId();
+        } else if (event instanceof GuildCreateEvent) {
+            return ((GuildCreateEvent) event).getGuild().getId();
+        } else if (event instanceof GuildUpdateEvent) {
+            return ((GuildUpdateEvent) event).getCurrent().getId();
+        } else if (event instanceof GuildDeleteEvent) {
+            return ((GuildDeleteEvent) event).getGuildId();
+        } else if (event instanceof MemberChunkEvent) {
+            return ((MemberChunkEvent) event).getGuildId();
+        } else if (event instanceof MemberJoinEvent) {
+            return ((MemberJoinEvent) event).getGuildId();
+        } else if (event instanceof MemberUpdateEvent) {
+            return ((MemberUpdateEvent) event).getGuildId();
+        } else if (event instanceof MemberLeaveEvent) {
+            return ((MemberLeaveEvent) event).getGuildId();
+        } else if (event instanceof BanEvent) {
+            return ((BanEvent) event).getGuildId();
+        } else if (event instanceof UnbanEvent) {
+            return ((UnbanEvent) event).getGuildId();
+        } else if (event instanceof EmojisUpdateEvent) {
+            return ((EmojisUpdateEvent) event).getGuildId();
+        } else if (event instanceof IntegrationsUpdateEvent) {
+            return ((IntegrationsUpdateEvent) event).getGuildId();
+        } else if (event instanceof RoleCreateEvent) {
+            return ((RoleCreateEvent) event).getGuildId();
+        } else if (event instanceof RoleUpdateEvent) {
+            return ((RoleUpdateEvent) event).getCurrent().getGuildId();
+        } else if (event instanceof RoleDeleteEvent) {
+            return ((RoleDeleteEvent) event).getGuildId();
+        } else if (event instanceof WebhooksUpdateEvent) {
+            return ((WebhooksUpdateEvent) event).getGuildId();
+        } else if (event instanceof InviteCreateEvent) {
+            return ((InviteCreateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof InviteDeleteEvent) {
+            return ((InviteDeleteEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ApplicationCommandCreateEvent) {
+            return ((ApplicationCommandCreateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ApplicationCommandUpdateEvent) {
+            return ((ApplicationCommandUpdateEvent) event).getGuildId().orElse(null);
+        } else if (event instanceof ApplicationCommandDeleteEvent) {
+            return ((ApplicationCommandDeleteEvent) event).getGuildId().orElse(null);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Snowflake channelIdOf(Event event) {
+        if (event instanceof MessageCreateEvent) {
+            return ((MessageCreateEvent) event).getMessage().getChannelId();
+        } else if (event instanceof MessageUpdateEvent) {
+            return ((MessageUpdateEvent) event).getChannelId();
+        } else if (event instanceof MessageDeleteEvent) {
+            return ((MessageDeleteEvent) event).getChannelId();
+        } else if (event instanceof ReactionAddEvent) {
+            return ((ReactionAddEvent) event).getChannelId();
+        } else if (event instanceof ReactionRemoveEvent) {
+            return ((ReactionRemoveEvent) event).getChannelId();
+        } else if (event instanceof ReactionRemoveEmojiEvent) {
+            return ((ReactionRemoveEmojiEvent) event).getChannelId();
+        } else if (event instanceof ReactionRemoveAllEvent) {
+            return ((ReactionRemoveAllEvent) event).getChannelId();
+        } else if (event instanceof TypingStartEvent) {
+            return ((TypingStartEvent) event).getChannelId();
+        } else if (event instanceof PinsUpdateEvent) {
+            return ((PinsUpdateEvent) event).getChannelId();
+        } else if (event instanceof InviteCreateEvent) {
+            return ((InviteCreateEvent) event).getChannelId();
+        } else if (event instanceof InviteDeleteEvent) {
+            return ((InviteDeleteEvent) event).getChannelId();
+        }
+        return null;
+    }
+
+    @Override
+    public <E extends Event> Flux<E> on(Class<E> eventClass) {
+        return delegate.on(eventClass);
+    }
+
+    @Override
+    public <E extends Event, T> Flux<T> on(Class<E> eventClass, Function<E, Publisher<T>> mapper) {
+        return partitioned(delegate.on(eventClass), event -> Flux.defer(() -> mapper.apply(event))
+                .contextWrite(ctx -> ctx.put(LogUtil.KEY_SHARD_ID, event.getShardInfo().getIndex()))
+                .onErrorResume(t -> {
+                    log.warn(format(Context.of(LogUtil.KEY_SHARD_ID, event.getShardInfo().getIndex()),
+                            "Error while handling {}"), eventClass.getSimpleName(), t);
+                    return Mono.empty();
+                }));
+    }
+
+    @Override
+    public Flux<Event> on(ReactiveEventAdapter adapter) {
+        return partitioned(delegate.on(Event.class), event -> Flux.defer(() -> adapter.hookOnEvent(event))
+                .contextWrite(ctx -> ctx.put(LogUtil.KEY_SHARD_ID, event.getShardInfo().getIndex()))
+                .onErrorResume(t -> {
+                    log.warn(format(Context.of(LogUtil.KEY_SHARD_ID, event.getShardInfo().getIndex()),
+                            "Error while handling {}"), event.getClass().getSimpleName(), t);
+                    return Mono.empty();
+                })
+                .then(Mono.just(event)));
+    }
+
+    private <E extends Event, T> Flux<T> partitioned(Flux<E> events, Function<E, Publisher<T>> handler) {
+        return Flux.defer(() -> {
+            // each lane has its own buffer, so a slow lane only holds back the others once its buffer is full
+            List<Sinks.Many<E>> laneSinks = new ArrayList<>(lanes);
+            List<Publisher<T>> sources = new ArrayList<>(lanes + 1);
+            for (int i = 0; i < lanes; i++) {
+                Sinks.Many<E> lane = Sinks.many().unicast().onBackpressureBuffer(
+                        Queues.<E>get(laneBufferSize).get());
+                laneSinks.add(lane);
+                sources.add(lane.asFlux().publishOn(laneScheduler, 1).concatMap(handler));
+            }
+            sources.add(events.doOnNext(event -> route(laneSinks.get(laneOf(event)), event, laneEmissionStrategy))
+                    .doOnComplete(() -> laneSinks.forEach(Sinks.Many::tryEmitComplete))
+                    .doOnError(t -> laneSinks.forEach(lane -> lane.tryEmitError(t)))
+                    .thenMany(Flux.<T>empty()));
+            return Flux.fromIterable(sources).flatMap(Function.identity(), sources.size());
+        });
+    }
+
+    private static <E extends Event> void route(Sinks.Many<E> lane, E event, EmissionStrategy emissionStrategy) {
+        // events are received serially, so the only failures are a full or cancelled lane
+        if (!emissionStrategy.emitNext(lane, event) && lane.currentSubscriberCount() > 0) {
+            log.warn(format(Context.of(LogUtil.KEY_SHARD_ID, event.getShardInfo().getIndex()),
+                    "Lane buffer full, dropping {}"), event.getClass().getSimpleName());
+        }
+    }
+
+    private int laneOf(Event event) {
+        Long key = partitionKey.apply(event);
+        int hash = key == null ? 0 : Long.hashCode(key);
+        return Math.floorMod(hash ^ (hash >>> 16), lanes);
+    }
+
+    @Override
+    public void publish(Event event) {
+        delegate.publish(event);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * A builder to create {@link PartitionedEventDispatcher} instances.
+     */
+    public static class Builder {
+
+        protected EventDispatcher delegate;
+        protected int lanes = Schedulers.DEFAULT_POOL_SIZE;
+        protected Scheduler laneScheduler;
+        protected Function<Event, Long> partitionKey = PartitionedEventDispatcher::defaultPartitionKey;
+        protected int laneBufferSize = Integer.MAX_VALUE;
+        protected EmissionStrategy laneEmissionStrategy;
+
+        protected Builder() {
+        }
+
+        /**
+         * Set the {@link EventDispatcher} events are published to and obtained from. Defaults to
+         * {@link EventDispatcher#buffering()}.
+         *
+         * @param delegate the underlying dispatcher
+         * @return this builder
+         */
+        public Builder delegate(EventDispatcher delegate) {
+            this.delegate = Objects.requireNonNull(delegate);
+            return this;
+        }
+
+        /**
+         * Set the number of lanes events are partitioned into for each event handler, bounding the number of
+         * events one handler can process concurrently. Handlers waiting on I/O may need more lanes than the default to
+         * keep their throughput. Defaults to the number of available processors.
+         *
+         * @param lanes a positive number of lanes
+         * @return this builder
+         */
+        public Builder lanes(int lanes) {
+            this.lanes = lanes;
+            return this;
+        }
+
+        /**
+         * Set the {@link Scheduler} running each lane. Using a bounded elastic/blocking-capable one is recommended
+         * for general workloads that may have blocking sequences. Defaults to
+         * {@link EventDispatcher#DEFAULT_EVENT_SCHEDULER}.
+         *
+         * @param laneScheduler a custom {@link Scheduler} for lanes
+         * @return this builder
+         */
+        public Builder laneScheduler(Scheduler laneScheduler) {
+            this.laneScheduler = Objects.requireNonNull(laneScheduler);
+            return this;
+        }
+
+        /**
+         * Set the function deriving the partition key of each event. Events with the same key are handled in
+         * order. Defaults to {@link PartitionedEventDispatcher#defaultPartitionKey(Event)}.
+         *
+         * @param partitionKey a function deriving the partition key of an event
+         * @return this builder
+         */
+        public Builder partitionKey(Function<Event, Long> partitionKey) {
+            this.partitionKey = Objects.requireNonNull(partitionKey);
+            return this;
+        }
+
+        /**
+         * Set the number of events each lane can queue while its handler is busy. Events for a lane with a full
+         * buffer are handled by the lane {@link EmissionStrategy}. Defaults to unbounded lanes.
+         *
+         * @param laneBufferSize a positive number of events to queue per lane
+         * @return this builder
+         */
+        public Builder laneBufferSize(int laneBufferSize) {
+            this.laneBufferSize = laneBufferSize;
+            return this;
+        }
+
+        /**
+         * Set the {@link EmissionStrategy} to apply when an event is routed to a lane with a full buffer, which only
+         * happens when {@link #laneBufferSize(int)} is set. Defaults to {@link EmissionStrategy#park(Duration)},
+         * holding back the publishing thread until the lane makes room, so no event is lost. Use
+         * {@link EmissionStrategy#timeoutDrop(Duration)} to drop events for a full lane instead.
+         *
+         * @param laneEmissionStrategy a strategy for events routed to a full lane
+         * @return this builder
+         */
+        public Builder laneEmissionStrategy(EmissionStrategy laneEmissionStrategy) {
+            this.laneEmissionStrategy = Objects.requireNonNull(laneEmissionStrategy);
+            return this;
+        }
+
+        public EventDispatcher build() {
+            if (delegate == null) {
+                delegate = EventDispatcher.buffering();
+            }
+            if (laneScheduler == null) {
+                laneScheduler = DEFAULT_EVENT_SCHEDULER.get();
+            }
+            if (laneEmissionStrategy == null) {
+                laneEmissionStrategy = EmissionStrategy.park(Duration.ofMillis(10));
+            }
+            return new PartitionedEventDispatcher(delegate, lanes, laneScheduler, partitionKey, laneBufferSize,
+                    laneEmissionStrategy);
+        }
+    }
+}
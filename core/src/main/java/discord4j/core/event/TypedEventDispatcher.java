@@ -0,0 +1,290 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package discord4j.core.event;
+
+import discord4j.common.LogUtil;
+import discord4j.common.annotations.Experimental;
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.core.event.domain.Event;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static discord4j.common.LogUtil.format;
+
+/**
+ * Distributes {@link Event} instances only to the subscribers interested in them, keeping a separate
+ * {@link Sinks.Many} for each subscribed event class.
+ * <p>
+ * Publishing an event emits it to the sinks of its class and of every subscribed supertype, resolved once per
+ * concrete event class, so the cost of publishing does not grow with subscribers to unrelated event types. Like other
+ * dispatchers, each subscriber receives events on the configured event {@link Scheduler}.
+ * <p>
+ * Events of a class without subscribers are dropped immediately, therefore this dispatcher does not retain startup
+ * events for late subscribers.
+ */
+@Experimental
+public class TypedEventDispatcher implements EventDispatcher {
+
+    private static final Logger log = Loggers.getLogger(TypedEventDispatcher.class);
+
+    private final EmissionStrategy emissionStrategy;
+    private final Scheduler eventScheduler;
+    private final int bufferSize;
+
+    private final Object lock = new Object();
+    private final Map<Class<?>, EventChannel> channels = new HashMap<>(); // guarded by lock
+    private volatile RouteTable routes = new RouteTable(Collections.emptyMap());
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new typed event dispatcher.
+     *
+     * @param emissionStrategy a strategy to handle emission failures
+     * @param eventScheduler a {@link Scheduler} to ensure a certain thread model on each published signal
+     * @param bufferSize the number of events each event class sink can queue for its subscribers
+     */
+    public TypedEventDispatcher(EmissionStrategy emissionStrategy, Scheduler eventScheduler, int bufferSize) {
+        this.emissionStrategy = emissionStrategy;
+        this.eventScheduler = eventScheduler;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Create a new {@link TypedEventDispatcher} with default settings.
+     *
+     * @return a new {@link EventDispatcher} routing events by type
+     */
+    public static EventDispatcher create() {
+        return builder().build();
+    }
+
+    /**
+     * Create a builder to customize a {@link TypedEventDispatcher}.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public <E extends Event> Flux<E> on(Class<E> eventClass) {
+        return Flux.defer(() -> {
+            Sinks.Many<Event> sink = acquire(eventClass);
+            if (sink == null) {
+                return Flux.empty();
+            }
+            AtomicReference<Subscription> subscription = new AtomicReference<>();
+            return sink.asFlux()
+                    .publishOn(eventScheduler)
+                    .<E>handle((event, s) -> {
+                        if (log.isTraceEnabled()) {
+                            log.trace(format(s.currentContext().put(LogUtil.KEY_SHARD_ID,
+                                    event.getShardInfo().getIndex()), "{}"), event.toString());
+                        }
+                        s.next(eventClass.cast(event));
+                    })
+                    .doOnSubscribe(sub -> {
+                        subscription.set(sub);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Subscription {} to {} created", Integer.toHexString(sub.hashCode()),
+                                    eventClass.getSimpleName());
+                        }
+                    })
+                    .doFinally(signal -> {
+                        release(eventClass);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Subscription {} to {} disposed due to {}",
+                                    Integer.toHexString(subscription.get().hashCode()), eventClass.getSimpleName(),
+                                    signal);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public void publish(Event event) {
+        for (Sinks.Many<Event> sink : routes.get(event.getClass())) {
+            emissionStrategy.emitNext(sink, event);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            for (EventChannel channel : channels.values()) {
+                emissionStrategy.emitComplete(channel.sink);
+            }
+            channels.clear();
+            routes = new RouteTable(Collections.emptyMap());
+        }
+    }
+
+    private Sinks.Many<Event> acquire(Class<?> eventClass) {
+        synchronized (lock) {
+            if (shutdown) {
+                return null;
+            }
+            EventChannel channel = channels.get(eventClass);
+            if (channel == null) {
+                channel = new EventChannel(Sinks.many().multicast().onBackpressureBuffer(bufferSize, false));
+                channels.put(eventClass, channel);
+                updateRoutes();
+            }
+            channel.subscribers++;
+            return channel.sink;
+        }
+    }
+
+    private void release(Class<?> eventClass) {
+        synchronized (lock) {
+            EventChannel channel = channels.get(eventClass);
+            if (channel != null && --channel.subscribers == 0) {
+                // avoid queueing events for a class nobody listens to anymore
+                channels.remove(eventClass);
+                updateRoutes();
+                // publishers may still hold the previous routes, terminating the sink makes their late events
+                // fail as FAIL_TERMINATED and be dropped instead of buffered until the sink overflows
+                emissionStrategy.emitComplete(channel.sink);
+            }
+        }
+    }
+
+    // visible for testing
+    List<Sinks.Many<Event>> routes(Class<?> eventClass) {
+        return routes.get(eventClass);
+    }
+
+    private void updateRoutes() {
+        Map<Class<?>, Sinks.Many<Event>> sinks = new HashMap<>();
+        channels.forEach((eventClass, channel) -> sinks.put(eventClass, channel.sink));
+        routes = new RouteTable(sinks);
+    }
+
+    private static class EventChannel {
+
+        private final Sinks.Many<Event> sink;
+        private int subscribers;
+
+        private EventChannel(Sinks.Many<Event> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the subscribed event classes, lazily resolving the target sinks of each concrete
+     * event class.
+     */
+    private static class RouteTable {
+
+        private final Map<Class<?>, Sinks.Many<Event>> sinks;
+        private final Map<Class<?>, List<Sinks.Many<Event>>> resolved = new ConcurrentHashMap<>();
+
+        private RouteTable(Map<Class<?>, Sinks.Many<Event>> sinks) {
+            this.sinks = sinks;
+        }
+
+        private List<Sinks.Many<Event>> get(Class<?> eventClass) {
+            if (sinks.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return resolved.computeIfAbsent(eventClass, this::resolve);
+        }
+
+        private List<Sinks.Many<Event>> resolve(Class<?> eventClass) {
+            List<Sinks.Many<Event>> targets = new ArrayList<>();
+            sinks.forEach((type, sink) -> {
+                if (type.isAssignableFrom(eventClass)) {
+                    targets.add(sink);
+                }
+            });
+            return targets.isEmpty() ? Collections.emptyList() : targets;
+        }
+    }
+
+    /**
+     * A builder to create {@link TypedEventDispatcher} instances.
+     */
+    public static class Builder {
+
+        protected EmissionStrategy emissionStrategy;
+        protected Scheduler eventScheduler;
+        protected int bufferSize = Queues.SMALL_BUFFER_SIZE;
+
+        protected Builder() {
+        }
+
+        /**
+         * Set the {@link EmissionStrategy} to apply when event publishing fails, which can be useful to handle
+         * overflowing, non-serialized or terminal scenarios through the means of retrying, parking threads or throwing
+         * an exception back to the emitter. Defaults to a timeout-then-drop strategy after 10 seconds.
+         *
+         * @param emissionStrategy the emission failure handling strategy
+         * @return this builder
+         */
+        public Builder emissionStrategy(EmissionStrategy emissionStrategy) {
+            this.emissionStrategy = Objects.requireNonNull(emissionStrategy);
+            return this;
+        }
+
+        /**
+         * Set the {@link Scheduler} this dispatcher should use to publish events to its subscribers. Using a bounded
+         * elastic/blocking-capable one is recommended for general workloads that may have blocking sequences.
+         *
+         * @param eventScheduler a custom {@link Scheduler} to publish events
+         * @return this builder
+         */
+        public Builder eventScheduler(Scheduler eventScheduler) {
+            this.eventScheduler = Objects.requireNonNull(eventScheduler);
+            return this;
+        }
+
+        /**
+         * Set the number of events the sink of each subscribed event class can queue before applying the
+         * {@link EmissionStrategy}. Defaults to {@link Queues#SMALL_BUFFER_SIZE}.
+         *
+         * @param bufferSize the number of events to queue per event class
+         * @return this builder
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public EventDispatcher build() {
+            if (emissionStrategy == null) {
+                emissionStrategy = EmissionStrategy.timeoutDrop(Duration.ofSeconds(10));
+            }
+            if (eventScheduler == null) {
+                eventScheduler = DEFAULT_EVENT_SCHEDULER.get();
+            }
+            return new TypedEventDispatcher(emissionStrategy, eventScheduler, bufferSize);
+        }
+    }
+}
@@ -43,11 +43,30 @@ import java.util.Map;
 
 /**
  * Registry for {@link Dispatch} to {@link Event} mapping operations.
+ * <p>
+ * Handlers are resolved once per concrete dispatch class and cached. Assembly checkpoints describing the handled
+ * dispatch class are only attached if enabled, through the constructor or by setting the
+ * {@code discord4j.dispatch.checkpoints} JVM property to {@code true}.
  */
 public class DispatchHandlers implements DispatchEventMapper {
 
     private static final Map<Class<?>, DispatchHandler<?, ?, ?>> handlerMap = new HashMap<>();
 
+    private static final ClassValue<ResolvedHandler> resolvedHandlers = new ClassValue<ResolvedHandler>() {
+        @Override
+        protected ResolvedHandler computeValue(Class<?> type) {
+            // pick the most specific registered type, e.g. UnavailableGuildCreate over GuildCreate
+            Class<?> found = null;
+            for (Class<?> candidate : handlerMap.keySet()) {
+                if (candidate.isAssignableFrom(type) && (found == null || found.isAssignableFrom(candidate))) {
+                    found = candidate;
+                }
+            }
+            return found == null ? null : new ResolvedHandler(handlerMap.get(found),
+                    "Dispatch handled for " + type);
+        }
+    };
+
     static {
         addHandler(ChannelCreate.class, ChannelDispatchHandlers::channelCreate);
         addHandler(ChannelDelete.class, ChannelDispatchHandlers::channelDelete);
@@ -102,6 +121,32 @@ public class DispatchHandlers implements DispatchEventMapper {
 
     private static final Logger log = Loggers.getLogger(DispatchHandlers.class);
 
+    /**
+     * JVM property that enables attaching an assembly checkpoint to every handled dispatch, to improve error traces
+     * at the cost of extra allocations. Default value: false
+     */
+    private static final String CHECKPOINTS_PROPERTY = "discord4j.dispatch.checkpoints";
+
+    private final boolean checkpoints;
+
+    /**
+     * Create a new {@link DispatchHandlers}, attaching assembly checkpoints only if the
+     * {@code discord4j.dispatch.checkpoints} JVM property is set to {@code true}.
+     */
+    public DispatchHandlers() {
+        this(Boolean.getBoolean(CHECKPOINTS_PROPERTY));
+    }
+
+    /**
+     * Create a new {@link DispatchHandlers}.
+     *
+     * @param checkpoints whether to attach an assembly checkpoint describing the dispatch class to every handled
+     * dispatch
+     */
+    public DispatchHandlers(boolean checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
     /**
      * Process a {@link Dispatch} object wrapped with its context to potentially obtain an {@link Event}.
      *
@@ -113,18 +158,14 @@ public class DispatchHandlers implements DispatchEventMapper {
      */
     @SuppressWarnings("unchecked")
     public <D, S, E extends Event> Mono<E> handle(DispatchContext<D, S> context) {
-        DispatchHandler<D, S, E> handler = (DispatchHandler<D, S, E>) handlerMap.entrySet()
-                .stream()
-                .filter(entry -> entry.getKey().isAssignableFrom(context.getDispatch().getClass()))
-                .map(Map.Entry::getValue)
-                .findFirst()
-                .orElse(null);
-        if (handler == null) {
+        ResolvedHandler resolved = resolvedHandlers.get(context.getDispatch().getClass());
+        if (resolved == null) {
             log.warn("Handler not found from: {}", context.getDispatch().getClass());
             return Mono.empty();
         }
-        return Mono.defer(() -> handler.handle(context))
-                .checkpoint("Dispatch handled for " + context.getDispatch().getClass());
+        DispatchHandler<D, S, E> handler = (DispatchHandler<D, S, E>) resolved.handler;
+        Mono<E> result = Mono.defer(() -> handler.handle(context));
+        return checkpoints ? result.checkpoint(resolved.description) : result;
     }
 
     private static Mono<PresenceUpdateEvent> presenceUpdate(DispatchContext<PresenceUpdate, PresenceAndUserData> context) {
@@ -237,4 +278,15 @@ public class DispatchHandlers implements DispatchEventMapper {
         Interaction interaction = new Interaction(gateway, context.getDispatch().interaction());
         return Mono.just(new InteractionCreateEvent(gateway, context.getShardInfo(), interaction));
     }
+
+    private static class ResolvedHandler {
+
+        private final DispatchHandler<?, ?, ?> handler;
+        private final String description;
+
+        private ResolvedHandler(DispatchHandler<?, ?, ?> handler, String description) {
+            this.handler = handler;
+            this.description = description;
+        }
+    }
 }
@@ -124,7 +124,7 @@ public final class GuildEmoji implements Entity {
      * is received, it is emitted through the {@code Flux}.
      */
     public Flux<Role> getRoles() {
-        return Flux.fromIterable(getRoleIds()).flatMap(id -> gateway.getRoleById(getGuildId(), id));
+        return gateway.getRolesByIds(getGuildId(), getRoleIds());
     }
 
     /**
@@ -138,8 +138,7 @@ public final class GuildEmoji implements Entity {
      * is received, it is emitted through the {@code Flux}.
      */
     public Flux<Role> getRoles(EntityRetrievalStrategy retrievalStrategy) {
-        return Flux.fromIterable(getRoleIds())
-                .flatMap(id -> gateway.withRetrievalStrategy(retrievalStrategy).getRoleById(getGuildId(), id));
+        return gateway.withRetrievalStrategy(retrievalStrategy).getRolesByIds(getGuildId(), getRoleIds());
     }
 
     /**
@@ -110,8 +110,7 @@ public final class Member extends User {
      * emitted through the {@code Flux}.
      */
     public Flux<Role> getRoles() {
-        return Flux.fromIterable(getRoleIds())
-                .flatMap(id -> getClient().getRoleById(getGuildId(), id));
+        return getClient().getRolesByIds(getGuildId(), getRoleIds());
     }
 
     /**
@@ -125,8 +124,7 @@ public final class Member extends User {
      * emitted through the {@code Flux}.
      */
     public Flux<Role> getRoles(EntityRetrievalStrategy retrievalStrategy) {
-        return Flux.fromIterable(getRoleIds())
-                .flatMap(id -> getClient().withRetrievalStrategy(retrievalStrategy).getRoleById(getGuildId(), id));
+        return getClient().withRetrievalStrategy(retrievalStrategy).getRolesByIds(getGuildId(), getRoleIds());
     }
 
     /**
@@ -139,8 +137,7 @@ public final class Member extends User {
      * is received, it is emitted through the {@code Mono}.
      */
     public Mono<Role> getHighestRole() {
-        return MathFlux.max(Flux.fromIterable(getRoleIds()).flatMap(id -> getClient().getRoleById(getGuildId(), id)),
-                OrderUtil.ROLE_ORDER);
+        return MathFlux.max(getRoles(), OrderUtil.ROLE_ORDER);
     }
 
     /**
@@ -154,10 +151,7 @@ public final class Member extends User {
      * is received, it is emitted through the {@code Mono}.
      */
     public Mono<Role> getHighestRole(EntityRetrievalStrategy retrievalStrategy) {
-        return MathFlux.max(Flux.fromIterable(getRoleIds())
-                        .flatMap(id -> getClient().withRetrievalStrategy(retrievalStrategy).getRoleById(getGuildId(),
-                                id)),
-                OrderUtil.ROLE_ORDER);
+        return MathFlux.max(getRoles(retrievalStrategy), OrderUtil.ROLE_ORDER);
     }
 
     /**
@@ -62,7 +62,7 @@ public final class PrivateChannel extends BaseMessageChannel {
      * is received, it is emitted through the {@code Flux}.
      */
     public Flux<User> getRecipients() {
-        return Flux.fromIterable(getRecipientIds()).flatMap(getClient()::getUserById);
+        return getClient().getUsersByIds(getRecipientIds());
     }
 
     /**
@@ -73,8 +73,7 @@ public final class PrivateChannel extends BaseMessageChannel {
      * is received, it is emitted through the {@code Flux}.
      */
     public Flux<User> getRecipients(EntityRetrievalStrategy retrievalStrategy) {
-        return Flux.fromIterable(getRecipientIds())
-                .flatMap(id -> getClient().withRetrievalStrategy(retrievalStrategy).getUserById(id));
+        return getClient().withRetrievalStrategy(retrievalStrategy).getUsersByIds(getRecipientIds());
     }
 
     @Override
@@ -29,6 +29,8 @@ import discord4j.common.util.Snowflake;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 /**
  * Abstraction for entity retrieval.
  */
@@ -73,6 +75,21 @@ public interface EntityRetriever {
      */
     Mono<Member> getMemberById(Snowflake guildId, Snowflake userId);
 
+    /**
+     * Requests to retrieve the members represented by the supplied IDs. Implementations may resolve them all at once,
+     * by default each member is retrieved with {@link #getMemberById(Snowflake, Snowflake)}.
+     * <p>
+     * The order of items emitted by the returned {@code Flux} is unspecified.
+     *
+     * @param guildId The ID of the guild.
+     * @param userIds The IDs of the users.
+     * @return A {@link Flux} that continually emits the {@link Member members} found for the supplied IDs. If an
+     *         error is received, it is emitted through the {@code Flux}.
+     */
+    default Flux<Member> getMembersByIds(Snowflake guildId, Collection<Snowflake> userIds) {
+        return Flux.fromIterable(userIds).flatMap(id -> getMemberById(guildId, id));
+    }
+
     /**
      * Requests to retrieve the message represented by the supplied IDs.
      *
@@ -93,6 +110,22 @@ public interface EntityRetriever {
      */
     Mono<Role> getRoleById(Snowflake guildId, Snowflake roleId);
 
+    /**
+     * Requests to retrieve the roles represented by the supplied IDs. Implementations may resolve them all at once,
+     * by default each role is retrieved with {@link #getRoleById(Snowflake, Snowflake)}.
+     * <p>
+     * The order of items emitted by the returned {@code Flux} is unspecified. Use {@link OrderUtil#orderRoles(Flux)}
+     * to consistently order roles.
+     *
+     * @param guildId The ID of the guild.
+     * @param roleIds The IDs of the roles.
+     * @return A {@link Flux} that continually emits the {@link Role roles} found for the supplied IDs. If an error is
+     *         received, it is emitted through the {@code Flux}.
+     */
+    default Flux<Role> getRolesByIds(Snowflake guildId, Collection<Snowflake> roleIds) {
+        return Flux.fromIterable(roleIds).flatMap(id -> getRoleById(guildId, id));
+    }
+
     /**
      * Requests to retrieve the user represented by the supplied ID.
      *
@@ -102,6 +135,20 @@ public interface EntityRetriever {
      */
     Mono<User> getUserById(Snowflake userId);
 
+    /**
+     * Requests to retrieve the users represented by the supplied IDs. Implementations may resolve them all at once,
+     * by default each user is retrieved with {@link #getUserById(Snowflake)}.
+     * <p>
+     * The order of items emitted by the returned {@code Flux} is unspecified.
+     *
+     * @param userIds The IDs of the users.
+     * @return A {@link Flux} that continually emits the {@link User users} found for the supplied IDs. If an error is
+     *         received, it is emitted through the {@code Flux}.
+     */
+    default Flux<User> getUsersByIds(Collection<Snowflake> userIds) {
+        return Flux.fromIterable(userIds).flatMap(this::getUserById);
+    }
+
     /**
      * Requests to retrieve the guilds the current client is in.
      *
@@ -28,6 +28,11 @@ import discord4j.common.util.Snowflake;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
 public class FallbackEntityRetriever implements EntityRetriever {
 
     private final EntityRetriever first;
@@ -58,6 +63,12 @@ public class FallbackEntityRetriever implements EntityRetriever {
         return first.getMemberById(guildId, userId).switchIfEmpty(fallback.getMemberById(guildId, userId));
     }
 
+    @Override
+    public Flux<Member> getMembersByIds(Snowflake guildId, Collection<Snowflake> userIds) {
+        return withFallback(userIds, ids -> first.getMembersByIds(guildId, ids),
+                ids -> fallback.getMembersByIds(guildId, ids), Member::getId);
+    }
+
     @Override
     public Mono<Message> getMessageById(Snowflake channelId, Snowflake messageId) {
         return first.getMessageById(channelId, messageId).switchIfEmpty(fallback.getMessageById(channelId, messageId));
@@ -68,11 +79,37 @@ public class FallbackEntityRetriever implements EntityRetriever {
         return first.getRoleById(guildId, roleId).switchIfEmpty(fallback.getRoleById(guildId, roleId));
     }
 
+    @Override
+    public Flux<Role> getRolesByIds(Snowflake guildId, Collection<Snowflake> roleIds) {
+        return withFallback(roleIds, ids -> first.getRolesByIds(guildId, ids),
+                ids -> fallback.getRolesByIds(guildId, ids), Role::getId);
+    }
+
     @Override
     public Mono<User> getUserById(Snowflake userId) {
         return first.getUserById(userId).switchIfEmpty(fallback.getUserById(userId));
     }
 
+    @Override
+    public Flux<User> getUsersByIds(Collection<Snowflake> userIds) {
+        return withFallback(userIds, first::getUsersByIds, fallback::getUsersByIds, User::getId);
+    }
+
+    /**
+     * Retrieve entities from the first retriever, then only those it did not find from the fallback one.
+     */
+    private static <T> Flux<T> withFallback(Collection<Snowflake> ids,
+                                            Function<Collection<Snowflake>, Flux<T>> firstLookup,
+                                            Function<Collection<Snowflake>, Flux<T>> fallbackLookup,
+                                            Function<T, Snowflake> idMapper) {
+        return Flux.defer(() -> {
+            Set<Snowflake> missing = new HashSet<>(ids);
+            return firstLookup.apply(ids)
+                    .doOnNext(entity -> missing.remove(idMapper.apply(entity)))
+                    .concatWith(Flux.defer(() -> missing.isEmpty() ? Flux.empty() : fallbackLookup.apply(missing)));
+        });
+    }
+
     @Override
     public Flux<Guild> getGuilds() {
         return first.getGuilds().switchIfEmpty(fallback.getGuilds());
@@ -28,6 +28,7 @@ import discord4j.core.util.EntityUtil;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.Collections;
 
 public class StoreEntityRetriever implements EntityRetriever {
@@ -68,6 +69,12 @@ public class StoreEntityRetriever implements EntityRetriever {
                         .next());
     }
 
+    @Override
+    public Flux<Member> getMembersByIds(Snowflake guildId, Collection<Snowflake> userIds) {
+        return Flux.from(store.execute(ReadActions.getMembersByIds(guildId.asLong(), toLongs(userIds))))
+                .map(data -> new Member(gateway, data, guildId.asLong()));
+    }
+
     @Override
     public Mono<Message> getMessageById(Snowflake channelId, Snowflake messageId) {
         return Mono.from(store.execute(ReadActions.getMessageById(channelId.asLong(), messageId.asLong())))
@@ -80,12 +87,28 @@ public class StoreEntityRetriever implements EntityRetriever {
                 .map(data -> new Role(gateway, data, guildId.asLong()));
     }
 
+    @Override
+    public Flux<Role> getRolesByIds(Snowflake guildId, Collection<Snowflake> roleIds) {
+        return Flux.from(store.execute(ReadActions.getRolesByIds(guildId.asLong(), toLongs(roleIds))))
+                .map(data -> new Role(gateway, data, guildId.asLong()));
+    }
+
     @Override
     public Mono<User> getUserById(Snowflake userId) {
         return Mono.from(store.execute(ReadActions.getUserById(userId.asLong())))
                 .map(data -> new User(gateway, data));
     }
 
+    @Override
+    public Flux<User> getUsersByIds(Collection<Snowflake> userIds) {
+        return Flux.from(store.execute(ReadActions.getUsersByIds(toLongs(userIds))))
+                .map(data -> new User(gateway, data));
+    }
+
+    private static long[] toLongs(Collection<Snowflake> ids) {
+        return ids.stream().mapToLong(Snowflake::asLong).toArray();
+    }
+
     @Override
     public Flux<Guild> getGuilds() {
         return Flux.from(store.execute(ReadActions.getGuilds()))
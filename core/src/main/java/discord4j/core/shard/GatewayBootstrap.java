@@ -21,6 +21,7 @@ import discord4j.common.LogUtil;
 import discord4j.common.ReactorResources;
 import discord4j.common.annotations.Experimental;
 import discord4j.common.retry.ReconnectOptions;
+import discord4j.common.sinks.EmissionStrategy;
 import discord4j.common.store.Store;
 import discord4j.common.store.action.gateway.GatewayActions;
 import discord4j.common.store.legacy.LegacyStoreLayout;
@@ -42,9 +43,12 @@ import discord4j.discordjson.json.gateway.StatusUpdate;
 import discord4j.gateway.*;
 import discord4j.gateway.intent.Intent;
 import discord4j.gateway.intent.IntentSet;
+import discord4j.gateway.json.dispatch.EventNames;
 import discord4j.gateway.limiter.PayloadTransformer;
 import discord4j.gateway.limiter.RateLimitTransformer;
-import discord4j.gateway.payload.JacksonPayloadReader;
+import discord4j.gateway.payload.EtfPayloadReader;
+import discord4j.gateway.payload.EtfPayloadWriter;
+import discord4j.gateway.payload.JacksonBufferPayloadReader;
 import discord4j.gateway.payload.JacksonPayloadWriter;
 import discord4j.gateway.payload.PayloadReader;
 import discord4j.gateway.payload.PayloadWriter;
@@ -76,6 +80,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static discord4j.common.LogUtil.format;
@@ -135,6 +140,7 @@ public class GatewayBootstrap<O extends GatewayOptions> {
     private EntityRetrievalStrategy entityRetrievalStrategy = null;
     private DispatchEventMapper dispatchEventMapper = null;
     private int maxMissedHeartbeatAck = 1;
+    private Predicate<String> dispatchFilter = type -> true;
     private Function<EventDispatcher, Publisher<?>> dispatcherFunction;
 
     /**
@@ -179,6 +185,7 @@ public class GatewayBootstrap<O extends GatewayOptions> {
         this.entityRetrievalStrategy = source.entityRetrievalStrategy;
         this.dispatchEventMapper = source.dispatchEventMapper;
         this.maxMissedHeartbeatAck = source.maxMissedHeartbeatAck;
+        this.dispatchFilter = source.dispatchFilter;
         this.dispatcherFunction = source.dispatcherFunction;
     }
 
@@ -418,7 +425,10 @@ public class GatewayBootstrap<O extends GatewayOptions> {
     }
 
     /**
-     * Customize how inbound Gateway payloads are decoded from {@link ByteBuf}.
+     * Customize how inbound Gateway payloads are decoded from {@link ByteBuf}. Defaults to
+     * {@link JacksonBufferPayloadReader}. The encoding requested to the Gateway is taken from
+     * {@link PayloadReader#getEncoding()}, so to use ETF set both an {@link EtfPayloadReader} and an
+     * {@link EtfPayloadWriter}.
      *
      * @param payloadReader a Gateway payload decoder
      * @return this builder
@@ -550,6 +560,24 @@ public class GatewayBootstrap<O extends GatewayOptions> {
         return this;
     }
 
+    /**
+     * Set the interest set of Gateway dispatch event types, as a {@link Predicate} receiving an event type name like
+     * the ones in {@link EventNames} and returning {@code true} if it should be decoded. Dispatches rejected by it are
+     * skipped by the {@link PayloadReader} without binding their data, so they will not be processed by the
+     * {@link Store} and no event will be published for them. {@link EventNames#READY} and {@link EventNames#RESUMED}
+     * are always decoded. Defaults to decoding every dispatch.
+     * <p>
+     * Use this to reduce decoding work for event types your application does not listen to, taking care of not
+     * excluding types your {@link Store} relies on, like {@link EventNames#GUILD_CREATE}.
+     *
+     * @param dispatchFilter a {@link Predicate} over dispatch event types
+     * @return this builder
+     */
+    public GatewayBootstrap<O> setDispatchFilter(Predicate<String> dispatchFilter) {
+        this.dispatchFilter = Objects.requireNonNull(dispatchFilter);
+        return this;
+    }
+
     /**
      * Set an initial subscriber to the bootstrapped {@link EventDispatcher} to gain access to early startup events. The
      * subscriber is derived from the given {@link Function} which returns a {@link Publisher} that is subscribed early
@@ -749,9 +777,11 @@ public class GatewayBootstrap<O extends GatewayOptions> {
                     PayloadTransformer limiter = shardCoordinator.getIdentifyLimiter(shard, maxConcurrency);
                     GatewayReactorResources resources = gateway.getGatewayResources().getGatewayReactorResources();
                     ReconnectOptions reconnectOptions = initReconnectOptions(resources);
+                    PayloadReader reader = initPayloadReader();
                     GatewayOptions options = new GatewayOptions(client.getCoreResources().getToken(),
-                            resources, initPayloadReader(), initPayloadWriter(), reconnectOptions,
-                            identify, gatewayObserver, limiter, maxMissedHeartbeatAck);
+                            resources, reader, initPayloadWriter(), reconnectOptions,
+                            identify, gatewayObserver, limiter, maxMissedHeartbeatAck, false,
+                            EmissionStrategy.park(Duration.ofMillis(10)), dispatchFilter);
                     GatewayClient gatewayClient = clientFactory.apply(this.optionsModifier.apply(options));
                     clientGroup.add(shard.getIndex(), gatewayClient);
                     DispatchStoreLayer dispatchStoreLayer = DispatchStoreLayer.create(store, shard);
@@ -837,7 +867,8 @@ public class GatewayBootstrap<O extends GatewayOptions> {
                                     reconnectOptions.getMaxRetries(), reconnectOptions.getFirstBackoff())
                                     .maxBackoff(reconnectOptions.getMaxBackoffInterval()))
                             .flatMap(response -> gatewayClient.execute(
-                                    RouteUtils.expandQuery(response.url(), getGatewayParameters())))
+                                    RouteUtils.expandQuery(response.url(),
+                                            getGatewayParameters(reader.getEncoding()))))
                             .doOnError(sink::error) // only useful for startup errors
                             .doFinally(__ -> {
                                 sink.success(); // no-op if we completed it before
@@ -862,7 +893,7 @@ public class GatewayBootstrap<O extends GatewayOptions> {
         if (payloadReader != null) {
             return payloadReader;
         }
-        return new JacksonPayloadReader(client.getCoreResources().getJacksonResources().getObjectMapper());
+        return new JacksonBufferPayloadReader(client.getCoreResources().getJacksonResources().getObjectMapper());
     }
 
     private PayloadWriter initPayloadWriter() {
@@ -950,10 +981,10 @@ public class GatewayBootstrap<O extends GatewayOptions> {
         }
     }
 
-    private Multimap<String, Object> getGatewayParameters() {
+    private Multimap<String, Object> getGatewayParameters(String encoding) {
         final Multimap<String, Object> parameters = new Multimap<>(3);
         parameters.add("compress", "zlib-stream");
-        parameters.add("encoding", "json");
+        parameters.add("encoding", encoding);
         parameters.add("v", 8);
         return parameters;
     }
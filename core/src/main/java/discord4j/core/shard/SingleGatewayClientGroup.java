@@ -179,5 +179,10 @@ class SingleGatewayClientGroup implements GatewayClientGroupManager {
         public Duration getResponseTime() {
             return client.getResponseTime();
         }
+
+        @Override
+        public int getDecodeQueueDepth() {
+            return client.getDecodeQueueDepth();
+        }
     }
 }
@@ -0,0 +1,219 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.core.event;
+
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.core.event.domain.lifecycle.ConnectEvent;
+import discord4j.gateway.ShardInfo;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PartitionedEventDispatcherTest {
+
+    @Test
+    public void testDefaultPartitionKeyFallsBackToShard() {
+        ConnectEvent event = new ConnectEvent(null, ShardInfo.create(3, 4));
+        assertEquals(Long.valueOf(3), PartitionedEventDispatcher.defaultPartitionKey(event));
+    }
+
+    @Test
+    public void testOrderedWithinPartition() throws InterruptedException {
+        Scheduler lanes = Schedulers.newParallel("lanes", 4);
+        EventDispatcher dispatcher = PartitionedEventDispatcher.builder()
+                .delegate(EventDispatcher.builder().eventScheduler(Schedulers.immediate()).build())
+                .lanes(4)
+                .laneScheduler(lanes)
+                .build();
+
+        int shards = 8;
+        int eventsPerShard = 50;
+        List<List<ConnectEvent>> expected = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            expected.add(new ArrayList<>());
+        }
+        Map<Integer, List<ConnectEvent>> handled = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(shards * eventsPerShard);
+        Disposable subscription = dispatcher.on(ConnectEvent.class,
+                event -> Mono.fromRunnable(() -> {
+                    handled.computeIfAbsent(event.getShardInfo().getIndex(), k -> new CopyOnWriteArrayList<>())
+                            .add(event);
+                    latch.countDown();
+                }))
+                .subscribe();
+
+        for (int n = 0; n < eventsPerShard; n++) {
+            for (int i = 0; i < shards; i++) {
+                ConnectEvent event = new ConnectEvent(null, ShardInfo.create(i, shards));
+                expected.get(i).add(event);
+                dispatcher.publish(event);
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < shards; i++) {
+            assertEquals(expected.get(i), handled.get(i));
+        }
+
+        subscription.dispose();
+        dispatcher.shutdown();
+        lanes.dispose();
+    }
+
+    @Test
+    public void testSlowLaneDoesNotStallOthers() throws InterruptedException {
+        Scheduler lanes = Schedulers.newParallel("lanes", 2);
+        EventDispatcher dispatcher = PartitionedEventDispatcher.builder()
+                .delegate(EventDispatcher.builder().eventScheduler(Schedulers.immediate()).build())
+                .lanes(2)
+                .laneScheduler(lanes)
+                .partitionKey(event -> (long) event.getShardInfo().getIndex())
+                .build();
+
+        int events = Queues.SMALL_BUFFER_SIZE * 2;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowHandled = new CountDownLatch(events);
+        CountDownLatch fastHandled = new CountDownLatch(events);
+        Disposable subscription = dispatcher.on(ConnectEvent.class,
+                event -> Mono.fromRunnable(() -> {
+                    if (event.getShardInfo().getIndex() == 0) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        slowHandled.countDown();
+                    } else {
+                        fastHandled.countDown();
+                    }
+                }))
+                .subscribe();
+
+        // the slow lane falls behind by more than a bounded buffer would hold before the fast lane is done
+        ShardInfo slow = ShardInfo.create(0, 2);
+        ShardInfo fast = ShardInfo.create(1, 2);
+        for (int i = 0; i < events; i++) {
+            dispatcher.publish(new ConnectEvent(null, slow));
+            dispatcher.publish(new ConnectEvent(null, fast));
+        }
+
+        assertTrue(fastHandled.await(10, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(slowHandled.await(10, TimeUnit.SECONDS));
+
+        subscription.dispose();
+        dispatcher.shutdown();
+        lanes.dispose();
+    }
+
+    @Test
+    public void testBoundedLaneHoldsBackInsteadOfDropping() throws InterruptedException {
+        Scheduler lanes = Schedulers.newParallel("lanes", 1);
+        EventDispatcher dispatcher = PartitionedEventDispatcher.builder()
+                .delegate(EventDispatcher.builder().eventScheduler(Schedulers.immediate()).build())
+                .lanes(1)
+                .laneScheduler(lanes)
+                .laneBufferSize(4)
+                .build();
+
+        int events = 100;
+        List<ConnectEvent> expected = new ArrayList<>();
+        List<ConnectEvent> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(events);
+        Disposable subscription = dispatcher.on(ConnectEvent.class,
+                event -> Mono.delay(Duration.ofMillis(1))
+                        .doOnNext(tick -> {
+                            handled.add(event);
+                            latch.countDown();
+                        }))
+                .subscribe();
+
+        for (int i = 0; i < events; i++) {
+            ConnectEvent event = new ConnectEvent(null, ShardInfo.create(0, 1));
+            expected.add(event);
+            dispatcher.publish(event);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(expected, handled);
+
+        subscription.dispose();
+        dispatcher.shutdown();
+        lanes.dispose();
+    }
+
+    @Test
+    public void testDroppingLaneDoesNotStallOthers() throws InterruptedException {
+        Scheduler lanes = Schedulers.newParallel("lanes", 2);
+        EventDispatcher dispatcher = PartitionedEventDispatcher.builder()
+                .delegate(EventDispatcher.builder().eventScheduler(Schedulers.immediate()).build())
+                .lanes(2)
+                .laneScheduler(lanes)
+                .laneBufferSize(4)
+                .laneEmissionStrategy(EmissionStrategy.timeoutDrop(Duration.ZERO))
+                .partitionKey(event -> (long) event.getShardInfo().getIndex())
+                .build();
+
+        int events = 500;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastHandled = new CountDownLatch(events);
+        Disposable subscription = dispatcher.on(ConnectEvent.class,
+                event -> Mono.fromRunnable(() -> {
+                    if (event.getShardInfo().getIndex() == 0) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    } else {
+                        fastHandled.countDown();
+                    }
+                }))
+                .subscribe();
+
+        // the slow lane overflows its buffer long before the fast lane is done
+        ShardInfo slow = ShardInfo.create(0, 2);
+        ShardInfo fast = ShardInfo.create(1, 2);
+        for (int i = 0; i < events; i++) {
+            dispatcher.publish(new ConnectEvent(null, slow));
+            dispatcher.publish(new ConnectEvent(null, fast));
+        }
+
+        assertTrue(fastHandled.await(10, TimeUnit.SECONDS));
+
+        release.countDown();
+        subscription.dispose();
+        dispatcher.shutdown();
+        lanes.dispose();
+    }
+}
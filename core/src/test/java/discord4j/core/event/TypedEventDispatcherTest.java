@@ -0,0 +1,96 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.core.event;
+
+import discord4j.common.sinks.EmissionStrategy;
+import discord4j.core.event.domain.Event;
+import discord4j.core.event.domain.lifecycle.ConnectEvent;
+import discord4j.core.event.domain.lifecycle.GatewayLifecycleEvent;
+import discord4j.core.event.domain.lifecycle.ReconnectStartEvent;
+import discord4j.gateway.ShardInfo;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypedEventDispatcherTest {
+
+    @Test
+    public void testRoutesBySubscribedType() {
+        EventDispatcher dispatcher = TypedEventDispatcher.builder()
+                .eventScheduler(Schedulers.immediate())
+                .build();
+        ShardInfo shardInfo = ShardInfo.create(0, 1);
+        ConnectEvent connect = new ConnectEvent(null, shardInfo);
+        ReconnectStartEvent reconnectStart = new ReconnectStartEvent(null, shardInfo);
+
+        List<Event> all = new CopyOnWriteArrayList<>();
+        List<GatewayLifecycleEvent> lifecycle = new CopyOnWriteArrayList<>();
+        List<ConnectEvent> connects = new CopyOnWriteArrayList<>();
+        Disposable allSubscription = dispatcher.on(Event.class).subscribe(all::add);
+        Disposable lifecycleSubscription = dispatcher.on(GatewayLifecycleEvent.class).subscribe(lifecycle::add);
+        Disposable connectSubscription = dispatcher.on(ConnectEvent.class).subscribe(connects::add);
+
+        dispatcher.publish(connect);
+        dispatcher.publish(reconnectStart);
+
+        assertEquals(2, all.size());
+        assertEquals(2, lifecycle.size());
+        assertEquals(1, connects.size());
+
+        connectSubscription.dispose();
+        dispatcher.publish(connect);
+
+        assertEquals(3, all.size());
+        assertEquals(3, lifecycle.size());
+        assertEquals(1, connects.size());
+
+        allSubscription.dispose();
+        lifecycleSubscription.dispose();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testLatePublishToReleasedTypeIsDropped() {
+        TypedEventDispatcher dispatcher = (TypedEventDispatcher) TypedEventDispatcher.builder()
+                .eventScheduler(Schedulers.immediate())
+                .emissionStrategy(EmissionStrategy.timeoutDrop(Duration.ofSeconds(10)))
+                .bufferSize(1)
+                .build();
+        ConnectEvent connect = new ConnectEvent(null, ShardInfo.create(0, 1));
+
+        Disposable subscription = dispatcher.on(ConnectEvent.class).subscribe();
+        // routes read by a publisher right before the last subscriber leaves
+        List<Sinks.Many<Event>> staleRoutes = dispatcher.routes(ConnectEvent.class);
+        subscription.dispose();
+
+        long start = System.nanoTime();
+        for (Sinks.Many<Event> sink : staleRoutes) {
+            for (int i = 0; i < 3; i++) {
+                assertFalse(EmissionStrategy.timeoutDrop(Duration.ofSeconds(10)).emitNext(sink, connect));
+            }
+        }
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+        dispatcher.shutdown();
+    }
+}
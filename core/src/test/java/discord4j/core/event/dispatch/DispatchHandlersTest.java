@@ -0,0 +1,89 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.core.event.dispatch;
+
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.domain.Event;
+import discord4j.core.event.domain.InviteDeleteEvent;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.gateway.Dispatch;
+import discord4j.discordjson.json.gateway.InviteDelete;
+import discord4j.gateway.ShardInfo;
+import discord4j.gateway.state.StatefulDispatch;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DispatchHandlersTest {
+
+    private final GatewayDiscordClient gateway = mock(GatewayDiscordClient.class);
+
+    @Test
+    public void testResolvesHandlerOfDispatchSubclass() {
+        // a mock is a subclass of the registered dispatch type, like the generated immutable classes
+        InviteDelete dispatch = mock(InviteDelete.class);
+        when(dispatch.guildId()).thenReturn(Id.of(1));
+        when(dispatch.channelId()).thenReturn(Id.of(2));
+        when(dispatch.code()).thenReturn("code");
+
+        StepVerifier.create(new DispatchHandlers(false).<InviteDelete, Void, Event>handle(context(dispatch)))
+                .assertNext(event -> {
+                    assertTrue(event instanceof InviteDeleteEvent);
+                    assertEquals("code", ((InviteDeleteEvent) event).getCode());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testUnmappedDispatchIsIgnored() {
+        Dispatch dispatch = mock(Dispatch.class);
+
+        StepVerifier.create(new DispatchHandlers(false).<Dispatch, Void, Event>handle(context(dispatch)))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCheckpointsAttachedOnlyIfEnabled() {
+        InviteDelete dispatch = mock(InviteDelete.class);
+        when(dispatch.guildId()).thenAnswer(invocation -> {
+            throw new IllegalStateException("boom");
+        });
+
+        StepVerifier.create(new DispatchHandlers(true).handle(context(dispatch)))
+                .expectErrorSatisfies(error -> {
+                    assertEquals("boom", error.getMessage());
+                    assertTrue(Arrays.stream(error.getSuppressed())
+                            .anyMatch(e -> String.valueOf(e.getMessage()).contains("Dispatch handled for")));
+                })
+                .verify();
+        StepVerifier.create(new DispatchHandlers(false).handle(context(dispatch)))
+                .expectErrorSatisfies(error -> {
+                    assertEquals("boom", error.getMessage());
+                    assertEquals(0, error.getSuppressed().length);
+                })
+                .verify();
+    }
+
+    private <D> DispatchContext<D, Void> context(D dispatch) {
+        return DispatchContext.of(StatefulDispatch.of(ShardInfo.create(0, 1), dispatch, null), gateway);
+    }
+}
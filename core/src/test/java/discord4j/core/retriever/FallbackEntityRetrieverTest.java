@@ -0,0 +1,83 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.core.retriever;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.object.entity.User;
+import discord4j.discordjson.Id;
+import discord4j.discordjson.json.UserData;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class FallbackEntityRetrieverTest {
+
+    private final GatewayDiscordClient gateway = mock(GatewayDiscordClient.class);
+    private final EntityRetriever first = mock(EntityRetriever.class);
+    private final EntityRetriever fallback = mock(EntityRetriever.class);
+    private final EntityRetriever retriever = new FallbackEntityRetriever(first, fallback);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFallbackOnlyRequestsMissingIds() {
+        when(first.getUsersByIds(anyCollection())).thenReturn(Flux.just(user(1), user(3)));
+        when(fallback.getUsersByIds(anyCollection())).thenReturn(Flux.just(user(2)));
+
+        List<Long> found = retriever.getUsersByIds(Arrays.asList(Snowflake.of(1), Snowflake.of(2), Snowflake.of(3)))
+                .map(user -> user.getId().asLong())
+                .collectList()
+                .block();
+
+        assertEquals(Arrays.asList(1L, 3L, 2L), found);
+        ArgumentCaptor<Collection<Snowflake>> missing = ArgumentCaptor.forClass(Collection.class);
+        verify(fallback).getUsersByIds(missing.capture());
+        assertEquals(Collections.singleton(Snowflake.of(2)), new HashSet<>(missing.getValue()));
+    }
+
+    @Test
+    public void testFallbackSkippedWhenAllFound() {
+        when(first.getUsersByIds(anyCollection())).thenReturn(Flux.just(user(1), user(2)));
+
+        List<Long> found = retriever.getUsersByIds(Arrays.asList(Snowflake.of(1), Snowflake.of(2)))
+                .map(user -> user.getId().asLong())
+                .collect(Collectors.toList())
+                .block();
+
+        assertEquals(Arrays.asList(1L, 2L), found);
+        verify(fallback, never()).getUsersByIds(anyCollection());
+    }
+
+    private User user(long id) {
+        return new User(gateway, UserData.builder()
+                .id(Id.of(id))
+                .username("user" + id)
+                .discriminator("0001")
+                .build());
+    }
+}
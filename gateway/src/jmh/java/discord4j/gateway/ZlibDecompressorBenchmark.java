@@ -0,0 +1,96 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Compares both {@link ZlibDecompressor} modes. Run with the GC profiler (enabled by default in the build) and
+ * compare {@code gc.alloc.rate.norm} to obtain the bytes allocated per inflated payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZlibDecompressorBenchmark {
+
+    private static final int FRAME_SIZE = 4096;
+
+    @Param({"1024", "65536", "1048576"})
+    private int payloadSize;
+
+    private List<byte[]> frames;
+
+    @Setup
+    public void setup() {
+        byte[] payload = createPayload(payloadSize);
+        Deflater deflater = new Deflater();
+        deflater.setInput(payload);
+        byte[] compressed = new byte[payload.length + 1024];
+        int length = deflater.deflate(compressed, 0, compressed.length, Deflater.SYNC_FLUSH);
+        deflater.end();
+
+        frames = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += FRAME_SIZE) {
+            int end = Math.min(length, offset + FRAME_SIZE);
+            byte[] frame = new byte[end - offset];
+            System.arraycopy(compressed, offset, frame, 0, frame.length);
+            frames.add(frame);
+        }
+    }
+
+    private static byte[] createPayload(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        sb.append("{\"t\":\"GUILD_CREATE\",\"s\":1,\"op\":0,\"d\":{\"members\":[");
+        long id = 81384788765712384L;
+        while (sb.length() < size - 64) {
+            sb.append("{\"user\":{\"id\":\"").append(id++).append("\",\"username\":\"user\"},\"roles\":[]},");
+        }
+        sb.append("{}]}}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int aggregating() {
+        return inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, false));
+    }
+
+    @Benchmark
+    public int streaming() {
+        return inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, true));
+    }
+
+    private int inflate(ZlibDecompressor decompressor) {
+        ByteBuf result = decompressor.completeMessages(Flux.fromIterable(frames).map(Unpooled::wrappedBuffer))
+                .blockLast();
+        int size = result.readableBytes();
+        result.release();
+        return size;
+    }
+}
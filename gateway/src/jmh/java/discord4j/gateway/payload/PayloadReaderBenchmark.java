@@ -0,0 +1,110 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import discord4j.common.JacksonResources;
+import discord4j.gateway.json.GatewayPayload;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a snowflake-heavy dispatch using the JSON and ETF Gateway encodings. Snowflakes are encoded as
+ * integers in the ETF payload, like Discord does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadReaderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int ids;
+
+    private JacksonBufferPayloadReader jsonReader;
+    private EtfPayloadReader etfReader;
+    private byte[] json;
+    private byte[] etf;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+        jsonReader = new JacksonBufferPayloadReader(mapper);
+        etfReader = new EtfPayloadReader(mapper);
+
+        TokenBuffer stringIds = new TokenBuffer(mapper, false);
+        TokenBuffer numericIds = new TokenBuffer(mapper, false);
+        writePayload(stringIds, false);
+        writePayload(numericIds, true);
+
+        json = mapper.writeValueAsBytes(mapper.readTree(stringIds.asParser(mapper)));
+        ByteBuf buf = Unpooled.buffer();
+        try (JsonParser parser = numericIds.asParser(mapper)) {
+            parser.nextToken();
+            EtfCodec.encode(parser, buf);
+        }
+        etf = ByteBufUtil.getBytes(buf);
+        buf.release();
+    }
+
+    private void writePayload(TokenBuffer tokens, boolean numeric) throws IOException {
+        long id = 835255755447779348L;
+        tokens.writeStartObject();
+        tokens.writeStringField("t", "MESSAGE_DELETE_BULK");
+        tokens.writeNumberField("s", 42);
+        tokens.writeNumberField("op", 0);
+        tokens.writeObjectFieldStart("d");
+        tokens.writeArrayFieldStart("ids");
+        for (int i = 0; i < ids; i++) {
+            writeId(tokens, id + i, numeric);
+        }
+        tokens.writeEndArray();
+        tokens.writeFieldName("channel_id");
+        writeId(tokens, 81384788765712384L, numeric);
+        tokens.writeFieldName("guild_id");
+        writeId(tokens, 81384788765712384L, numeric);
+        tokens.writeEndObject();
+        tokens.writeEndObject();
+    }
+
+    private static void writeId(TokenBuffer tokens, long id, boolean numeric) throws IOException {
+        if (numeric) {
+            tokens.writeNumber(id);
+        } else {
+            tokens.writeString(Long.toString(id));
+        }
+    }
+
+    @Benchmark
+    public GatewayPayload<?> json() {
+        return jsonReader.read(Unpooled.wrappedBuffer(json)).block();
+    }
+
+    @Benchmark
+    public GatewayPayload<?> etf() {
+        return etfReader.read(Unpooled.wrappedBuffer(etf)).block();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import discord4j.common.JacksonResources;
+import discord4j.common.store.Store;
+import discord4j.common.store.impl.LocalStoreLayout;
+import discord4j.discordjson.json.gateway.Dispatch;
+import discord4j.discordjson.json.gateway.MessageDelete;
+import discord4j.discordjson.json.gateway.TypingStart;
+import discord4j.gateway.ShardInfo;
+import discord4j.gateway.retry.GatewayStateChange;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of routing a dispatch to its store action through {@link DispatchStoreLayer} using a no-op
+ * {@link Store} and an in-memory one, for a dispatch with an action, one without and a gateway state change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchStoreLayerBenchmark {
+
+    @Param({"noop", "local"})
+    private String store;
+
+    private DispatchStoreLayer layer;
+    private Dispatch messageDelete;
+    private Dispatch typingStart;
+    private Dispatch stateChange;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+        layer = DispatchStoreLayer.create("local".equals(store) ? Store.fromLayout(LocalStoreLayout.create())
+                : Store.noOp(), ShardInfo.create(0, 1));
+        messageDelete = mapper.readValue("{\"id\":\"835255755447779348\",\"channel_id\":\"81384788765712384\"," +
+                "\"guild_id\":\"81384788765712384\"}", MessageDelete.class);
+        typingStart = mapper.readValue("{\"user_id\":\"80351110224678912\",\"timestamp\":1619296362," +
+                "\"channel_id\":\"81384788765712384\"}", TypingStart.class);
+        stateChange = GatewayStateChange.connected();
+    }
+
+    @Benchmark
+    public StatefulDispatch<?, ?> storedDispatch() {
+        return layer.store(messageDelete).block();
+    }
+
+    @Benchmark
+    public StatefulDispatch<?, ?> ignoredDispatch() {
+        return layer.store(typingStart).block();
+    }
+
+    @Benchmark
+    public StatefulDispatch<?, ?> stateChange() {
+        return layer.store(stateChange).block();
+    }
+}
@@ -36,13 +36,16 @@ import discord4j.gateway.retry.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.IllegalReferenceCountException;
 import org.reactivestreams.Publisher;
+import reactor.core.Scannable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
 import reactor.netty.ConnectionObserver;
 import reactor.netty.http.client.WebsocketClientSpec;
 import reactor.util.Logger;
 import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
 import reactor.util.concurrent.Queues;
 import reactor.util.context.Context;
 import reactor.util.context.ContextView;
@@ -58,6 +61,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static discord4j.common.LogUtil.format;
 import static io.netty.handler.codec.http.HttpHeaderNames.USER_AGENT;
@@ -98,6 +102,7 @@ public class DefaultGatewayClient implements GatewayClient {
     private final int maxMissedHeartbeatAck;
     private final boolean unpooled;
     private final EmissionStrategy emissionStrategy;
+    private final Predicate<String> dispatchFilter;
 
     private final Map<Opcode<?>, PayloadHandler<?>> handlerMap = new HashMap<>();
 
@@ -137,6 +142,7 @@ public class DefaultGatewayClient implements GatewayClient {
     private final AtomicLong lastSent = new AtomicLong(0);
     private final AtomicLong lastAck = new AtomicLong(0);
     private final AtomicInteger missedAck = new AtomicInteger(0);
+    private final AtomicInteger decodeQueueDepth = new AtomicInteger(0);
     private volatile long responseTime = 0;
 
     // References that are changing each time a new ws connection is opened
@@ -163,6 +169,9 @@ public class DefaultGatewayClient implements GatewayClient {
         this.maxMissedHeartbeatAck = Math.max(0, options.getMaxMissedHeartbeatAck());
         this.unpooled = options.isUnpooled();
         this.emissionStrategy = options.getEmissionStrategy();
+        // passed as is, so a reader shared across shards keeps a single filtered reader, session events are always
+        // decoded regardless of the filter
+        this.dispatchFilter = Objects.requireNonNull(options.getDispatchFilter());
 
         addHandler(Opcode.DISPATCH, this::handleDispatch);
         addHandler(Opcode.HEARTBEAT, this::handleHeartbeat);
@@ -233,7 +242,8 @@ public class DefaultGatewayClient implements GatewayClient {
                             .doOnNext(buf -> logPayload(senderLog, context, buf))
                             .doOnDiscard(ByteBuf.class, DefaultGatewayClient::safeRelease);
 
-                    sessionHandler = new GatewayWebsocketHandler(receiver, outFlux, context);
+                    sessionHandler = new GatewayWebsocketHandler(receiver, outFlux, context, false,
+                            streamingInflate(), !"json".equals(payloadWriter.getEncoding()));
 
                     Mono<Void> readyHandler = dispatch.asFlux()
                             .filter(DefaultGatewayClient::isReadyOrResumed)
@@ -262,7 +272,7 @@ public class DefaultGatewayClient implements GatewayClient {
                     Mono<Void> receiverFuture = receiver.asFlux()
                             .map(buf -> unpooled ? buf : buf.retain())
                             .doOnNext(buf -> logPayload(receiverLog, context, buf))
-                            .flatMap(payloadReader::read)
+                            .transform(this::decodePayloads)
                             .doOnDiscard(ByteBuf.class, DefaultGatewayClient::safeRelease)
                             .doOnNext(payload -> {
                                 if (Opcode.HEARTBEAT_ACK.equals(payload.getOp())) {
@@ -300,8 +310,13 @@ public class DefaultGatewayClient implements GatewayClient {
                                         return Mono.empty();
                                     }
                                 }
-                                log.debug(format(context, "Sending heartbeat {} after last ACK"),
-                                        Duration.ofNanos(delay));
+                                if (reactorResources.getPayloadDecodeScheduler() != null) {
+                                    log.debug(format(context, "Sending heartbeat {} after last ACK " +
+                                            "(decode queue: {})"), Duration.ofNanos(delay), getDecodeQueueDepth());
+                                } else {
+                                    log.debug(format(context, "Sending heartbeat {} after last ACK"),
+                                            Duration.ofNanos(delay));
+                                }
                                 lastSent.set(now);
                                 return Mono.just(GatewayPayload.heartbeat(ImmutableHeartbeat.of(sequence.get())));
                             })
@@ -590,6 +605,29 @@ public class DefaultGatewayClient implements GatewayClient {
                 .flatMap(mapper);
     }
 
+    private Flux<GatewayPayload<?>> decodePayloads(Flux<ByteBuf> buffers) {
+        return decode(buffers, buf -> payloadReader.read(buf, dispatchFilter),
+                reactorResources.getPayloadDecodeScheduler(), reactorResources.getPayloadDecodeConcurrency(),
+                decodeQueueDepth);
+    }
+
+    /**
+     * Decode inbound buffers inline if no decode {@link Scheduler} is given, otherwise decode them concurrently on
+     * it while emitting the results in arrival order, tracking the number of buffers being decoded.
+     */
+    static <T> Flux<T> decode(Flux<ByteBuf> buffers, Function<ByteBuf, Publisher<? extends T>> reader,
+                              @Nullable Scheduler decodeScheduler, int concurrency, AtomicInteger inFlight) {
+        if (decodeScheduler == null) {
+            return buffers.flatMap(reader);
+        }
+        // decode in parallel but emit in arrival order, so sequence numbers are processed in order
+        return buffers.doOnNext(buf -> inFlight.incrementAndGet())
+                .flatMapSequential(buf -> Flux.<T>from(reader.apply(buf))
+                                .subscribeOn(decodeScheduler)
+                                .doFinally(signal -> inFlight.decrementAndGet()),
+                        concurrency, 1);
+    }
+
     private static void safeRelease(ByteBuf buf) {
         if (buf.refCnt() > 0) {
             try {
@@ -645,6 +683,12 @@ public class DefaultGatewayClient implements GatewayClient {
         return Duration.ofNanos(responseTime);
     }
 
+    @Override
+    public int getDecodeQueueDepth() {
+        // payloads buffered in the receiver sink plus the ones being decoded
+        return Scannable.from(receiver).scanOrDefault(Scannable.Attr.BUFFERED, 0) + decodeQueueDepth.get();
+    }
+
     /**
      * JVM property that allows modifying the number of outbound payloads permitted before activating the
      * rate-limiter and delaying every following payload for 60 seconds. Default value: 115 permits
@@ -664,4 +708,14 @@ public class DefaultGatewayClient implements GatewayClient {
         }
         return 115;
     }
+
+    /**
+     * JVM property that enables inflating each inbound websocket frame directly into a pooled output buffer as it
+     * arrives, instead of aggregating frames and inflating them through intermediate arrays. Default value: false
+     */
+    private static final String STREAMING_INFLATE_PROPERTY = "discord4j.gateway.inflate.streaming";
+
+    private boolean streamingInflate() {
+        return Boolean.getBoolean(STREAMING_INFLATE_PROPERTY);
+    }
 }
@@ -171,4 +171,14 @@ public interface GatewayClient {
      * @return the duration which Discord took to respond to the last heartbeat with an ack.
      */
     Duration getResponseTime();
+
+    /**
+     * Gets the number of inbound payloads that were received and are waiting to be decoded or being decoded. When
+     * payloads are decoded on a dedicated scheduler, this value is also logged at debug level on each heartbeat.
+     *
+     * @return the current inbound decode queue depth
+     */
+    default int getDecodeQueueDepth() {
+        return 0;
+    }
 }
@@ -25,6 +25,7 @@ import discord4j.gateway.payload.PayloadWriter;
 
 import java.time.Duration;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 /**
  * A set of options targeting the configuration of {@link GatewayClient} implementations.
@@ -42,6 +43,7 @@ public class GatewayOptions {
     private final int maxMissedHeartbeatAck;
     private final boolean unpooled;
     private final EmissionStrategy emissionStrategy;
+    private final Predicate<String> dispatchFilter;
 
     public GatewayOptions(String token, GatewayReactorResources reactorResources, PayloadReader payloadReader,
                           PayloadWriter payloadWriter, ReconnectOptions reconnectOptions,
@@ -56,6 +58,15 @@ public class GatewayOptions {
                           IdentifyOptions identifyOptions, GatewayObserver initialObserver,
                           PayloadTransformer identifyLimiter, int maxMissedHeartbeatAck, boolean unpooled,
                           EmissionStrategy emissionStrategy) {
+        this(token, reactorResources, payloadReader, payloadWriter, reconnectOptions, identifyOptions, initialObserver,
+                identifyLimiter, maxMissedHeartbeatAck, unpooled, emissionStrategy, type -> true);
+    }
+
+    public GatewayOptions(String token, GatewayReactorResources reactorResources, PayloadReader payloadReader,
+                          PayloadWriter payloadWriter, ReconnectOptions reconnectOptions,
+                          IdentifyOptions identifyOptions, GatewayObserver initialObserver,
+                          PayloadTransformer identifyLimiter, int maxMissedHeartbeatAck, boolean unpooled,
+                          EmissionStrategy emissionStrategy, Predicate<String> dispatchFilter) {
         this.token = Objects.requireNonNull(token, "token");
         this.reactorResources = Objects.requireNonNull(reactorResources, "reactorResources");
         this.payloadReader = Objects.requireNonNull(payloadReader, "payloadReader");
@@ -67,6 +78,7 @@ public class GatewayOptions {
         this.maxMissedHeartbeatAck = maxMissedHeartbeatAck;
         this.unpooled = unpooled;
         this.emissionStrategy = Objects.requireNonNull(emissionStrategy, "emissionStrategy");
+        this.dispatchFilter = Objects.requireNonNull(dispatchFilter, "dispatchFilter");
     }
 
     public String getToken() {
@@ -112,4 +124,15 @@ public class GatewayOptions {
     public EmissionStrategy getEmissionStrategy() {
         return emissionStrategy;
     }
+
+    /**
+     * Return the interest set of dispatch event types, as a {@link Predicate} receiving an event type and returning
+     * {@code true} if its payload data should be decoded. Dispatches rejected by it are not bound by the
+     * {@link PayloadReader}, if supported, and are therefore not emitted through {@link GatewayClient#dispatch()}.
+     *
+     * @return a {@link Predicate} over dispatch event types
+     */
+    public Predicate<String> getDispatchFilter() {
+        return dispatchFilter;
+    }
 }
@@ -20,29 +20,62 @@ package discord4j.gateway;
 import discord4j.common.ReactorResources;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
 
 import java.util.function.Supplier;
 
 /**
  * Provides an extra level of configuration for {@link ReactorResources}, tailored for the Gateway operations.
  * <p>
- * Allows customizing the {@link Scheduler} used to send gateway payloads.
+ * Allows customizing the {@link Scheduler} used to send gateway payloads, and optionally a {@link Scheduler} used to
+ * decode inbound payloads. By default inbound payloads are decoded on the thread that received them, typically a
+ * Netty event loop thread, so large payloads can delay other connections sharing the same loop. Setting a decode
+ * {@link Scheduler}, like {@link #DEFAULT_PAYLOAD_DECODE_SCHEDULER}, moves that work off the event loop while
+ * preserving the order of payloads within each connection.
  */
 public class GatewayReactorResources extends ReactorResources {
 
     public static final Supplier<Scheduler> DEFAULT_PAYLOAD_SENDER_SCHEDULER = () ->
             Schedulers.newSingle("d4j-gateway", true);
 
+    public static final Supplier<Scheduler> DEFAULT_PAYLOAD_DECODE_SCHEDULER = () ->
+            Schedulers.newParallel("d4j-gateway-decode", Schedulers.DEFAULT_POOL_SIZE, true);
+
+    /**
+     * Default maximum number of payloads decoded concurrently for each connection, when a decode {@link Scheduler}
+     * is set.
+     */
+    public static final int DEFAULT_PAYLOAD_DECODE_CONCURRENCY = 4;
+
     private final Scheduler payloadSenderScheduler;
+    @Nullable
+    private final Scheduler payloadDecodeScheduler;
+    private final int payloadDecodeConcurrency;
 
     public GatewayReactorResources(ReactorResources parent) {
-        super(parent.getHttpClient(), parent.getTimerTaskScheduler(), parent.getBlockingTaskScheduler());
-        this.payloadSenderScheduler = DEFAULT_PAYLOAD_SENDER_SCHEDULER.get();
+        this(parent, DEFAULT_PAYLOAD_SENDER_SCHEDULER.get());
     }
 
     public GatewayReactorResources(ReactorResources parent, Scheduler payloadSenderScheduler) {
+        this(parent, payloadSenderScheduler, null, DEFAULT_PAYLOAD_DECODE_CONCURRENCY);
+    }
+
+    /**
+     * Create a new {@link GatewayReactorResources} that decodes inbound payloads on a given {@link Scheduler}.
+     *
+     * @param parent the {@link ReactorResources} to derive the common resources from
+     * @param payloadSenderScheduler the {@link Scheduler} used to send gateway payloads
+     * @param payloadDecodeScheduler the {@link Scheduler} used to decode inbound payloads, or {@code null} to decode
+     * them on the receiving thread
+     * @param payloadDecodeConcurrency the maximum number of payloads decoded concurrently for each connection.
+     * Payloads are always processed in the order they were received
+     */
+    public GatewayReactorResources(ReactorResources parent, Scheduler payloadSenderScheduler,
+                                   @Nullable Scheduler payloadDecodeScheduler, int payloadDecodeConcurrency) {
         super(parent.getHttpClient(), parent.getTimerTaskScheduler(), parent.getBlockingTaskScheduler());
         this.payloadSenderScheduler = payloadSenderScheduler;
+        this.payloadDecodeScheduler = payloadDecodeScheduler;
+        this.payloadDecodeConcurrency = Math.max(1, payloadDecodeConcurrency);
     }
 
     public static GatewayReactorResources create() {
@@ -52,4 +85,24 @@ public class GatewayReactorResources extends ReactorResources {
     public Scheduler getPayloadSenderScheduler() {
         return payloadSenderScheduler;
     }
+
+    /**
+     * Return the {@link Scheduler} used to decode inbound payloads, if any.
+     *
+     * @return the decode {@link Scheduler}, or {@code null} if payloads are decoded on the receiving thread
+     */
+    @Nullable
+    public Scheduler getPayloadDecodeScheduler() {
+        return payloadDecodeScheduler;
+    }
+
+    /**
+     * Return the maximum number of payloads decoded concurrently for each connection, when a decode {@link Scheduler}
+     * is set.
+     *
+     * @return a positive number of payloads
+     */
+    public int getPayloadDecodeConcurrency() {
+        return payloadDecodeConcurrency;
+    }
 }
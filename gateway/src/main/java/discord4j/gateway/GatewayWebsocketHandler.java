@@ -23,6 +23,8 @@ import discord4j.gateway.retry.GatewayException;
 import discord4j.gateway.retry.PartialDisconnectException;
 import discord4j.gateway.retry.ReconnectException;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
@@ -64,6 +66,8 @@ public class GatewayWebsocketHandler {
     private final Sinks.One<DisconnectBehavior> sessionClose;
     private final ContextView context;
     private final boolean unpooled;
+    private final boolean streamingInflate;
+    private final boolean binaryOutbound;
     private final EmissionStrategy emissionStrategy;
 
     /**
@@ -79,11 +83,45 @@ public class GatewayWebsocketHandler {
 
     public GatewayWebsocketHandler(Sinks.Many<ByteBuf> inbound, Flux<ByteBuf> outbound, ContextView context,
                                    boolean unpooled) {
+        this(inbound, outbound, context, unpooled, false);
+    }
+
+    /**
+     * Create a new handler with the given data pipelines.
+     *
+     * @param inbound the {@link Sinks.Many} of {@link ByteBuf} to process inbound payloads
+     * @param outbound the {@link Flux} of {@link ByteBuf} to process outbound payloads
+     * @param context the Reactor {@link ContextView} that owns this handler, to enrich logging
+     * @param unpooled whether inbound buffers are unpooled and therefore should not be released by this handler
+     * @param streamingInflate whether to inflate each inbound frame as it arrives, see
+     * {@link ZlibDecompressor#ZlibDecompressor(ByteBufAllocator, boolean, boolean)}
+     */
+    public GatewayWebsocketHandler(Sinks.Many<ByteBuf> inbound, Flux<ByteBuf> outbound, ContextView context,
+                                   boolean unpooled, boolean streamingInflate) {
+        this(inbound, outbound, context, unpooled, streamingInflate, false);
+    }
+
+    /**
+     * Create a new handler with the given data pipelines.
+     *
+     * @param inbound the {@link Sinks.Many} of {@link ByteBuf} to process inbound payloads
+     * @param outbound the {@link Flux} of {@link ByteBuf} to process outbound payloads
+     * @param context the Reactor {@link ContextView} that owns this handler, to enrich logging
+     * @param unpooled whether inbound buffers are unpooled and therefore should not be released by this handler
+     * @param streamingInflate whether to inflate each inbound frame as it arrives, see
+     * {@link ZlibDecompressor#ZlibDecompressor(ByteBufAllocator, boolean, boolean)}
+     * @param binaryOutbound whether outbound payloads should be sent as binary frames instead of text frames, as
+     * required by binary encodings like ETF
+     */
+    public GatewayWebsocketHandler(Sinks.Many<ByteBuf> inbound, Flux<ByteBuf> outbound, ContextView context,
+                                   boolean unpooled, boolean streamingInflate, boolean binaryOutbound) {
         this.inbound = inbound;
         this.outbound = outbound;
         this.sessionClose = Sinks.one();
         this.context = context;
         this.unpooled = unpooled;
+        this.streamingInflate = streamingInflate;
+        this.binaryOutbound = binaryOutbound;
         this.emissionStrategy = EmissionStrategy.park(Duration.ofNanos(10));
     }
 
@@ -100,7 +138,7 @@ public class GatewayWebsocketHandler {
      * {@link CloseStatus}.
      */
     public Mono<Tuple2<DisconnectBehavior, CloseStatus>> handle(WebsocketInbound in, WebsocketOutbound out) {
-        ZlibDecompressor decompressor = new ZlibDecompressor(out.alloc());
+        ZlibDecompressor decompressor = new ZlibDecompressor(out.alloc(), false, streamingInflate);
 
         Mono<CloseWebSocketFrame> outboundClose = sessionClose.asMono()
                 .doOnNext(behavior -> log.debug(format(context, "Closing session with behavior: {}"), behavior))
@@ -124,7 +162,7 @@ public class GatewayWebsocketHandler {
                 .doOnNext(status -> close(DisconnectBehavior.retryAbruptly(
                         new GatewayException(context, "Inbound close status"))));
 
-        Mono<Void> outboundEvents = out.sendObject(Flux.merge(outboundClose, outbound.map(TextWebSocketFrame::new)))
+        Mono<Void> outboundEvents = out.sendObject(Flux.merge(outboundClose, outbound.map(this::toFrame)))
                 .then();
 
         in.withConnection(c -> c.onDispose(() -> log.debug(format(context, "Connection disposed"))));
@@ -143,6 +181,10 @@ public class GatewayWebsocketHandler {
                 .then(Mono.zip(sessionClose.asMono(), inboundClose.defaultIfEmpty(CloseStatus.ABNORMAL_CLOSE)));
     }
 
+    private WebSocketFrame toFrame(ByteBuf buf) {
+        return binaryOutbound ? new BinaryWebSocketFrame(buf) : new TextWebSocketFrame(buf);
+    }
+
     private void emitInbound(ByteBuf value) {
         if (!emissionStrategy.emitNext(inbound, value)) {
             safeRelease(value);
@@ -17,38 +17,107 @@
 package discord4j.gateway;
 
 import io.netty.buffer.*;
+import io.netty.util.ReferenceCountUtil;
 import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
 import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterOutputStream;
 
 /**
  * Implements a zlib inflater on a stream of {@link ByteBuf} elements.
+ * <p>
+ * Two modes are supported. The default one aggregates all frames of a message before inflating them at once. The
+ * streaming mode, enabled through {@link #ZlibDecompressor(ByteBufAllocator, boolean, boolean)}, feeds each frame
+ * directly from its NIO buffers into the inflater as it arrives and writes the result into an output buffer obtained
+ * from the given {@link ByteBufAllocator}, avoiding intermediate {@code byte[]} copies. On Java 11+ the
+ * {@link ByteBuffer} variants of {@link Inflater} are used, while on Java 8 a pair of reusable scratch arrays is
+ * used instead.
  */
 public class ZlibDecompressor {
 
+    private static final Logger log = Loggers.getLogger(ZlibDecompressor.class);
+
     private static final int ZLIB_SUFFIX = 0x0000FFFF;
-    private static final Predicate<ByteBuf> windowPredicate = payload ->
-            payload.readableBytes() >= 4 && payload.getInt(payload.readableBytes() - 4) == ZLIB_SUFFIX;
+    private static final int CHUNK_SIZE = 8192;
+    private static final Predicate<ByteBuf> windowPredicate = ZlibDecompressor::hasZlibSuffix;
+
+    @Nullable
+    private static final MethodHandle SET_INPUT_BUFFER;
+    @Nullable
+    private static final MethodHandle INFLATE_BUFFER;
+
+    static {
+        MethodHandle setInput = null;
+        MethodHandle inflate = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            setInput = lookup.findVirtual(Inflater.class, "setInput",
+                    MethodType.methodType(void.class, ByteBuffer.class));
+            inflate = lookup.findVirtual(Inflater.class, "inflate",
+                    MethodType.methodType(int.class, ByteBuffer.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            log.debug("Inflater does not support ByteBuffer input, using array-based streaming inflater");
+        }
+        SET_INPUT_BUFFER = setInput;
+        INFLATE_BUFFER = inflate;
+    }
 
     private final ByteBufAllocator allocator;
     private final Inflater context = new Inflater();
     private final boolean unpooled;
+    private final boolean streaming;
+    private final boolean bufferInput;
+
+    // streaming mode state, only accessed serially from the inbound sequence
+    private ByteBuf pending;
+    private byte[] inputChunk;
+    private byte[] outputChunk;
 
     public ZlibDecompressor(ByteBufAllocator allocator) {
         this(allocator, false);
     }
 
     public ZlibDecompressor(ByteBufAllocator allocator, boolean unpooled) {
+        this(allocator, unpooled, false);
+    }
+
+    /**
+     * Create a new decompressor.
+     *
+     * @param allocator the allocator used to obtain output buffers
+     * @param unpooled whether output buffers should be unpooled heap buffers instead of allocated from
+     * {@code allocator}
+     * @param streaming whether each inbound frame should be inflated directly as it arrives, instead of aggregating
+     * the frames of a message and inflating them through intermediate arrays
+     */
+    public ZlibDecompressor(ByteBufAllocator allocator, boolean unpooled, boolean streaming) {
+        this(allocator, unpooled, streaming, SET_INPUT_BUFFER != null && INFLATE_BUFFER != null);
+    }
+
+    // visible for testing, to exercise the array-based inflater on Java 11+
+    ZlibDecompressor(ByteBufAllocator allocator, boolean unpooled, boolean streaming, boolean bufferInput) {
         this.allocator = allocator;
         this.unpooled = unpooled;
+        this.streaming = streaming;
+        this.bufferInput = bufferInput;
     }
 
     public Flux<ByteBuf> completeMessages(Flux<ByteBuf> payloads) {
+        if (streaming) {
+            return streamingMessages(payloads);
+        }
         return payloads.windowUntil(windowPredicate)
                 .flatMap(Flux::collectList)
                 .map(list -> {
@@ -72,4 +141,98 @@ public class ZlibDecompressor {
                     }
                 });
     }
+
+    private Flux<ByteBuf> streamingMessages(Flux<ByteBuf> payloads) {
+        return payloads.<ByteBuf>handle((frame, sink) -> {
+            boolean complete = hasZlibSuffix(frame);
+            if (pending == null) {
+                pending = unpooled ? Unpooled.buffer(frame.readableBytes() * 4) :
+                        allocator.buffer(frame.readableBytes() * 4);
+            }
+            try {
+                inflate(frame, pending);
+            } catch (DataFormatException e) {
+                releasePending();
+                sink.error(Exceptions.propagate(e));
+                return;
+            }
+            if (complete) {
+                ByteBuf message = pending;
+                pending = null;
+                sink.next(message.asReadOnly());
+            }
+        }).doFinally(signal -> releasePending());
+    }
+
+    private void inflate(ByteBuf frame, ByteBuf out) throws DataFormatException {
+        if (frame.nioBufferCount() == 1) {
+            inflate(frame.nioBuffer(), out);
+        } else {
+            for (ByteBuffer component : frame.nioBuffers()) {
+                inflate(component, out);
+            }
+        }
+    }
+
+    private void inflate(ByteBuffer input, ByteBuf out) throws DataFormatException {
+        if (bufferInput) {
+            inflateBuffer(input, out);
+        } else if (input.hasArray()) {
+            context.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            drain(out);
+        } else {
+            if (inputChunk == null) {
+                inputChunk = new byte[CHUNK_SIZE];
+            }
+            while (input.hasRemaining()) {
+                int length = Math.min(input.remaining(), inputChunk.length);
+                input.get(inputChunk, 0, length);
+                context.setInput(inputChunk, 0, length);
+                drain(out);
+            }
+        }
+    }
+
+    private void inflateBuffer(ByteBuffer input, ByteBuf out) throws DataFormatException {
+        try {
+            SET_INPUT_BUFFER.invokeExact(context, input);
+            while (true) {
+                out.ensureWritable(CHUNK_SIZE);
+                ByteBuffer target = out.internalNioBuffer(out.writerIndex(), out.writableBytes());
+                int count = (int) INFLATE_BUFFER.invokeExact(context, target);
+                out.writerIndex(out.writerIndex() + count);
+                if (count == 0 && (context.needsInput() || context.finished() || context.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw Exceptions.propagate(t);
+        }
+    }
+
+    private void drain(ByteBuf out) throws DataFormatException {
+        if (outputChunk == null) {
+            outputChunk = new byte[CHUNK_SIZE];
+        }
+        while (true) {
+            int count = context.inflate(outputChunk);
+            out.writeBytes(outputChunk, 0, count);
+            if (count == 0 && (context.needsInput() || context.finished() || context.needsDictionary())) {
+                break;
+            }
+        }
+    }
+
+    private void releasePending() {
+        if (pending != null) {
+            ReferenceCountUtil.safeRelease(pending);
+            pending = null;
+        }
+    }
+
+    private static boolean hasZlibSuffix(ByteBuf payload) {
+        return payload.readableBytes() >= 4 && payload.getInt(payload.readableBytes() - 4) == ZLIB_SUFFIX;
+    }
 }
@@ -17,9 +17,11 @@
 package discord4j.gateway.json.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import discord4j.discordjson.json.gateway.*;
 import discord4j.gateway.json.GatewayPayload;
 import discord4j.gateway.json.dispatch.EventNames;
@@ -28,6 +30,7 @@ import reactor.util.annotation.Nullable;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class PayloadDeserializer extends StdDeserializer<GatewayPayload<?>> {
 
@@ -35,6 +38,15 @@ public class PayloadDeserializer extends StdDeserializer<GatewayPayload<?>> {
     private static final String D_FIELD = "d";
     private static final String T_FIELD = "t";
     private static final String S_FIELD = "s";
+    private static final String ID_FIELD = "id";
+    private static final String UNAVAILABLE_FIELD = "unavailable";
+
+    /**
+     * Deserialization attribute holding a {@link Predicate} over dispatch event types. When present, the data of
+     * dispatch payloads rejected by it is skipped without being bound, producing a payload without data. The
+     * {@code READY} and {@code RESUMED} dispatches are always bound, as they drive the session lifecycle.
+     */
+    public static final String DISPATCH_FILTER_ATTRIBUTE = "discord4j.gateway.dispatchFilter";
 
     private static final Map<String, Class<? extends Dispatch>> dispatchTypes = new HashMap<>();
 
@@ -93,29 +105,102 @@ public class PayloadDeserializer extends StdDeserializer<GatewayPayload<?>> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public GatewayPayload<?> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        JsonNode payload = p.getCodec().readTree(p);
+        Predicate<String> dispatchFilter = (Predicate<String>) ctxt.getAttribute(DISPATCH_FILTER_ATTRIBUTE);
+        Integer op = null;
+        String t = null;
+        Integer s = null;
+        PayloadData data = null;
+        TokenBuffer bufferedData = null;
 
-        int op = payload.get(OP_FIELD).asInt();
-        String t = payload.get(T_FIELD).asText();
-        Integer s = payload.get(S_FIELD).isNull() ? null : payload.get(S_FIELD).intValue();
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        }
+        for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case OP_FIELD:
+                    op = p.getIntValue();
+                    break;
+                case T_FIELD:
+                    t = p.getText();
+                    break;
+                case S_FIELD:
+                    s = value == JsonToken.VALUE_NULL ? null : p.getIntValue();
+                    break;
+                case D_FIELD:
+                    if (op != null && (op != Opcode.DISPATCH.getRawOp() || t != null)) {
+                        data = readData(p, ctxt, op, t, dispatchFilter);
+                    } else {
+                        // "d" arrived before "op" or "t", keep its tokens until the payload type is known
+                        bufferedData = new TokenBuffer(p, ctxt);
+                        bufferedData.copyCurrentStructure(p);
+                    }
+                    break;
+                default:
+                    p.skipChildren();
+                    break;
+            }
+        }
 
-        Class<? extends PayloadData> payloadType = getPayloadType(op, t);
-        if (payloadType == GuildCreate.class) {
-            JsonNode d = payload.get(D_FIELD);
-            JsonNode unavailable = d.get("unavailable");
-            if (unavailable != null && unavailable.asBoolean()) {
-                PayloadData data = p.getCodec().treeToValue(d, UnavailableGuildCreate.class);
-                return new GatewayPayload(Opcode.forRaw(op), data, s, t);
+        if (op == null) {
+            throw new IllegalArgumentException("Attempt to deserialize payload without op");
+        }
+        if (bufferedData != null) {
+            try (JsonParser dataParser = bufferedData.asParser(p.getCodec())) {
+                dataParser.nextToken();
+                data = readData(dataParser, ctxt, op, t, dispatchFilter);
             }
         }
-        PayloadData data = payloadType == null ? null : p.getCodec().treeToValue(payload.get(D_FIELD), payloadType);
 
         return new GatewayPayload(Opcode.forRaw(op), data, s, t);
     }
 
     @Nullable
-    private static Class<? extends PayloadData> getPayloadType(int op, String t) {
+    private static PayloadData readData(JsonParser p, DeserializationContext ctxt, int op, @Nullable String t,
+                                        @Nullable Predicate<String> dispatchFilter) throws IOException {
+        Class<? extends PayloadData> payloadType = getPayloadType(op, t);
+        if (payloadType == null || (op == Opcode.DISPATCH.getRawOp() && dispatchFilter != null
+                && payloadType != Ready.class && payloadType != Resumed.class && !dispatchFilter.test(t))) {
+            p.skipChildren();
+            return null;
+        }
+        if (payloadType == GuildCreate.class && p.currentToken() == JsonToken.START_OBJECT) {
+            return readGuildCreate(p, ctxt);
+        }
+        return ctxt.readValue(p, payloadType);
+    }
+
+    private static PayloadData readGuildCreate(JsonParser p, DeserializationContext ctxt) throws IOException {
+        // an unavailable guild only carries its id and unavailable fields, so buffering the leading ones is enough
+        // to pick the type, and the remaining fields are bound straight from the parser
+        TokenBuffer head = new TokenBuffer(p, ctxt);
+        head.writeStartObject();
+        boolean unavailable = false;
+        JsonToken token = p.nextToken();
+        for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.getCurrentName();
+            if (!ID_FIELD.equals(field) && !UNAVAILABLE_FIELD.equals(field)) {
+                break;
+            }
+            head.copyCurrentEvent(p);
+            if (p.nextToken() == JsonToken.VALUE_TRUE && UNAVAILABLE_FIELD.equals(field)) {
+                unavailable = true;
+            }
+            head.copyCurrentStructure(p);
+        }
+        Class<? extends PayloadData> guildType = unavailable ? UnavailableGuildCreate.class : GuildCreate.class;
+        // not closed, as closing the sequence would close the underlying parser
+        JsonParser guild = JsonParserSequence.createFlattened(true, head.asParser(p.getCodec()), p);
+        guild.nextToken();
+        return ctxt.readValue(guild, guildType);
+    }
+
+    @Nullable
+    private static Class<? extends PayloadData> getPayloadType(int op, @Nullable String t) {
         if (op == Opcode.DISPATCH.getRawOp()) {
             if (!dispatchTypes.containsKey(t)) {
                 throw new IllegalArgumentException("Attempt to deserialize payload with unknown event type: " + t);
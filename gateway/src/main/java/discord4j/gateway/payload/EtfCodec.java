@@ -0,0 +1,446 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Translates between the Erlang External Term Format (ETF) and Jackson token streams, allowing ETF payloads to be
+ * bound to the same objects as JSON ones.
+ * <p>
+ * Decoding maps the {@code nil}, {@code true} and {@code false} atoms to their JSON counterparts, other atoms and
+ * binaries to strings, lists and tuples to arrays and maps to objects. Encoding follows the conventions used by
+ * Discord: strings and map keys are written as binaries, {@code null} as the {@code nil} atom and integers that do not
+ * fit in 32 bits, like snowflakes, as big integers.
+ */
+final class EtfCodec {
+
+    static final String ENCODING = "etf";
+
+    private static final int VERSION = 131;
+    private static final int NEW_FLOAT_EXT = 70;
+    private static final int COMPRESSED = 80;
+    private static final int SMALL_INTEGER_EXT = 97;
+    private static final int INTEGER_EXT = 98;
+    private static final int FLOAT_EXT = 99;
+    private static final int ATOM_EXT = 100;
+    private static final int SMALL_TUPLE_EXT = 104;
+    private static final int LARGE_TUPLE_EXT = 105;
+    private static final int NIL_EXT = 106;
+    private static final int STRING_EXT = 107;
+    private static final int LIST_EXT = 108;
+    private static final int BINARY_EXT = 109;
+    private static final int SMALL_BIG_EXT = 110;
+    private static final int LARGE_BIG_EXT = 111;
+    private static final int SMALL_ATOM_EXT = 115;
+    private static final int MAP_EXT = 116;
+    private static final int ATOM_UTF8_EXT = 118;
+    private static final int SMALL_ATOM_UTF8_EXT = 119;
+
+    private static final int INFLATE_CHUNK_SIZE = 8192;
+
+    private static final String NIL = "nil";
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+
+    private EtfCodec() {
+    }
+
+    /**
+     * Decode a single ETF term from the given buffer, writing it as a sequence of tokens to a {@link JsonGenerator}.
+     *
+     * @param in the input buffer, positioned at the version byte
+     * @param generator the target generator
+     * @throws IOException if the generator fails to write a token
+     * @throws IllegalArgumentException if the input is not a supported ETF term
+     */
+    static void decode(ByteBuf in, JsonGenerator generator) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported ETF version: " + version);
+        }
+        readTerm(in, generator);
+    }
+
+    /**
+     * Encode the value the given {@link JsonParser} is positioned at as an ETF term into a buffer.
+     *
+     * @param parser the source parser, positioned at the first token of a value
+     * @param out the output buffer
+     * @throws IOException if the parser fails to read a token
+     * @throws IllegalArgumentException if a token cannot be represented in ETF
+     */
+    static void encode(JsonParser parser, ByteBuf out) throws IOException {
+        out.writeByte(VERSION);
+        writeValue(parser, out);
+    }
+
+    private static void readTerm(ByteBuf in, JsonGenerator g) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case SMALL_INTEGER_EXT:
+                g.writeNumber(in.readUnsignedByte());
+                break;
+            case INTEGER_EXT:
+                g.writeNumber(in.readInt());
+                break;
+            case NEW_FLOAT_EXT:
+                g.writeNumber(in.readDouble());
+                break;
+            case FLOAT_EXT:
+                g.writeNumber(Double.parseDouble(readString(in, 31, StandardCharsets.ISO_8859_1).trim()));
+                break;
+            case ATOM_EXT:
+                writeAtom(g, readString(in, in.readUnsignedShort(), StandardCharsets.ISO_8859_1));
+                break;
+            case SMALL_ATOM_EXT:
+                writeAtom(g, readString(in, in.readUnsignedByte(), StandardCharsets.ISO_8859_1));
+                break;
+            case ATOM_UTF8_EXT:
+                writeAtom(g, readString(in, in.readUnsignedShort(), StandardCharsets.UTF_8));
+                break;
+            case SMALL_ATOM_UTF8_EXT:
+                writeAtom(g, readString(in, in.readUnsignedByte(), StandardCharsets.UTF_8));
+                break;
+            case SMALL_TUPLE_EXT:
+                readElements(in, g, in.readUnsignedByte());
+                break;
+            case LARGE_TUPLE_EXT:
+                readElements(in, g, in.readInt());
+                break;
+            case NIL_EXT:
+                g.writeStartArray();
+                g.writeEndArray();
+                break;
+            case STRING_EXT:
+                // a list of small integers
+                int length = in.readUnsignedShort();
+                g.writeStartArray();
+                for (int i = 0; i < length; i++) {
+                    g.writeNumber(in.readUnsignedByte());
+                }
+                g.writeEndArray();
+                break;
+            case LIST_EXT:
+                int size = in.readInt();
+                g.writeStartArray();
+                for (int i = 0; i < size; i++) {
+                    readTerm(in, g);
+                }
+                // proper lists end with NIL_EXT, otherwise include the tail as the last element
+                if (in.getUnsignedByte(in.readerIndex()) == NIL_EXT) {
+                    in.skipBytes(1);
+                } else {
+                    readTerm(in, g);
+                }
+                g.writeEndArray();
+                break;
+            case BINARY_EXT:
+                g.writeString(readString(in, in.readInt(), StandardCharsets.UTF_8));
+                break;
+            case SMALL_BIG_EXT:
+                readBig(in, g, in.readUnsignedByte());
+                break;
+            case LARGE_BIG_EXT:
+                readBig(in, g, in.readInt());
+                break;
+            case MAP_EXT:
+                int arity = in.readInt();
+                g.writeStartObject();
+                for (int i = 0; i < arity; i++) {
+                    g.writeFieldName(readKey(in));
+                    readTerm(in, g);
+                }
+                g.writeEndObject();
+                break;
+            case COMPRESSED:
+                ByteBuf inflated = inflate(in);
+                try {
+                    readTerm(inflated, g);
+                } finally {
+                    inflated.release();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported ETF tag: " + tag);
+        }
+    }
+
+    private static void readElements(ByteBuf in, JsonGenerator g, int count) throws IOException {
+        g.writeStartArray();
+        for (int i = 0; i < count; i++) {
+            readTerm(in, g);
+        }
+        g.writeEndArray();
+    }
+
+    private static String readKey(ByteBuf in) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case ATOM_EXT:
+                return readString(in, in.readUnsignedShort(), StandardCharsets.ISO_8859_1);
+            case SMALL_ATOM_EXT:
+                return readString(in, in.readUnsignedByte(), StandardCharsets.ISO_8859_1);
+            case ATOM_UTF8_EXT:
+            case STRING_EXT:
+                return readString(in, in.readUnsignedShort(), StandardCharsets.UTF_8);
+            case SMALL_ATOM_UTF8_EXT:
+                return readString(in, in.readUnsignedByte(), StandardCharsets.UTF_8);
+            case BINARY_EXT:
+                return readString(in, in.readInt(), StandardCharsets.UTF_8);
+            case SMALL_INTEGER_EXT:
+                return String.valueOf(in.readUnsignedByte());
+            case INTEGER_EXT:
+                return String.valueOf(in.readInt());
+            default:
+                throw new IllegalArgumentException("Unsupported ETF map key tag: " + tag);
+        }
+    }
+
+    private static String readString(ByteBuf in, int length, Charset charset) {
+        return in.readCharSequence(length, charset).toString();
+    }
+
+    private static void writeAtom(JsonGenerator g, String atom) throws IOException {
+        switch (atom) {
+            case NIL:
+                g.writeNull();
+                break;
+            case TRUE:
+                g.writeBoolean(true);
+                break;
+            case FALSE:
+                g.writeBoolean(false);
+                break;
+            default:
+                g.writeString(atom);
+                break;
+        }
+    }
+
+    private static void readBig(ByteBuf in, JsonGenerator g, int length) throws IOException {
+        boolean negative = in.readUnsignedByte() != 0;
+        if (length <= 8) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (long) in.readUnsignedByte() << (8 * i);
+            }
+            if (value >= 0 || (negative && value == Long.MIN_VALUE)) {
+                g.writeNumber(negative ? -value : value);
+                return;
+            }
+            // unsigned 64-bit magnitude
+            BigInteger big = new BigInteger(Long.toUnsignedString(value));
+            g.writeNumber(negative ? big.negate() : big);
+            return;
+        }
+        byte[] magnitude = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            magnitude[i] = in.readByte();
+        }
+        BigInteger big = new BigInteger(1, magnitude);
+        g.writeNumber(negative ? big.negate() : big);
+    }
+
+    private static ByteBuf inflate(ByteBuf in) {
+        int size = in.readInt();
+        // a spare byte lets the inflater reach the end of the stream once the declared size is written
+        ByteBuf out = Unpooled.buffer(size + 1, size + 1);
+        Inflater inflater = new Inflater();
+        try {
+            if (in.hasArray()) {
+                inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+                inflate(inflater, out);
+                in.skipBytes(in.readableBytes() - inflater.getRemaining());
+            } else {
+                // only copy the compressed term, chunk by chunk, instead of the rest of the input
+                byte[] chunk = new byte[Math.min(in.readableBytes(), INFLATE_CHUNK_SIZE)];
+                while (!inflater.finished() && in.isReadable()) {
+                    int length = Math.min(in.readableBytes(), chunk.length);
+                    in.readBytes(chunk, 0, length);
+                    inflater.setInput(chunk, 0, length);
+                    inflate(inflater, out);
+                    in.readerIndex(in.readerIndex() - inflater.getRemaining());
+                }
+            }
+            if (!inflater.finished() || out.readableBytes() != size) {
+                throw new DataFormatException("Compressed term does not match its size of " + size + " bytes");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            out.release();
+            throw new IllegalArgumentException("Invalid compressed ETF term", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void inflate(Inflater inflater, ByteBuf out) throws DataFormatException {
+        while (!inflater.finished() && !inflater.needsInput()) {
+            // fail instead of stopping with input left, which would feed the same input again
+            if (inflater.needsDictionary()) {
+                throw new DataFormatException("Compressed term requires a preset dictionary");
+            }
+            if (!out.isWritable()) {
+                throw new DataFormatException("Compressed term exceeds its size of " + (out.capacity() - 1) +
+                        " bytes");
+            }
+            int count = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+            out.writerIndex(out.writerIndex() + count);
+        }
+    }
+
+    private static void writeValue(JsonParser p, ByteBuf out) throws IOException {
+        JsonToken token = p.currentToken();
+        switch (token) {
+            case START_OBJECT:
+                out.writeByte(MAP_EXT);
+                int arityIndex = out.writerIndex();
+                out.writeInt(0);
+                int arity = 0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    writeBinary(p.getCurrentName(), out);
+                    p.nextToken();
+                    writeValue(p, out);
+                    arity++;
+                }
+                out.setInt(arityIndex, arity);
+                break;
+            case START_ARRAY:
+                JsonToken element = p.nextToken();
+                if (element == JsonToken.END_ARRAY) {
+                    out.writeByte(NIL_EXT);
+                    break;
+                }
+                out.writeByte(LIST_EXT);
+                int sizeIndex = out.writerIndex();
+                out.writeInt(0);
+                int size = 0;
+                for (; element != JsonToken.END_ARRAY; element = p.nextToken()) {
+                    writeValue(p, out);
+                    size++;
+                }
+                out.setInt(sizeIndex, size);
+                out.writeByte(NIL_EXT);
+                break;
+            case VALUE_STRING:
+                writeBinary(p.getText(), out);
+                break;
+            case VALUE_NUMBER_INT:
+                switch (p.getNumberType()) {
+                    case INT:
+                        writeInteger(p.getIntValue(), out);
+                        break;
+                    case LONG:
+                        writeLong(p.getLongValue(), out);
+                        break;
+                    default:
+                        writeBig(p.getBigIntegerValue(), out);
+                        break;
+                }
+                break;
+            case VALUE_NUMBER_FLOAT:
+                out.writeByte(NEW_FLOAT_EXT);
+                out.writeDouble(p.getDoubleValue());
+                break;
+            case VALUE_TRUE:
+                writeAtom(TRUE, out);
+                break;
+            case VALUE_FALSE:
+                writeAtom(FALSE, out);
+                break;
+            case VALUE_NULL:
+                writeAtom(NIL, out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported token for ETF encoding: " + token);
+        }
+    }
+
+    private static void writeAtom(String atom, ByteBuf out) {
+        out.writeByte(SMALL_ATOM_UTF8_EXT);
+        out.writeByte(atom.length());
+        out.writeCharSequence(atom, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBinary(String value, ByteBuf out) {
+        out.writeByte(BINARY_EXT);
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        int length = out.writeCharSequence(value, StandardCharsets.UTF_8);
+        out.setInt(lengthIndex, length);
+    }
+
+    private static void writeInteger(int value, ByteBuf out) {
+        if (value >= 0 && value <= 255) {
+            out.writeByte(SMALL_INTEGER_EXT);
+            out.writeByte(value);
+        } else {
+            out.writeByte(INTEGER_EXT);
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeLong(long value, ByteBuf out) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            writeInteger((int) value, out);
+        } else if (value == Long.MIN_VALUE) {
+            writeBig(BigInteger.valueOf(value), out);
+        } else {
+            long magnitude = Math.abs(value);
+            int length = (64 - Long.numberOfLeadingZeros(magnitude) + 7) / 8;
+            out.writeByte(SMALL_BIG_EXT);
+            out.writeByte(length);
+            out.writeByte(value < 0 ? 1 : 0);
+            for (int i = 0; i < length; i++) {
+                out.writeByte((int) (magnitude >>> (8 * i)));
+            }
+        }
+    }
+
+    private static void writeBig(BigInteger value, ByteBuf out) {
+        if (value.bitLength() < 32) {
+            writeInteger(value.intValue(), out);
+            return;
+        }
+        byte[] magnitude = value.abs().toByteArray();
+        int start = magnitude[0] == 0 ? 1 : 0;
+        int length = magnitude.length - start;
+        if (length <= 255) {
+            out.writeByte(SMALL_BIG_EXT);
+            out.writeByte(length);
+        } else {
+            out.writeByte(LARGE_BIG_EXT);
+            out.writeInt(length);
+        }
+        out.writeByte(value.signum() < 0 ? 1 : 0);
+        for (int i = magnitude.length - 1; i >= start; i--) {
+            out.writeByte(magnitude[i]);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import discord4j.gateway.json.GatewayPayload;
+import discord4j.gateway.json.jackson.PayloadDeserializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCountUtil;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * A {@link PayloadReader} for the Erlang External Term Format (ETF) Gateway encoding. Terms are decoded into Jackson
+ * tokens and bound through the given {@link ObjectMapper}, producing the same {@link GatewayPayload} objects as the
+ * JSON readers.
+ * <p>
+ * Using this reader requires also using {@link EtfPayloadWriter}, as Discord expects outbound payloads in the same
+ * encoding.
+ */
+public class EtfPayloadReader implements PayloadReader {
+
+    private static final Logger log = Loggers.getLogger(EtfPayloadReader.class);
+    private static final TypeReference<GatewayPayload<?>> PAYLOAD_TYPE = new TypeReference<GatewayPayload<?>>() {};
+
+    private final ObjectMapper mapper;
+    private final ObjectReader reader;
+    private final boolean lenient;
+
+    // reader bound to the last dispatch filter in use, clients typically keep a single filter for their lifetime
+    private volatile FilteredReader filteredReader;
+
+    public EtfPayloadReader(ObjectMapper mapper) {
+        this(mapper, true);
+    }
+
+    public EtfPayloadReader(ObjectMapper mapper, boolean lenient) {
+        this.mapper = mapper;
+        this.reader = mapper.readerFor(PAYLOAD_TYPE);
+        this.lenient = lenient;
+    }
+
+    @Override
+    public Mono<GatewayPayload<?>> read(ByteBuf buf) {
+        return decode(buf, reader);
+    }
+
+    @Override
+    public Mono<GatewayPayload<?>> read(ByteBuf buf, Predicate<String> dispatchFilter) {
+        FilteredReader filtered = this.filteredReader;
+        if (filtered == null || filtered.filter != dispatchFilter) {
+            filtered = new FilteredReader(dispatchFilter,
+                    reader.withAttribute(PayloadDeserializer.DISPATCH_FILTER_ATTRIBUTE, dispatchFilter));
+            this.filteredReader = filtered;
+        }
+        return decode(buf, filtered.reader);
+    }
+
+    @Override
+    public String getEncoding() {
+        return EtfCodec.ENCODING;
+    }
+
+    private Mono<GatewayPayload<?>> decode(ByteBuf buf, ObjectReader reader) {
+        return Mono.create(sink -> {
+            sink.onDispose(() -> ReferenceCountUtil.release(buf));
+            try {
+                TokenBuffer tokens = new TokenBuffer(mapper, false);
+                EtfCodec.decode(buf.duplicate(), tokens);
+                sink.success(reader.readValue(tokens.asParser(mapper)));
+            } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                if (lenient) {
+                    // if eof input - just ignore
+                    if (buf.readableBytes() > 0) {
+                        log.warn("Error while decoding ETF ({}): {}", e.toString(), ByteBufUtil.hexDump(buf));
+                    }
+                    sink.success();
+                } else {
+                    sink.error(Exceptions.propagate(e));
+                }
+            }
+        });
+    }
+
+    private static class FilteredReader {
+
+        private final Predicate<String> filter;
+        private final ObjectReader reader;
+
+        private FilteredReader(Predicate<String> filter, ObjectReader reader) {
+            this.filter = filter;
+            this.reader = reader;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import discord4j.gateway.json.GatewayPayload;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+/**
+ * A {@link PayloadWriter} for the Erlang External Term Format (ETF) Gateway encoding. Payloads are serialized through
+ * the given {@link ObjectMapper} into Jackson tokens, which are then encoded as ETF terms.
+ */
+public class EtfPayloadWriter implements PayloadWriter {
+
+    private final ObjectMapper mapper;
+
+    public EtfPayloadWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Mono<ByteBuf> write(GatewayPayload<?> payload) {
+        return Mono.create(sink -> sink.onRequest(__ -> {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                TokenBuffer tokens = new TokenBuffer(mapper, false);
+                mapper.writeValue(tokens, payload);
+                try (JsonParser parser = tokens.asParser(mapper)) {
+                    parser.nextToken();
+                    EtfCodec.encode(parser, buf);
+                }
+                sink.success(buf);
+            } catch (IOException | IllegalArgumentException e) {
+                buf.release();
+                sink.error(Exceptions.propagate(e));
+            }
+        }));
+    }
+
+    @Override
+    public String getEncoding() {
+        return EtfCodec.ENCODING;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import discord4j.gateway.json.GatewayPayload;
+import discord4j.gateway.json.jackson.PayloadDeserializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.util.ReferenceCountUtil;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * A {@link PayloadReader} that feeds Jackson directly from the contents of the inbound {@link ByteBuf}, either from
+ * its backing array or through a {@link ByteBufInputStream}, without copying the payload into an intermediate
+ * {@code byte[]}. The {@link ObjectReader} for {@link GatewayPayload} is resolved once and reused for every payload.
+ * <p>
+ * Supports skipping the data of dispatch payloads rejected by a filter given to {@link #read(ByteBuf, Predicate)}.
+ */
+public class JacksonBufferPayloadReader implements PayloadReader {
+
+    private static final Logger log = Loggers.getLogger(JacksonBufferPayloadReader.class);
+    private static final TypeReference<GatewayPayload<?>> PAYLOAD_TYPE = new TypeReference<GatewayPayload<?>>() {};
+
+    private final ObjectReader reader;
+    private final boolean lenient;
+
+    // reader bound to the last dispatch filter in use, clients typically keep a single filter for their lifetime
+    private volatile FilteredReader filteredReader;
+
+    public JacksonBufferPayloadReader(ObjectMapper mapper) {
+        this(mapper, true);
+    }
+
+    public JacksonBufferPayloadReader(ObjectMapper mapper, boolean lenient) {
+        this.reader = mapper.readerFor(PAYLOAD_TYPE);
+        this.lenient = lenient;
+    }
+
+    @Override
+    public Mono<GatewayPayload<?>> read(ByteBuf buf) {
+        return decode(buf, reader);
+    }
+
+    @Override
+    public Mono<GatewayPayload<?>> read(ByteBuf buf, Predicate<String> dispatchFilter) {
+        FilteredReader filtered = this.filteredReader;
+        if (filtered == null || filtered.filter != dispatchFilter) {
+            filtered = new FilteredReader(dispatchFilter,
+                    reader.withAttribute(PayloadDeserializer.DISPATCH_FILTER_ATTRIBUTE, dispatchFilter));
+            this.filteredReader = filtered;
+        }
+        return decode(buf, filtered.reader);
+    }
+
+    private Mono<GatewayPayload<?>> decode(ByteBuf buf, ObjectReader reader) {
+        return Mono.create(sink -> {
+            sink.onDispose(() -> ReferenceCountUtil.release(buf));
+            try {
+                sink.success(readValue(reader, buf));
+            } catch (IOException | IllegalArgumentException e) {
+                if (lenient) {
+                    // if eof input - just ignore
+                    if (buf.readableBytes() > 0) {
+                        log.warn("Error while decoding JSON ({}): {}", e.toString(),
+                                buf.toString(StandardCharsets.UTF_8));
+                    }
+                    sink.success();
+                } else {
+                    sink.error(Exceptions.propagate(e));
+                }
+            }
+        });
+    }
+
+    private static GatewayPayload<?> readValue(ObjectReader reader, ByteBuf buf) throws IOException {
+        if (buf.hasArray()) {
+            return reader.readValue(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        }
+        try (InputStream in = new ByteBufInputStream(buf.duplicate())) {
+            return reader.readValue(in);
+        }
+    }
+
+    private static class FilteredReader {
+
+        private final Predicate<String> filter;
+        private final ObjectReader reader;
+
+        private FilteredReader(Predicate<String> filter, ObjectReader reader) {
+            this.filter = filter;
+            this.reader = reader;
+        }
+    }
+}
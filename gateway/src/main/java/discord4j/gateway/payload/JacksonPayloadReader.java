@@ -33,6 +33,7 @@ import java.nio.charset.StandardCharsets;
 public class JacksonPayloadReader implements PayloadReader {
 
     private static final Logger log = Loggers.getLogger(JacksonPayloadReader.class);
+    private static final TypeReference<GatewayPayload<?>> PAYLOAD_TYPE = new TypeReference<GatewayPayload<?>>() {};
 
     private final ObjectMapper mapper;
     private final boolean lenient;
@@ -52,8 +53,7 @@ public class JacksonPayloadReader implements PayloadReader {
             sink.onDispose(() -> ReferenceCountUtil.release(buf));
             try {
                 GatewayPayload<?> value = mapper.readValue(
-                        ByteBufUtil.getBytes(buf, buf.readerIndex(), buf.readableBytes(), false),
-                        new TypeReference<GatewayPayload<?>>() {});
+                        ByteBufUtil.getBytes(buf, buf.readerIndex(), buf.readableBytes(), false), PAYLOAD_TYPE);
                 sink.success(value);
             } catch (IOException | IllegalArgumentException e) {
                 if (lenient) {
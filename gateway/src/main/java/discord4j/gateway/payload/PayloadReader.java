@@ -20,6 +20,8 @@ import discord4j.gateway.json.GatewayPayload;
 import io.netty.buffer.ByteBuf;
 import org.reactivestreams.Publisher;
 
+import java.util.function.Predicate;
+
 /**
  * Strategy for reading from a {@link ByteBuf} and decoding its contents to a {@link Publisher} of
  * {@link GatewayPayload}.
@@ -33,4 +35,29 @@ public interface PayloadReader {
      * @return a publisher of {@code GatewayPayload} representing the inbound payload
      */
     Publisher<GatewayPayload<?>> read(ByteBuf payload);
+
+    /**
+     * Read from the input buffer and encode to a single object, only binding the data of dispatch payloads whose
+     * event type is accepted by the given filter. Rejected dispatches are still emitted, with their sequence and type
+     * but without data. Implementations unable to skip the data of a payload can simply ignore the filter, which is
+     * the default behavior.
+     *
+     * @param payload the input byte buffer
+     * @param dispatchFilter a {@link Predicate} receiving a dispatch event type, returning {@code true} if its data
+     * should be decoded
+     * @return a publisher of {@code GatewayPayload} representing the inbound payload
+     */
+    default Publisher<GatewayPayload<?>> read(ByteBuf payload, Predicate<String> dispatchFilter) {
+        return read(payload);
+    }
+
+    /**
+     * Return the name of the Gateway encoding this strategy decodes, used as the {@code encoding} query parameter when
+     * connecting to the Gateway. Defaults to {@code json}.
+     *
+     * @return the name of the Gateway encoding
+     */
+    default String getEncoding() {
+        return "json";
+    }
 }
@@ -32,4 +32,14 @@ public interface PayloadWriter {
      * @return the publisher of outbound {@code ByteBuf}
      */
     Publisher<ByteBuf> write(GatewayPayload<?> payload);
+
+    /**
+     * Return the name of the Gateway encoding this strategy produces. Payloads in encodings other than {@code json}
+     * are sent as binary WebSocket frames. Defaults to {@code json}.
+     *
+     * @return the name of the Gateway encoding
+     */
+    default String getEncoding() {
+        return "json";
+    }
 }
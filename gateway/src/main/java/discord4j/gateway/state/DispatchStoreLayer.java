@@ -18,22 +18,24 @@ package discord4j.gateway.state;
 
 import discord4j.common.store.Store;
 import discord4j.common.store.action.gateway.GatewayActions;
+import discord4j.common.store.api.ActionResult;
 import discord4j.common.store.api.StoreAction;
 import discord4j.common.store.api.object.InvalidationCause;
 import discord4j.discordjson.json.gateway.*;
 import discord4j.gateway.ShardInfo;
 import discord4j.gateway.json.ShardAwareDispatch;
 import discord4j.gateway.retry.GatewayStateChange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
+import reactor.util.annotation.Nullable;
 
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.function.BiFunction;
-import java.util.function.Predicate;
+import java.util.function.IntFunction;
 
 /**
  * A {@link DispatchStoreLayer} allows to intercept any {@link Dispatch} instance and execute the appropriate
@@ -44,41 +46,61 @@ import java.util.function.Predicate;
 public class DispatchStoreLayer {
 
     private static final Logger log = Loggers.getLogger(DispatchStoreLayer.class);
-    private static final Set<DispatchToAction> DISPATCH_TO_ACTION = new HashSet<>();
+    private static final Map<Class<? extends Dispatch>, BiFunction<Integer, Dispatch, StoreAction<?>>>
+            DISPATCH_TO_ACTION = new HashMap<>();
+    private static final Map<GatewayStateChange.State, IntFunction<StoreAction<?>>> STATE_CHANGE_TO_ACTION =
+            new EnumMap<>(GatewayStateChange.State.class);
+
+    // resolves each concrete dispatch class once, as payloads are bound to immutable implementation classes
+    private static final ClassValue<BiFunction<Integer, Dispatch, StoreAction<?>>> ACTION_FACTORIES =
+            new ClassValue<BiFunction<Integer, Dispatch, StoreAction<?>>>() {
+                @Override
+                protected BiFunction<Integer, Dispatch, StoreAction<?>> computeValue(Class<?> type) {
+                    BiFunction<Integer, Dispatch, StoreAction<?>> found = null;
+                    for (Map.Entry<Class<? extends Dispatch>, BiFunction<Integer, Dispatch, StoreAction<?>>> entry :
+                            DISPATCH_TO_ACTION.entrySet()) {
+                        if (entry.getKey().isAssignableFrom(type)) {
+                            if (found != null) {
+                                throw new AssertionError("Multiple store actions match dispatch type " + type);
+                            }
+                            found = entry.getValue();
+                        }
+                    }
+                    return found;
+                }
+            };
 
     static {
-        add(ChannelCreate.class::isInstance, GatewayActions::channelCreate);
-        add(ChannelDelete.class::isInstance, GatewayActions::channelDelete);
-        add(ChannelUpdate.class::isInstance, GatewayActions::channelUpdate);
-        add(GuildCreate.class::isInstance, GatewayActions::guildCreate);
-        add(GuildDelete.class::isInstance, GatewayActions::guildDelete);
-        add(GuildEmojisUpdate.class::isInstance, GatewayActions::guildEmojisUpdate);
-        add(GuildMemberAdd.class::isInstance, GatewayActions::guildMemberAdd);
-        add(GuildMemberRemove.class::isInstance, GatewayActions::guildMemberRemove);
-        add(GuildMembersChunk.class::isInstance, GatewayActions::guildMembersChunk);
-        add(GuildMemberUpdate.class::isInstance, GatewayActions::guildMemberUpdate);
-        add(GuildRoleCreate.class::isInstance, GatewayActions::guildRoleCreate);
-        add(GuildRoleDelete.class::isInstance, GatewayActions::guildRoleDelete);
-        add(GuildRoleUpdate.class::isInstance, GatewayActions::guildRoleUpdate);
-        add(GuildUpdate.class::isInstance, GatewayActions::guildUpdate);
-        add(MessageCreate.class::isInstance, GatewayActions::messageCreate);
-        add(MessageDelete.class::isInstance, GatewayActions::messageDelete);
-        add(MessageDeleteBulk.class::isInstance, GatewayActions::messageDeleteBulk);
-        add(MessageReactionAdd.class::isInstance, GatewayActions::messageReactionAdd);
-        add(MessageReactionRemove.class::isInstance, GatewayActions::messageReactionRemove);
-        add(MessageReactionRemoveAll.class::isInstance, GatewayActions::messageReactionRemoveAll);
-        add(MessageReactionRemoveEmoji.class::isInstance, GatewayActions::messageReactionRemoveEmoji);
-        add(MessageUpdate.class::isInstance, GatewayActions::messageUpdate);
-        add(PresenceUpdate.class::isInstance, GatewayActions::presenceUpdate);
-        add(Ready.class::isInstance, (Integer shard, Ready dispatch) -> GatewayActions.ready(dispatch));
-        add(UserUpdate.class::isInstance, GatewayActions::userUpdate);
-        add(VoiceStateUpdateDispatch.class::isInstance, GatewayActions::voiceStateUpdateDispatch);
-        add(dispatch -> dispatch instanceof GatewayStateChange
-                        && ((GatewayStateChange) dispatch).getState() == GatewayStateChange.State.DISCONNECTED,
-                (shard, dispatch) -> GatewayActions.invalidateShard(shard, InvalidationCause.LOGOUT));
-        add(dispatch -> dispatch instanceof GatewayStateChange
-                        && ((GatewayStateChange) dispatch).getState() == GatewayStateChange.State.SESSION_INVALIDATED,
-                (shard, dispatch) -> GatewayActions.invalidateShard(shard, InvalidationCause.HARD_RECONNECT));
+        add(ChannelCreate.class, GatewayActions::channelCreate);
+        add(ChannelDelete.class, GatewayActions::channelDelete);
+        add(ChannelUpdate.class, GatewayActions::channelUpdate);
+        add(GuildCreate.class, GatewayActions::guildCreate);
+        add(GuildDelete.class, GatewayActions::guildDelete);
+        add(GuildEmojisUpdate.class, GatewayActions::guildEmojisUpdate);
+        add(GuildMemberAdd.class, GatewayActions::guildMemberAdd);
+        add(GuildMemberRemove.class, GatewayActions::guildMemberRemove);
+        add(GuildMembersChunk.class, GatewayActions::guildMembersChunk);
+        add(GuildMemberUpdate.class, GatewayActions::guildMemberUpdate);
+        add(GuildRoleCreate.class, GatewayActions::guildRoleCreate);
+        add(GuildRoleDelete.class, GatewayActions::guildRoleDelete);
+        add(GuildRoleUpdate.class, GatewayActions::guildRoleUpdate);
+        add(GuildUpdate.class, GatewayActions::guildUpdate);
+        add(MessageCreate.class, GatewayActions::messageCreate);
+        add(MessageDelete.class, GatewayActions::messageDelete);
+        add(MessageDeleteBulk.class, GatewayActions::messageDeleteBulk);
+        add(MessageReactionAdd.class, GatewayActions::messageReactionAdd);
+        add(MessageReactionRemove.class, GatewayActions::messageReactionRemove);
+        add(MessageReactionRemoveAll.class, GatewayActions::messageReactionRemoveAll);
+        add(MessageReactionRemoveEmoji.class, GatewayActions::messageReactionRemoveEmoji);
+        add(MessageUpdate.class, GatewayActions::messageUpdate);
+        add(PresenceUpdate.class, GatewayActions::presenceUpdate);
+        add(Ready.class, (Integer shard, Ready dispatch) -> GatewayActions.ready(dispatch));
+        add(UserUpdate.class, GatewayActions::userUpdate);
+        add(VoiceStateUpdateDispatch.class, GatewayActions::voiceStateUpdateDispatch);
+        addStateChange(GatewayStateChange.State.DISCONNECTED,
+                shard -> GatewayActions.invalidateShard(shard, InvalidationCause.LOGOUT));
+        addStateChange(GatewayStateChange.State.SESSION_INVALIDATED,
+                shard -> GatewayActions.invalidateShard(shard, InvalidationCause.HARD_RECONNECT));
     }
 
     private final Store store;
@@ -103,10 +125,13 @@ public class DispatchStoreLayer {
     }
 
     @SuppressWarnings("unchecked")
-    private static <D extends Dispatch> void add(Predicate<? super Dispatch> predicate,
+    private static <D extends Dispatch> void add(Class<D> type,
                                                  BiFunction<Integer, D, StoreAction<?>> actionFactory) {
-        DISPATCH_TO_ACTION.add(new DispatchToAction(predicate,
-                (shard, dispatch) -> actionFactory.apply(shard, (D) dispatch)));
+        DISPATCH_TO_ACTION.put(type, (shard, dispatch) -> actionFactory.apply(shard, (D) dispatch));
+    }
+
+    private static void addStateChange(GatewayStateChange.State state, IntFunction<StoreAction<?>> actionFactory) {
+        STATE_CHANGE_TO_ACTION.put(state, actionFactory);
     }
 
     /**
@@ -115,6 +140,9 @@ public class DispatchStoreLayer {
      * overriden if an instance of {@link ShardAwareDispatch} is provided. The result of the store action, which
      * represents the old state of the data affected when applicable, is returned along with the dispatch itself in a
      * {@link StatefulDispatch} which can be processed downstream.
+     * <p>
+     * The store action is executed upon subscription. Store actions that can be executed synchronously, as determined
+     * by {@link Store#tryExecuteNow(StoreAction)}, emit their result directly instead of subscribing to the store.
      *
      * @param dispatch the dispatch to produce the store action for
      * @return a {@link Mono} where, upon successful completion, emits the {@link StatefulDispatch} holding the
@@ -133,28 +161,34 @@ public class DispatchStoreLayer {
             shardInfo = this.shardInfo;
             actualDispatch = dispatch;
         }
-        return Flux.fromStream(DISPATCH_TO_ACTION.stream()
-                .filter(entry -> entry.predicate.test(actualDispatch))
-                .map(entry -> entry.actionFactory))
-                .singleOrEmpty()
-                .onErrorMap(IndexOutOfBoundsException.class, AssertionError::new)
-                .map(actionFactory -> actionFactory.apply(shardInfo.getIndex(), actualDispatch))
-                .flatMap(action -> Mono.from(store.execute(action)))
-                .<StatefulDispatch<?, ?>>map(oldState -> StatefulDispatch.of(shardInfo, actualDispatch, oldState))
-                .onErrorResume(t -> Mono.fromRunnable(
-                        () -> log.error("Error when executing store action on dispatch " + dispatch, t)))
-                .defaultIfEmpty(StatefulDispatch.of(shardInfo, actualDispatch, null));
+        return Mono.defer(() -> {
+            ActionResult<?> result;
+            try {
+                StoreAction<?> action = actionFor(shardInfo.getIndex(), actualDispatch);
+                result = action == null ? null : store.tryExecuteNow(action);
+            } catch (RuntimeException e) {
+                log.error("Error when executing store action on dispatch " + dispatch, e);
+                result = null;
+            }
+            if (result == null || result.isDone()) {
+                return Mono.just(StatefulDispatch.of(shardInfo, actualDispatch, result == null ? null : result.get()));
+            }
+            return Mono.from(result.asPublisher())
+                    .<StatefulDispatch<?, ?>>map(oldState -> StatefulDispatch.of(shardInfo, actualDispatch, oldState))
+                    .onErrorResume(t -> Mono.fromRunnable(
+                            () -> log.error("Error when executing store action on dispatch " + dispatch, t)))
+                    .defaultIfEmpty(StatefulDispatch.of(shardInfo, actualDispatch, null));
+        });
     }
 
-    private static class DispatchToAction {
-
-        private final Predicate<? super Dispatch> predicate;
-        private final BiFunction<Integer, Dispatch, StoreAction<?>> actionFactory;
-
-        private DispatchToAction(Predicate<? super Dispatch> predicate,
-                                 BiFunction<Integer, Dispatch, StoreAction<?>> actionFactory) {
-            this.predicate = predicate;
-            this.actionFactory = actionFactory;
+    @Nullable
+    private static StoreAction<?> actionFor(int shard, Dispatch dispatch) {
+        if (dispatch instanceof GatewayStateChange) {
+            IntFunction<StoreAction<?>> actionFactory =
+                    STATE_CHANGE_TO_ACTION.get(((GatewayStateChange) dispatch).getState());
+            return actionFactory == null ? null : actionFactory.apply(shard);
         }
+        BiFunction<Integer, Dispatch, StoreAction<?>> actionFactory = ACTION_FACTORIES.get(dispatch.getClass());
+        return actionFactory == null ? null : actionFactory.apply(shard, dispatch);
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadDecodeTest {
+
+    @Test
+    public void testDecodeSchedulerKeepsArrivalOrder() {
+        Scheduler scheduler = Schedulers.newParallel("test-decode", 4);
+        AtomicInteger inFlight = new AtomicInteger();
+        try {
+            // decoding takes a random time, so later payloads often finish first
+            List<String> decoded = DefaultGatewayClient.decode(buffers(200), buf -> Mono.fromCallable(() -> {
+                        assertTrue(Thread.currentThread().getName().startsWith("test-decode"));
+                        return read(buf);
+                    }).delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(5)), scheduler),
+                    scheduler, 4, inFlight)
+                    .collectList()
+                    .block();
+
+            assertEquals(expected(200), decoded);
+            assertEquals(0, inFlight.get());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    public void testInlineDecodeWithoutScheduler() {
+        AtomicInteger inFlight = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        List<String> decoded = DefaultGatewayClient.decode(buffers(200), buf -> Mono.fromCallable(() -> {
+                    assertSame(caller, Thread.currentThread());
+                    return read(buf);
+                }), null, 4, inFlight)
+                .collectList()
+                .block();
+
+        assertEquals(expected(200), decoded);
+        assertEquals(0, inFlight.get());
+    }
+
+    private static Flux<ByteBuf> buffers(int count) {
+        return Flux.range(0, count).map(i -> Unpooled.copyInt(i));
+    }
+
+    private static String read(ByteBuf buf) {
+        try {
+            return String.valueOf(buf.getInt(0));
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static List<String> expected(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+}
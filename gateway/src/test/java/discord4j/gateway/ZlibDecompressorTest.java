@@ -0,0 +1,120 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZlibDecompressorTest {
+
+    @Test
+    public void testStreamingMatchesAggregating() {
+        List<String> messages = messages();
+        List<byte[]> frames = compress(messages, 1000);
+
+        assertEquals(messages, inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, false), frames));
+        assertEquals(messages, inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, true), frames));
+        assertEquals(messages, inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, true, true), frames));
+    }
+
+    @Test
+    public void testStreamingArrayFallback() {
+        List<String> messages = messages();
+        List<byte[]> frames = compress(messages, 1000);
+
+        assertEquals(messages, inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, true, false),
+                frames));
+        // direct frames are copied through the input chunk instead of their backing array
+        assertEquals(messages, inflate(new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, true, false),
+                Flux.fromIterable(frames).map(frame -> Unpooled.directBuffer(frame.length).writeBytes(frame))));
+    }
+
+    @Test
+    public void testStreamingMessagesAreReadOnly() {
+        List<byte[]> frames = compress(messages(), 1000);
+        ByteBuf message = new ZlibDecompressor(PooledByteBufAllocator.DEFAULT, false, true)
+                .completeMessages(Flux.fromIterable(frames).map(Unpooled::wrappedBuffer))
+                .blockFirst();
+
+        assertTrue(message.isReadOnly());
+        message.release();
+    }
+
+    private static List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            StringBuilder sb = new StringBuilder("{\"op\":0,\"s\":").append(i).append(",\"d\":[");
+            for (int j = 0; j < 2000 * (i + 1); j++) {
+                sb.append(j).append(',');
+            }
+            messages.add(sb.append("0]}").toString());
+        }
+        return messages;
+    }
+
+    private static List<String> inflate(ZlibDecompressor decompressor, List<byte[]> frames) {
+        return inflate(decompressor, Flux.fromIterable(frames).map(Unpooled::wrappedBuffer));
+    }
+
+    private static List<String> inflate(ZlibDecompressor decompressor, Flux<ByteBuf> frames) {
+        return decompressor.completeMessages(frames)
+                .map(buf -> {
+                    String value = buf.toString(StandardCharsets.UTF_8);
+                    buf.release();
+                    return value;
+                })
+                .collectList()
+                .block();
+    }
+
+    private static List<byte[]> compress(List<String> messages, int frameSize) {
+        Deflater deflater = new Deflater();
+        List<byte[]> frames = new ArrayList<>();
+        for (String message : messages) {
+            byte[] input = message.getBytes(StandardCharsets.UTF_8);
+            deflater.setInput(input);
+            byte[] output = new byte[input.length + 1024];
+            int length = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            // the last frame of each message carries the zlib suffix
+            for (int offset = 0; offset < length; offset += frameSize) {
+                int end = Math.min(length, offset + frameSize);
+                if (length - end < 4 && end != length) {
+                    end = length;
+                }
+                byte[] frame = new byte[end - offset];
+                System.arraycopy(output, offset, frame, 0, frame.length);
+                frames.add(frame);
+                if (end == length) {
+                    break;
+                }
+            }
+        }
+        deflater.end();
+        return frames;
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import discord4j.common.JacksonResources;
+import discord4j.gateway.json.GatewayPayload;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EtfPayloadTest {
+
+    private final ObjectMapper mapper = JacksonResources.create().getObjectMapper();
+    private final JacksonBufferPayloadReader jsonReader = new JacksonBufferPayloadReader(mapper, false);
+    private final EtfPayloadReader etfReader = new EtfPayloadReader(mapper, false);
+    private final EtfPayloadWriter etfWriter = new EtfPayloadWriter(mapper);
+    private final ObjectMapper treeMapper = new ObjectMapper();
+
+    @Test
+    public void testCorpusRoundTrip() throws IOException {
+        for (String json : readCorpus()) {
+            GatewayPayload<?> expected = jsonReader.read(Unpooled.copiedBuffer(json, StandardCharsets.UTF_8)).block();
+            ByteBuf etf = etfWriter.write(expected).block();
+            GatewayPayload<?> actual = etfReader.read(etf).block();
+            assertEquals(expected, actual, json);
+        }
+    }
+
+    @Test
+    public void testSnowflakesAsIntegers() throws IOException {
+        TokenBuffer tokens = new TokenBuffer(mapper, false);
+        tokens.writeStartObject();
+        tokens.writeStringField("t", "MESSAGE_DELETE");
+        tokens.writeNumberField("s", 2);
+        tokens.writeNumberField("op", 0);
+        tokens.writeObjectFieldStart("d");
+        tokens.writeNumberField("id", 835255755447779348L);
+        tokens.writeNumberField("channel_id", 81384788765712384L);
+        tokens.writeEndObject();
+        tokens.writeEndObject();
+
+        String json = "{\"t\":\"MESSAGE_DELETE\",\"s\":2,\"op\":0," +
+                "\"d\":{\"id\":\"835255755447779348\",\"channel_id\":\"81384788765712384\"}}";
+        GatewayPayload<?> expected = jsonReader.read(Unpooled.copiedBuffer(json, StandardCharsets.UTF_8)).block();
+        assertEquals(expected, etfReader.read(encode(tokens)).block());
+    }
+
+    @Test
+    public void testScalarRoundTrip() throws IOException {
+        TokenBuffer tokens = new TokenBuffer(mapper, false);
+        tokens.writeStartArray();
+        tokens.writeNumber(0);
+        tokens.writeNumber(255);
+        tokens.writeNumber(256);
+        tokens.writeNumber(-1);
+        tokens.writeNumber(Integer.MIN_VALUE);
+        tokens.writeNumber(Long.MAX_VALUE);
+        tokens.writeNumber(Long.MIN_VALUE);
+        tokens.writeNumber(BigInteger.ONE.shiftLeft(70).negate());
+        tokens.writeNumber(1.5d);
+        tokens.writeBoolean(true);
+        tokens.writeBoolean(false);
+        tokens.writeNull();
+        tokens.writeString("é☃");
+        tokens.writeStartArray();
+        tokens.writeEndArray();
+        tokens.writeStartObject();
+        tokens.writeEndObject();
+        tokens.writeEndArray();
+
+        JsonNode expected = mapper.readTree(tokens.asParser(mapper));
+        ByteBuf etf = encode(tokens);
+        TokenBuffer decoded = new TokenBuffer(mapper, false);
+        EtfCodec.decode(etf, decoded);
+        etf.release();
+        assertEquals(expected, mapper.readTree(decoded.asParser(mapper)));
+    }
+
+    @Test
+    public void testDecodeReadyFrame() throws IOException {
+        JsonNode expected = readJson("ready.json");
+        assertEquals(expected, decode(Unpooled.wrappedBuffer(frame(expected, false, false))));
+    }
+
+    @Test
+    public void testDecodeGuildCreateFrame() throws IOException {
+        JsonNode expected = readJson("guild-create.json");
+        assertEquals(expected, decode(Unpooled.wrappedBuffer(frame(expected, true, false))));
+    }
+
+    @Test
+    public void testDecodeCompressedGuildCreateFrame() throws IOException {
+        JsonNode expected = readJson("guild-create.json");
+        byte[] etf = frame(expected, false, true);
+
+        assertEquals(expected, decode(Unpooled.wrappedBuffer(etf)));
+        ByteBuf direct = Unpooled.directBuffer(etf.length).writeBytes(etf);
+        assertEquals(expected, decode(direct));
+        direct.release();
+    }
+
+    @Test
+    public void testDecodeNestedCompressedTerm() throws IOException {
+        // [compressed <<"hello">>, 7], only the compressed bytes must be consumed by the inflater
+        byte[] inner = {109, 0, 0, 0, 5, 'h', 'e', 'l', 'l', 'o'};
+        Deflater deflater = new Deflater();
+        deflater.setInput(inner);
+        deflater.finish();
+        byte[] compressed = new byte[64];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+
+        ByteBuf etf = Unpooled.directBuffer();
+        etf.writeByte(131).writeByte(108).writeInt(2);
+        etf.writeByte(80).writeInt(inner.length).writeBytes(compressed, 0, length);
+        etf.writeByte(97).writeByte(7);
+        etf.writeByte(106);
+
+        assertEquals(treeMapper.readTree("[\"hello\",7]"), decode(etf.copy()));
+        assertEquals(treeMapper.readTree("[\"hello\",7]"), decode(Unpooled.wrappedBuffer(ByteBufUtil.getBytes(etf))));
+        etf.release();
+    }
+
+    @Test
+    public void testCompressedTermLargerThanItsSize() {
+        byte[] inner = {109, 0, 0, 0, 5, 'h', 'e', 'l', 'l', 'o'};
+        Deflater deflater = new Deflater();
+        deflater.setInput(inner);
+        deflater.finish();
+        byte[] compressed = new byte[64];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+
+        // the declared size is too small, decoding must fail instead of feeding the same input again
+        ByteBuf etf = Unpooled.directBuffer();
+        etf.writeByte(131).writeByte(80).writeInt(inner.length - 4).writeBytes(compressed, 0, length);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> EtfCodec.decode(etf, new TokenBuffer(treeMapper, false)));
+        assertTrue(e.getCause() instanceof DataFormatException);
+        etf.release();
+
+        ByteBuf heap = Unpooled.buffer();
+        heap.writeByte(131).writeByte(80).writeInt(inner.length - 4).writeBytes(compressed, 0, length);
+        assertThrows(IllegalArgumentException.class, () -> EtfCodec.decode(heap, new TokenBuffer(treeMapper, false)));
+    }
+
+    /**
+     * Decode a whole ETF frame into a tree, using a mapper without number coercion so decoded integers, big integers
+     * and floats are compared by type.
+     */
+    private JsonNode decode(ByteBuf etf) throws IOException {
+        TokenBuffer decoded = new TokenBuffer(treeMapper, false);
+        EtfCodec.decode(etf, decoded);
+        assertFalse(etf.isReadable());
+        return treeMapper.readTree(decoded.asParser(treeMapper));
+    }
+
+    private JsonNode readJson(String name) throws IOException {
+        return treeMapper.readTree(new String(readResource(name), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encode a tree in the layout of Erlang's {@code term_to_binary}, independently of {@link EtfCodec}: integers use
+     * the smallest encoding, lists of bytes become {@code STRING_EXT}, {@code null} is the legacy {@code nil} atom and
+     * fields named {@code x_tuple} become tuples.
+     */
+    private static byte[] frame(JsonNode node, boolean binaryKeys, boolean compressed) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeTerm(new DataOutputStream(body), node, binaryKeys, false);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(frame);
+        out.writeByte(131);
+        if (compressed) {
+            out.writeByte(80);
+            out.writeInt(body.size());
+            Deflater deflater = new Deflater();
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(frame, deflater)) {
+                body.writeTo(deflated);
+            } finally {
+                deflater.end();
+            }
+        } else {
+            body.writeTo(frame);
+        }
+        return frame.toByteArray();
+    }
+
+    private static void writeTerm(DataOutputStream out, JsonNode node, boolean binaryKeys, boolean tuple)
+            throws IOException {
+        if (node.isNull()) {
+            out.writeByte(100);
+            out.writeShort(3);
+            out.write("nil".getBytes(StandardCharsets.ISO_8859_1));
+        } else if (node.isBoolean()) {
+            writeAtom(out, node.asBoolean() ? "true" : "false");
+        } else if (node.isIntegralNumber()) {
+            BigInteger value = node.bigIntegerValue();
+            if (value.signum() >= 0 && value.compareTo(BigInteger.valueOf(255)) <= 0) {
+                out.writeByte(97);
+                out.writeByte(value.intValue());
+            } else if (value.bitLength() < 32) {
+                out.writeByte(98);
+                out.writeInt(value.intValue());
+            } else {
+                byte[] magnitude = value.abs().toByteArray();
+                int start = magnitude[0] == 0 ? 1 : 0;
+                int length = magnitude.length - start;
+                if (length <= 255) {
+                    out.writeByte(110);
+                    out.writeByte(length);
+                } else {
+                    out.writeByte(111);
+                    out.writeInt(length);
+                }
+                out.writeByte(value.signum() < 0 ? 1 : 0);
+                // little-endian magnitude
+                for (int i = magnitude.length - 1; i >= start; i--) {
+                    out.writeByte(magnitude[i]);
+                }
+            }
+        } else if (node.isNumber()) {
+            out.writeByte(70);
+            out.writeDouble(node.doubleValue());
+        } else if (node.isTextual()) {
+            byte[] bytes = node.textValue().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(109);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (node.isArray()) {
+            if (tuple) {
+                out.writeByte(104);
+                out.writeByte(node.size());
+                for (JsonNode element : node) {
+                    writeTerm(out, element, binaryKeys, false);
+                }
+            } else if (node.size() == 0) {
+                out.writeByte(106);
+            } else if (isByteList(node)) {
+                out.writeByte(107);
+                out.writeShort(node.size());
+                for (JsonNode element : node) {
+                    out.writeByte(element.intValue());
+                }
+            } else {
+                out.writeByte(108);
+                out.writeInt(node.size());
+                for (JsonNode element : node) {
+                    writeTerm(out, element, binaryKeys, false);
+                }
+                out.writeByte(106);
+            }
+        } else {
+            out.writeByte(116);
+            out.writeInt(node.size());
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (binaryKeys) {
+                    writeTerm(out, TextNode.valueOf(field.getKey()), true, false);
+                } else {
+                    writeAtom(out, field.getKey());
+                }
+                writeTerm(out, field.getValue(), binaryKeys, field.getKey().equals("x_tuple"));
+            }
+        }
+    }
+
+    private static boolean isByteList(JsonNode node) {
+        for (JsonNode element : node) {
+            if (!element.isIntegralNumber() || !element.canConvertToInt() || element.intValue() < 0 ||
+                    element.intValue() > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeAtom(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(119);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = EtfPayloadTest.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int count;
+            while ((count = in.read(chunk)) != -1) {
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private ByteBuf encode(TokenBuffer tokens) throws IOException {
+        ByteBuf buf = Unpooled.buffer();
+        JsonParser parser = tokens.asParser(mapper);
+        parser.nextToken();
+        EtfCodec.encode(parser, buf);
+        return buf;
+    }
+
+    private static List<String> readCorpus() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                EtfPayloadTest.class.getResourceAsStream("etf-corpus.jsonl"), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+    }
+}
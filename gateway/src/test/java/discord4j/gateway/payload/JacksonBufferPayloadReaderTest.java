@@ -0,0 +1,81 @@
+/*
+ * This file is part of Discord4J.
+ *
+ * Discord4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Discord4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Discord4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package discord4j.gateway.payload;
+
+import discord4j.common.JacksonResources;
+import discord4j.discordjson.json.gateway.MessageDelete;
+import discord4j.discordjson.json.gateway.Opcode;
+import discord4j.discordjson.json.gateway.UnavailableGuildCreate;
+import discord4j.gateway.json.GatewayPayload;
+import discord4j.gateway.json.dispatch.EventNames;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JacksonBufferPayloadReaderTest {
+
+    private static final Predicate<String> NO_TYPING = type -> !EventNames.TYPING_START.equals(type);
+
+    private final JacksonBufferPayloadReader reader =
+            new JacksonBufferPayloadReader(JacksonResources.create().getObjectMapper(), false);
+
+    @Test
+    public void testSkipFilteredDispatch() {
+        GatewayPayload<?> payload = read("{\"t\":\"TYPING_START\",\"s\":5,\"op\":0," +
+                "\"d\":{\"user_id\":\"1\",\"timestamp\":1,\"channel_id\":\"2\",\"member\":{\"roles\":[]}}}", NO_TYPING);
+
+        assertEquals(Opcode.DISPATCH, payload.getOp());
+        assertEquals(EventNames.TYPING_START, payload.getType());
+        assertEquals(Integer.valueOf(5), payload.getSequence());
+        assertNull(payload.getData());
+    }
+
+    @Test
+    public void testReadDataBeforeType() {
+        GatewayPayload<?> payload = read("{\"d\":{\"id\":\"3\",\"channel_id\":\"2\"},\"op\":0,\"s\":6," +
+                "\"t\":\"MESSAGE_DELETE\"}", NO_TYPING);
+
+        assertEquals(Integer.valueOf(6), payload.getSequence());
+        assertTrue(payload.getData() instanceof MessageDelete);
+    }
+
+    @Test
+    public void testReadUnavailableGuildCreate() {
+        GatewayPayload<?> payload = read("{\"t\":\"GUILD_CREATE\",\"s\":7,\"op\":0," +
+                "\"d\":{\"unavailable\":true,\"id\":\"4\"}}", NO_TYPING);
+
+        assertTrue(payload.getData() instanceof UnavailableGuildCreate);
+        assertEquals(Integer.valueOf(7), payload.getSequence());
+    }
+
+    @Test
+    public void testReadWithoutData() {
+        GatewayPayload<?> payload = read("{\"t\":null,\"s\":null,\"op\":11,\"d\":null}", NO_TYPING);
+
+        assertEquals(Opcode.HEARTBEAT_ACK, payload.getOp());
+        assertNull(payload.getSequence());
+        assertNull(payload.getData());
+    }
+
+    private GatewayPayload<?> read(String json, Predicate<String> dispatchFilter) {
+        return reader.read(Unpooled.copiedBuffer(json, StandardCharsets.UTF_8), dispatchFilter).block();
+    }
+}